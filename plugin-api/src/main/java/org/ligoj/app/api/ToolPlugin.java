@@ -3,6 +3,7 @@
  */
 package org.ligoj.app.api;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -98,4 +99,40 @@ public interface ToolPlugin extends ServicePlugin {
 			Map<String, String> parameters) throws Exception { // NOSONAR
 		return checkSubscriptionStatus(node, parameters);
 	}
+
+	/**
+	 * Indicate this plug-in implements {@link #checkSubscriptionStatuses(String, Map)} with fewer remote calls than one
+	 * per subscription. When <code>true</code>, the subscriptions of a node are checked by chunks with this method.
+	 *
+	 * @return <code>true</code> when the batch check is implemented. By default, <code>false</code>.
+	 */
+	default boolean supportsBatchStatus() {
+		return false;
+	}
+
+	/**
+	 * Check the status of several subscriptions of the same node. Implementing this method allows a plug-in to answer
+	 * for many subscriptions with a single remote call, and should come with {@link #supportsBatchStatus()}. By
+	 * default, each subscription is checked one by one, and a failing subscription is absent from the result.
+	 *
+	 * @param node          The related node identifier.
+	 * @param subscriptions The parameter values of each subscription. Key is the subscription identifier.
+	 * @return The status of each subscription. Key is the subscription identifier. An absent subscription is
+	 *         considered as DOWN.
+	 * @see #checkSubscriptionStatus(int, String, Map)
+	 * @throws Exception Status cannot be retrieved. This error is caught at higher level.
+	 */
+	default Map<Integer, SubscriptionStatusWithData> checkSubscriptionStatuses(String node,
+			Map<Integer, Map<String, String>> subscriptions) throws Exception { // NOSONAR
+		final var result = new HashMap<Integer, SubscriptionStatusWithData>();
+		for (final var subscription : subscriptions.entrySet()) {
+			try {
+				result.put(subscription.getKey(),
+						checkSubscriptionStatus(subscription.getKey(), node, subscription.getValue()));
+			} catch (final Exception _) { // NOSONAR
+				// Absent entry, considered as DOWN, the other subscriptions are still checked
+			}
+		}
+		return result;
+	}
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.iam;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Optional compact representation of the organizational model, for the providers holding a large amount of users and
+ * groups. The users, the groups and the companies receive dense integer indexes from their own
+ * {@link IdDictionary}, the memberships are {@link IdSet} of these indexes, and the identifiers and the DN are
+ * interned: each distinct value is stored once.<br>
+ * The compacted objects remain {@link UserOrg}, {@link GroupOrg} and {@link CompanyOrg}, and their collections remain
+ * {@link java.util.Set} of identifiers, so the {@link IUserRepository}, {@link IGroupRepository} and
+ * {@link ICompanyRepository} contracts and their callers are unchanged. A provider either creates its objects with
+ * this model, or adapts the objects it has built with the <code>compact</code> functions.
+ */
+public class CompactIam implements Serializable {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private final IdDictionary users = new IdDictionary();
+
+	private final IdDictionary groups = new IdDictionary();
+
+	private final IdDictionary companies = new IdDictionary();
+
+	private final IdDictionary dns = new IdDictionary();
+
+	/**
+	 * Return the dictionary of the user identifiers.
+	 *
+	 * @return The dictionary of the user identifiers.
+	 */
+	public IdDictionary getUsers() {
+		return users;
+	}
+
+	/**
+	 * Return the dictionary of the normalized group identifiers.
+	 *
+	 * @return The dictionary of the normalized group identifiers.
+	 */
+	public IdDictionary getGroups() {
+		return groups;
+	}
+
+	/**
+	 * Return the dictionary of the normalized company identifiers.
+	 *
+	 * @return The dictionary of the normalized company identifiers.
+	 */
+	public IdDictionary getCompanies() {
+		return companies;
+	}
+
+	/**
+	 * Create a group without member.
+	 *
+	 * @param dn   The "Distinguished Name".
+	 * @param name The "Common Name".
+	 * @return The new compact group.
+	 */
+	public GroupOrg newGroup(final String dn, final String name) {
+		return compact(new GroupOrg(dn, name, new IdSet(users)));
+	}
+
+	/**
+	 * Create a company.
+	 *
+	 * @param dn   The "Distinguished Name".
+	 * @param name The "Organizational Unit".
+	 * @return The new compact company.
+	 */
+	public CompanyOrg newCompany(final String dn, final String name) {
+		return compact(new CompanyOrg(dn, name));
+	}
+
+	/**
+	 * Compact the given group: its identifiers are interned, and its members and sub-groups are replaced by
+	 * {@link IdSet}.
+	 *
+	 * @param group The group to update.
+	 * @return The same updated group.
+	 */
+	public GroupOrg compact(final GroupOrg group) {
+		intern(group, groups);
+		group.setMembers(toSet(users, group.getMembers()));
+		group.setSubGroups(toSet(groups, group.getSubGroups()));
+		return group;
+	}
+
+	/**
+	 * Compact the given company: its identifiers are interned. The company tree holds references and is only trimmed.
+	 *
+	 * @param company The company to update.
+	 * @return The same updated company.
+	 */
+	public CompanyOrg compact(final CompanyOrg company) {
+		intern(company, companies);
+		if (company.getCompanyTree() instanceof ArrayList<CompanyOrg> tree) {
+			tree.trimToSize();
+		}
+		return company;
+	}
+
+	/**
+	 * Compact the given user: its identifiers are interned, and its groups are replaced by an {@link IdSet}.
+	 *
+	 * @param user The user to update.
+	 * @param <U>  The user type.
+	 * @return The same updated user.
+	 */
+	public <U extends UserOrg> U compact(final U user) {
+		user.setId(users.intern(user.getId()));
+		user.setDn(dns.intern(user.getDn()));
+		user.setCompany(companies.intern(user.getCompany()));
+		user.setGroups(toSet(groups, user.getGroups()));
+		return user;
+	}
+
+	/**
+	 * Adapt the given groups, as returned by {@link IGroupRepository#findAll()}.
+	 *
+	 * @param groups The groups to update, by identifier.
+	 * @return A new map of the same updated groups, by interned identifier.
+	 */
+	public Map<String, GroupOrg> compactGroups(final Map<String, GroupOrg> groups) {
+		return compact(groups, this::compact);
+	}
+
+	/**
+	 * Adapt the given companies, as returned by {@link ICompanyRepository#findAll()}.
+	 *
+	 * @param companies The companies to update, by identifier.
+	 * @return A new map of the same updated companies, by interned identifier.
+	 */
+	public Map<String, CompanyOrg> compactCompanies(final Map<String, CompanyOrg> companies) {
+		return compact(companies, this::compact);
+	}
+
+	/**
+	 * Adapt the given users, as returned by {@link IUserRepository#findAll()}.
+	 *
+	 * @param users The users to update, by identifier.
+	 * @return A new map of the same updated users, by interned identifier.
+	 */
+	public Map<String, UserOrg> compactUsers(final Map<String, UserOrg> users) {
+		return compact(users, this::compact);
+	}
+
+	private <T extends ResourceOrg> Map<String, T> compact(final Map<String, T> resources,
+			final UnaryOperator<T> compactor) {
+		final var result = new HashMap<String, T>(resources.size() * 4 / 3 + 1);
+		resources.values().stream().map(compactor).forEach(r -> result.put(r.getId(), r));
+		return result;
+	}
+
+	/**
+	 * Intern the identifiers and the DN of the given container.
+	 */
+	private void intern(final ContainerOrg container, final IdDictionary dictionary) {
+		container.setId(dictionary.intern(container.getId()));
+		container.setParent(dictionary.intern(container.getParent()));
+		container.setDescription(dns.intern(container.getDescription()));
+	}
+
+	/**
+	 * Return the given identifiers as an {@link IdSet} of the given dictionary.
+	 */
+	private static IdSet toSet(final IdDictionary dictionary, final Collection<String> ids) {
+		if (ids instanceof IdSet set && set.getDictionary() == dictionary) {
+			return set;
+		}
+		return ids == null ? new IdSet(dictionary) : new IdSet(dictionary, ids);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.iam;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of identifiers: each distinct identifier is stored once and receives a dense integer index, starting
+ * from <code>0</code> in the order of registration. An identifier is never removed, so an index remains valid for the
+ * life of the dictionary.<br>
+ * The registration is synchronized, the lookups are lock free.
+ */
+public class IdDictionary implements Serializable {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Index by identifier.
+	 */
+	private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Identifier by index. Replaced when grown.
+	 */
+	private volatile String[] identifiers = new String[16];
+
+	private volatile int size;
+
+	/**
+	 * Register the given identifier when not yet registered, and return its index.
+	 *
+	 * @param id The identifier to register.
+	 * @return The index of this identifier.
+	 */
+	public int add(final String id) {
+		final var index = indexes.get(id);
+		if (index != null) {
+			return index;
+		}
+		return register(id);
+	}
+
+	private synchronized int register(final String id) {
+		final var registered = indexes.get(id);
+		if (registered != null) {
+			// Registered by a concurrent caller
+			return registered;
+		}
+		var array = identifiers;
+		if (size == array.length) {
+			array = Arrays.copyOf(array, size * 2);
+		}
+		final var index = size;
+		array[index] = id;
+		identifiers = array;
+		size = index + 1;
+		indexes.put(id, index);
+		return index;
+	}
+
+	/**
+	 * Return the index of the given identifier.
+	 *
+	 * @param id The identifier to find.
+	 * @return The index of this identifier, or <code>-1</code> when not registered.
+	 */
+	public int indexOf(final Object id) {
+		return id instanceof String ? indexes.getOrDefault(id, -1) : -1;
+	}
+
+	/**
+	 * Return the identifier of the given index.
+	 *
+	 * @param index The index of a registered identifier.
+	 * @return The registered identifier.
+	 */
+	public String get(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return identifiers[index];
+	}
+
+	/**
+	 * Return the registered instance equals to the given identifier, registering it when missing. Used to share a
+	 * single instance of each identifier or DN between the objects of the model.
+	 *
+	 * @param id The identifier to intern. May be <code>null</code>.
+	 * @return The registered instance, or <code>null</code>.
+	 */
+	public String intern(final String id) {
+		return id == null ? null : get(add(id));
+	}
+
+	/**
+	 * Return the amount of registered identifiers. This is also the next index.
+	 *
+	 * @return The amount of registered identifiers.
+	 */
+	public int size() {
+		return size;
+	}
+}
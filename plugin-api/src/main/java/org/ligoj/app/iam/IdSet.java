@@ -0,0 +1,245 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.iam;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of identifiers stored as their indexes within an {@link IdDictionary}. A sparse set is a sorted array of
+ * indexes, and a dense set is a bitmap, whichever is the smaller form. The identifiers are shared by all the sets of
+ * the same dictionary.<br>
+ * This set is not thread safe, as {@link java.util.HashSet}. The <code>null</code> identifier is not supported.
+ */
+public class IdSet extends AbstractSet<String> implements Serializable {
+
+	/**
+	 * SID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final int[] EMPTY = new int[0];
+
+	/**
+	 * Minimal size of a bitmap set.
+	 */
+	private static final int MIN_BITMAP = 8;
+
+	private final IdDictionary dictionary;
+
+	/**
+	 * The sorted indexes, while this set is not a bitmap.
+	 */
+	private int[] indexes = EMPTY;
+
+	/**
+	 * The indexes, once this set is a bitmap.
+	 */
+	private BitSet bits;
+
+	private int size;
+
+	/**
+	 * Empty set constructor.
+	 *
+	 * @param dictionary The dictionary of the identifiers.
+	 */
+	public IdSet(final IdDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param dictionary The dictionary of the identifiers.
+	 * @param ids        The identifiers to add. Registered within the dictionary when missing.
+	 */
+	public IdSet(final IdDictionary dictionary, final Collection<String> ids) {
+		this(dictionary);
+		addAll(ids);
+	}
+
+	/**
+	 * Return the dictionary of the identifiers.
+	 *
+	 * @return The dictionary of the identifiers.
+	 */
+	public IdDictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public boolean add(final String id) {
+		return addIndex(dictionary.add(id));
+	}
+
+	/**
+	 * Add the given index.
+	 *
+	 * @param index The index of a registered identifier.
+	 * @return <code>true</code> when this set did not already contain this index.
+	 */
+	public boolean addIndex(final int index) {
+		if (bits != null) {
+			if (bits.get(index)) {
+				return false;
+			}
+			bits.set(index);
+		} else {
+			final var position = Arrays.binarySearch(indexes, 0, size, index);
+			if (position >= 0) {
+				return false;
+			}
+			final var insert = -position - 1;
+			if (size == indexes.length) {
+				indexes = Arrays.copyOf(indexes, Math.max(4, size + (size >> 1)));
+			}
+			System.arraycopy(indexes, insert, indexes, insert + 1, size - insert);
+			indexes[insert] = index;
+		}
+		size++;
+		compact();
+		return true;
+	}
+
+	/**
+	 * Switch to the smaller form: a bitmap takes one bit up to the highest index, an array takes one integer by index.
+	 * The margin between the two thresholds prevents to switch back and forth.
+	 */
+	private void compact() {
+		if (bits == null && size >= MIN_BITMAP && (long) size * Integer.SIZE > indexes[size - 1]) {
+			final var bitmap = new BitSet(indexes[size - 1] + 1);
+			forEachIndex(bitmap::set);
+			bits = bitmap;
+			indexes = EMPTY;
+		} else if (bits != null && (long) size * Integer.SIZE * 2 < bits.length()) {
+			indexes = bits.stream().toArray();
+			bits = null;
+		}
+	}
+
+	@Override
+	public boolean remove(final Object id) {
+		final var index = dictionary.indexOf(id);
+		return index != -1 && removeIndex(index);
+	}
+
+	/**
+	 * Remove the given index.
+	 *
+	 * @param index The index of a registered identifier.
+	 * @return <code>true</code> when this set contained this index.
+	 */
+	public boolean removeIndex(final int index) {
+		if (bits != null) {
+			if (!bits.get(index)) {
+				return false;
+			}
+			bits.clear(index);
+		} else {
+			final var position = Arrays.binarySearch(indexes, 0, size, index);
+			if (position < 0) {
+				return false;
+			}
+			System.arraycopy(indexes, position + 1, indexes, position, size - position - 1);
+		}
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean contains(final Object id) {
+		final var index = dictionary.indexOf(id);
+		return index != -1 && containsIndex(index);
+	}
+
+	/**
+	 * Indicate this set contains the given index.
+	 *
+	 * @param index The index of an identifier.
+	 * @return <code>true</code> when this set contains this index.
+	 */
+	public boolean containsIndex(final int index) {
+		return bits == null ? Arrays.binarySearch(indexes, 0, size, index) >= 0 : bits.get(index);
+	}
+
+	/**
+	 * Call the given consumer for each index of this set, in ascending order.
+	 *
+	 * @param consumer The index consumer.
+	 */
+	public void forEachIndex(final IntConsumer consumer) {
+		if (bits == null) {
+			for (var i = 0; i < size; i++) {
+				consumer.accept(indexes[i]);
+			}
+		} else {
+			bits.stream().forEach(consumer);
+		}
+	}
+
+	/**
+	 * Return a copy of the indexes of this set as a bitmap.
+	 *
+	 * @return A new bitmap of the indexes of this set.
+	 */
+	public BitSet toBitSet() {
+		final var result = new BitSet();
+		forEachIndex(result::set);
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		indexes = EMPTY;
+		bits = null;
+		size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		final var snapshot = new int[size];
+		final var cursor = new int[1];
+		forEachIndex(i -> snapshot[cursor[0]++] = i);
+		return new Iterator<>() {
+			private int next;
+
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next < snapshot.length;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = snapshot[next++];
+				return dictionary.get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last == -1) {
+					throw new IllegalStateException();
+				}
+				removeIndex(last);
+				last = -1;
+			}
+		};
+	}
+}
@@ -6,6 +6,8 @@ package org.ligoj.app.api;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 /**
  * Test class of {@link ToolPlugin}
  */
@@ -32,6 +34,37 @@ class ToolPluginTest {
 		Assertions.assertEquals("value", data.getData().get("some"));
 	}
 
+	@Test
+	void checkSubscriptionStatuses() throws Exception {
+		final var statuses = plugin.checkSubscriptionStatuses("service:s1:t2:i3", Map.of(1, Map.of(), 2, Map.of()));
+		Assertions.assertEquals(2, statuses.size());
+		Assertions.assertTrue(statuses.get(1).getStatus().isUp());
+		Assertions.assertTrue(statuses.get(2).getStatus().isUp());
+	}
+
+	@Test
+	void checkSubscriptionStatusesFailure() throws Exception {
+		final ToolPlugin failing = new ToolPlugin() {
+			@Override
+			public String getKey() {
+				return "service:s1:t2";
+			}
+
+			@Override
+			public SubscriptionStatusWithData checkSubscriptionStatus(final int subscription, final String node,
+					final Map<String, String> parameters) {
+				if (subscription == 1) {
+					throw new IllegalStateException("Remote project deleted");
+				}
+				return new SubscriptionStatusWithData();
+			}
+		};
+		final var statuses = failing.checkSubscriptionStatuses("service:s1:t2:i3", Map.of(1, Map.of(), 2, Map.of()));
+		Assertions.assertEquals(1, statuses.size());
+		Assertions.assertTrue(statuses.get(2).getStatus().isUp());
+		Assertions.assertFalse(failing.supportsBatchStatus());
+	}
+
 	@Test
 	void getLastVersion() throws Exception {
 		Assertions.assertNull(plugin.getLastVersion());
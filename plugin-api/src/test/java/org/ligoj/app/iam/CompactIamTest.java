@@ -0,0 +1,90 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.iam;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Test class of {@link CompactIam}
+ */
+class CompactIamTest {
+
+	@Test
+	void newGroup() {
+		final var iam = new CompactIam();
+		final var group = iam.newGroup("cn=Group,dc=sample", "Group");
+		Assertions.assertEquals("group", group.getId());
+		Assertions.assertEquals("cn=Group,dc=sample", group.getDn());
+		Assertions.assertInstanceOf(IdSet.class, group.getMembers());
+		Assertions.assertInstanceOf(IdSet.class, group.getSubGroups());
+		group.getMembers().add("user1");
+		Assertions.assertEquals(0, iam.getUsers().indexOf("user1"));
+		Assertions.assertEquals(0, iam.getGroups().indexOf("group"));
+	}
+
+	@Test
+	void newCompany() {
+		final var iam = new CompactIam();
+		final var company = iam.newCompany("ou=Company,dc=sample", "Company");
+		Assertions.assertEquals("company", company.getId());
+		Assertions.assertEquals(List.of(company), company.getCompanyTree());
+		Assertions.assertEquals(0, iam.getCompanies().indexOf("company"));
+	}
+
+	@Test
+	void compactGroups() {
+		final var iam = new CompactIam();
+		final var group = new GroupOrg("cn=g1,dc=sample", "g1", new HashSet<>(Set.of("user1", "user2")));
+		group.getSubGroups().add("g2");
+		group.setParent("g0");
+		final var groups = iam.compactGroups(Map.of("g1", group));
+		Assertions.assertSame(group, groups.get("g1"));
+		Assertions.assertInstanceOf(IdSet.class, group.getMembers());
+		Assertions.assertEquals(Set.of("user1", "user2"), group.getMembers());
+		Assertions.assertEquals(Set.of("g2"), group.getSubGroups());
+		Assertions.assertSame(iam.getGroups().intern("g0"), group.getParent());
+
+		// Already compact
+		final var members = group.getMembers();
+		Assertions.assertSame(members, iam.compact(group).getMembers());
+	}
+
+	@Test
+	void compactUsers() {
+		final var iam = new CompactIam();
+		final var company = iam.newCompany("ou=ing,dc=sample", "ing");
+		final var group = iam.newGroup("cn=g1,dc=sample", "g1");
+		final var user = new UserOrg();
+		user.setId("user1");
+		user.setDn("uid=user1,ou=ing,dc=sample");
+		user.setCompany(new String(new char[]{'i', 'n', 'g'}));
+		user.setGroups(List.of("g1"));
+		final var users = iam.compactUsers(Map.of("user1", user));
+		Assertions.assertSame(user, users.get("user1"));
+		Assertions.assertSame(company.getId(), user.getCompany());
+		Assertions.assertInstanceOf(IdSet.class, user.getGroups());
+		Assertions.assertTrue(user.getGroups().contains(group.getId()));
+
+		// No membership
+		final var user2 = new UserOrg();
+		user2.setId("user2");
+		Assertions.assertTrue(iam.compact(user2).getGroups().isEmpty());
+		Assertions.assertNull(user2.getDn());
+	}
+
+	@Test
+	void compactCompanies() {
+		final var iam = new CompactIam();
+		final var company = new CompanyOrg("ou=ing,dc=sample", "ing");
+		final var companies = iam.compactCompanies(Map.of("ing", company));
+		Assertions.assertSame(company, companies.get("ing"));
+		Assertions.assertEquals(0, iam.getCompanies().indexOf("ing"));
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.iam;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Test class of {@link IdSet} and {@link IdDictionary}
+ */
+class IdSetTest {
+
+	@Test
+	void dictionary() {
+		final var dictionary = new IdDictionary();
+		Assertions.assertEquals(0, dictionary.add("a"));
+		Assertions.assertEquals(1, dictionary.add("b"));
+		Assertions.assertEquals(0, dictionary.add("a"));
+		Assertions.assertEquals(2, dictionary.size());
+		Assertions.assertEquals(1, dictionary.indexOf("b"));
+		Assertions.assertEquals(-1, dictionary.indexOf("c"));
+		Assertions.assertEquals(-1, dictionary.indexOf(1));
+		Assertions.assertEquals("b", dictionary.get(1));
+		Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(2));
+		Assertions.assertNull(dictionary.intern(null));
+
+		// Interned instance
+		final var id = new String(new char[]{'a'});
+		Assertions.assertNotSame(id, dictionary.get(0));
+		Assertions.assertSame(dictionary.get(0), dictionary.intern(id));
+	}
+
+	@Test
+	void dictionaryGrow() {
+		final var dictionary = new IdDictionary();
+		for (var i = 0; i < 100; i++) {
+			Assertions.assertEquals(i, dictionary.add("id" + i));
+		}
+		Assertions.assertEquals("id99", dictionary.get(99));
+	}
+
+	@Test
+	void addRemove() {
+		final var set = new IdSet(new IdDictionary(), List.of("c", "a"));
+		Assertions.assertTrue(set.add("b"));
+		Assertions.assertFalse(set.add("a"));
+		Assertions.assertEquals(3, set.size());
+		Assertions.assertTrue(set.contains("b"));
+		Assertions.assertFalse(set.contains("d"));
+		Assertions.assertFalse(set.contains(null));
+
+		// Order of registration
+		Assertions.assertEquals(List.of("c", "a", "b"), new ArrayList<>(set));
+		Assertions.assertEquals(Set.of("a", "b", "c"), set);
+
+		Assertions.assertTrue(set.remove("a"));
+		Assertions.assertFalse(set.remove("a"));
+		Assertions.assertFalse(set.remove("d"));
+		Assertions.assertEquals(Set.of("b", "c"), set);
+		set.clear();
+		Assertions.assertTrue(set.isEmpty());
+	}
+
+	@Test
+	void bitmap() {
+		final var dictionary = new IdDictionary();
+		final var set = new IdSet(dictionary);
+		final var expected = new HashSet<String>();
+		for (var i = 0; i < 100; i++) {
+			set.add("id" + i);
+			expected.add("id" + i);
+		}
+		Assertions.assertEquals(expected, set);
+		Assertions.assertEquals(100, set.toBitSet().cardinality());
+		Assertions.assertTrue(set.containsIndex(99));
+		Assertions.assertTrue(set.remove("id50"));
+		Assertions.assertFalse(set.removeIndex(50));
+		Assertions.assertFalse(set.contains("id50"));
+		Assertions.assertFalse(set.addIndex(10));
+
+		// A far index makes the set sparse again
+		for (var i = 100; i < 10000; i++) {
+			dictionary.add("id" + i);
+		}
+		Assertions.assertTrue(set.add("id9999"));
+		Assertions.assertTrue(set.contains("id9999"));
+		Assertions.assertTrue(set.contains("id99"));
+		Assertions.assertEquals(100, set.size());
+	}
+
+	@Test
+	void iterator() {
+		final var set = new IdSet(new IdDictionary(), List.of("a", "b"));
+		final var iterator = set.iterator();
+		Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+		Assertions.assertEquals("a", iterator.next());
+		iterator.remove();
+		Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+		Assertions.assertEquals("b", iterator.next());
+		Assertions.assertFalse(iterator.hasNext());
+		Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+		Assertions.assertEquals(Set.of("b"), set);
+
+		set.removeIf("b"::equals);
+		Assertions.assertTrue(set.isEmpty());
+	}
+}
@@ -3,14 +3,19 @@
  */
 package org.ligoj.app.dao;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 
+import jakarta.persistence.LockModeType;
+
 import org.ligoj.app.model.Event;
 import org.ligoj.app.model.EventType;
 import org.ligoj.app.model.Node;
 import org.ligoj.app.model.Subscription;
 import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
@@ -40,6 +45,90 @@ public interface EventRepository extends RestRepository<Event, String> {
 	@SuppressWarnings("unused")
 	Event findFirstBySubscriptionAndTypeOrderByIdDesc(Subscription subscription, EventType type);
 
+	/**
+	 * find the latest event for a node and a type
+	 *
+	 * @param node node
+	 * @param type event type
+	 * @return latest event
+	 */
+	@SuppressWarnings("unused")
+	Event findFirstByNodeAndTypeAndLatestTrue(Node node, EventType type);
+
+	/**
+	 * find the latest event for a subscription and a type
+	 *
+	 * @param subscription subscription
+	 * @param type         event type
+	 * @return latest event
+	 */
+	@SuppressWarnings("unused")
+	Event findFirstBySubscriptionAndTypeAndLatestTrue(Subscription subscription, EventType type);
+
+	/**
+	 * Return the latest event of each given node for a type, in a single query.
+	 *
+	 * @param type  The event type.
+	 * @param nodes The node identifiers.
+	 * @return The node identifier (index=0) and the latest event (index=1). Nodes without event are absent.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.node.id, e FROM Event e WHERE e.latest = true AND e.type = :type AND e.node.id IN :nodes")
+	List<Object[]> findLastNodeEvents(EventType type, Collection<String> nodes);
+
+	/**
+	 * Return the latest event of each given subscription for a type, in a single query.
+	 *
+	 * @param type          The event type.
+	 * @param subscriptions The subscription identifiers.
+	 * @return The subscription identifier (index=0) and the latest event (index=1). Subscriptions without event are
+	 * absent.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.subscription.id, e FROM Event e WHERE e.latest = true AND e.type = :type AND e.subscription.id IN :subscriptions")
+	List<Object[]> findLastSubscriptionEvents(EventType type, Collection<Integer> subscriptions);
+
+	/**
+	 * Count the events of each given node for a type since a date, in a single query.
+	 *
+	 * @param type  The event type.
+	 * @param nodes The node identifiers.
+	 * @param since The inclusive lower bound of the event dates.
+	 * @return The node identifier (index=0) and the amount of events (index=1). Nodes without event are absent.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.node.id, COUNT(e) FROM Event e WHERE e.type = :type AND e.node.id IN :nodes AND e.date >= :since"
+			+ " GROUP BY e.node.id")
+	List<Object[]> countNodeEvents(EventType type, Collection<String> nodes, Instant since);
+
+	/**
+	 * Return the value and the date of the latest event of each subscription of the given nodes for a type, in a
+	 * single query.
+	 *
+	 * @param type  The event type.
+	 * @param nodes The node identifiers.
+	 * @return The node identifier (index=0), the value (index=1) and the date (index=2) of the latest event of one of
+	 * its subscriptions. Nodes without subscription event are absent.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT s.node.id, e.value, e.date FROM Event e INNER JOIN e.subscription s WHERE e.latest = true"
+			+ " AND e.type = :type AND s.node.id IN :nodes")
+	List<Object[]> findLastSubscriptionNodeValues(EventType type, Collection<String> nodes);
+
+	/**
+	 * Count the subscription events of each given node for a type since a date, in a single query.
+	 *
+	 * @param type  The event type.
+	 * @param nodes The node identifiers.
+	 * @param since The inclusive lower bound of the event dates.
+	 * @return The node identifier (index=0) and the amount of events of its subscriptions (index=1). Nodes without
+	 * subscription event are absent.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT s.node.id, COUNT(e) FROM Event e INNER JOIN e.subscription s WHERE e.type = :type"
+			+ " AND s.node.id IN :nodes AND e.date >= :since GROUP BY s.node.id")
+	List<Object[]> countSubscriptionNodeEvents(EventType type, Collection<String> nodes, Instant since);
+
 	/**
 	 * Return last events of all visible nodes for a given user.
 	 *
@@ -48,8 +137,7 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 */
 	@SuppressWarnings("unused")
 	@Query("SELECT event FROM Event event INNER JOIN FETCH event.node n INNER JOIN FETCH n.refined tool INNER JOIN tool.refined root"
-			+ " WHERE event.id = (SELECT MAX(cast(lastEvent.id as Integer)) FROM Event lastEvent WHERE lastEvent.node = n) AND "
-			+ NodeRepository.VISIBLE_NODES)
+			+ " WHERE event.latest = true AND " + NodeRepository.VISIBLE_NODES)
 	List<Event> findLastEvents(String user);
 
 	/**
@@ -60,7 +148,7 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 * @return last events of a specific node.
 	 */
 	@SuppressWarnings("unused")
-	@Query("SELECT e FROM Event e INNER JOIN e.node n WHERE e.id = (SELECT MAX(cast(lastEvent.id as Integer)) FROM Event lastEvent WHERE lastEvent.node = n) AND n.id = :node AND"
+	@Query("SELECT e FROM Event e INNER JOIN e.node n WHERE e.latest = true AND n.id = :node AND"
 			+ NodeRepository.VISIBLE_NODES)
 	Event findLastEvent(String user, String node);
 
@@ -73,7 +161,7 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 * @return the last event of each matching node; nodes without an event are simply absent.
 	 */
 	@SuppressWarnings("unused")
-	@Query("SELECT e FROM Event e INNER JOIN e.node n WHERE e.id = (SELECT MAX(cast(lastEvent.id as Integer)) FROM Event lastEvent WHERE lastEvent.node = n) AND n.id IN :nodes AND"
+	@Query("SELECT e FROM Event e INNER JOIN e.node n WHERE e.latest = true AND n.id IN :nodes AND"
 			+ NodeRepository.VISIBLE_NODES)
 	List<Event> findLastEvents(String user, Collection<String> nodes);
 
@@ -85,7 +173,7 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 */
 	@SuppressWarnings("unused")
 	@Query("SELECT event FROM Event event INNER JOIN FETCH event.subscription sub "
-			+ " WHERE sub.project.id = :project AND event.id = (SELECT MAX(cast(lastEvent.id as Integer)) FROM Event lastEvent WHERE lastEvent.subscription = sub)")
+			+ " WHERE sub.project.id = :project AND event.latest = true")
 	List<Event> findLastEvents(int project);
 
 	/**
@@ -96,10 +184,149 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 */
 	@SuppressWarnings("unused")
 	@Query("SELECT n.id, event.value, count(event) FROM Event event INNER JOIN event.subscription sub LEFT JOIN sub.node n"
-			+ " WHERE event.id = (SELECT MAX(cast(lastEvent.id as Integer)) FROM Event lastEvent WHERE lastEvent.subscription = sub) AND "
-			+ NodeRepository.VISIBLE_NODES + " GROUP BY event.value, n.id")
+			+ " WHERE event.latest = true AND " + NodeRepository.VISIBLE_NODES + " GROUP BY event.value, n.id")
 	List<Object[]> countSubscriptionsEvents(String user);
 
+	/**
+	 * Return the identifier of the latest event of each node or subscription and type having no event flagged as the
+	 * latest one, computed from the whole history. Used only to materialize the events registered before the
+	 * introduction of {@link Event#getLatest()}, so this query is idempotent.
+	 *
+	 * @return The identifiers of the latest events to flag.
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT MAX(cast(e.id as Integer)) FROM Event e LEFT JOIN e.node n LEFT JOIN e.subscription s"
+			+ " GROUP BY n.id, s.id, e.type HAVING SUM(CASE WHEN e.latest = true THEN 1 ELSE 0 END) = 0")
+	List<Integer> findLatestIds();
+
+	/**
+	 * Flag the given events as the latest ones.
+	 *
+	 * @param ids The event identifiers.
+	 */
+	@SuppressWarnings("unused")
+	@Modifying
+	@Query("UPDATE Event SET latest = true WHERE id IN :ids")
+	void markLatest(Collection<Integer> ids);
+
+	/**
+	 * Lock the given nodes until the end of the current transaction, in a stable order. This serializes the
+	 * registrations of the events of a same node: the last event is read and replaced by a single transaction at a
+	 * time, whatever the isolation level.
+	 *
+	 * @param nodes The node identifiers.
+	 * @return The locked nodes.
+	 */
+	@SuppressWarnings("unused")
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT n FROM Node n WHERE n.id IN :nodes ORDER BY n.id")
+	List<Node> lockNodes(Collection<String> nodes);
+
+	/**
+	 * Lock the given subscriptions until the end of the current transaction, in a stable order. This serializes the
+	 * registrations of the events of a same subscription: the last event is read and replaced by a single transaction
+	 * at a time, whatever the isolation level.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The locked subscriptions.
+	 */
+	@SuppressWarnings("unused")
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT s FROM Subscription s WHERE s.id IN :subscriptions ORDER BY s.id")
+	List<Subscription> lockSubscriptions(Collection<Integer> subscriptions);
+
+	/**
+	 * Unflag the latest events of the given nodes for a type. The nodes must be locked before with
+	 * {@link #lockNodes(Collection)}, a concurrent transaction would not see the uncommitted latest event otherwise.
+	 *
+	 * @param type  The event type.
+	 * @param nodes The node identifiers.
+	 * @return The amount of unflagged events.
+	 */
+	@SuppressWarnings("unused")
+	@Modifying(flushAutomatically = true)
+	@Query("UPDATE Event SET latest = false WHERE latest = true AND type = :type AND node.id IN :nodes")
+	int unmarkLatestNodes(EventType type, Collection<String> nodes);
+
+	/**
+	 * Unflag the latest events of the given subscriptions for a type. The subscriptions must be locked before with
+	 * {@link #lockSubscriptions(Collection)}, a concurrent transaction would not see the uncommitted latest event
+	 * otherwise.
+	 *
+	 * @param type          The event type.
+	 * @param subscriptions The subscription identifiers.
+	 * @return The amount of unflagged events.
+	 */
+	@SuppressWarnings("unused")
+	@Modifying(flushAutomatically = true)
+	@Query("UPDATE Event SET latest = false WHERE latest = true AND type = :type AND subscription.id IN :subscriptions")
+	int unmarkLatestSubscriptions(EventType type, Collection<Integer> subscriptions);
+
+	/**
+	 * Return a chunk of events from the whole history, ordered by identifier, with only the attributes needed to
+	 * detect the runs of identical values.
+	 *
+	 * @param from The exclusive lower bound of the event identifiers.
+	 * @param page The chunk size.
+	 * @return The event identifier (index=0), node (index=1), subscription (index=2), type (index=3), value (index=4)
+	 * and latest flag (index=5).
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.id, n.id, s.id, e.type, e.value, e.latest FROM Event e LEFT JOIN e.node n LEFT JOIN e.subscription s"
+			+ " WHERE e.id > :from ORDER BY e.id")
+	List<Object[]> findAllValues(int from, Pageable page);
+
+	/**
+	 * Return the last value of each type of the given nodes, within the events up to an identifier. Used to resume a
+	 * compaction after the already compacted events.
+	 *
+	 * @param to    The inclusive upper bound of the event identifiers.
+	 * @param nodes The node identifiers.
+	 * @return The node (index=0), type (index=1) and value (index=2).
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.node.id, e.type, e.value FROM Event e WHERE e.id IN (SELECT MAX(x.id) FROM Event x"
+			+ " WHERE x.id <= :to AND x.node.id IN :nodes GROUP BY x.node.id, x.type)")
+	List<Object[]> findLastNodeValues(int to, Collection<String> nodes);
+
+	/**
+	 * Return the last value of each type of the given subscriptions, within the events up to an identifier. Used to
+	 * resume a compaction after the already compacted events.
+	 *
+	 * @param to            The inclusive upper bound of the event identifiers.
+	 * @param subscriptions The subscription identifiers.
+	 * @return The subscription (index=0), type (index=1) and value (index=2).
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.subscription.id, e.type, e.value FROM Event e WHERE e.id IN (SELECT MAX(x.id) FROM Event x"
+			+ " WHERE x.id <= :to AND x.subscription.id IN :subscriptions GROUP BY x.subscription.id, x.type)")
+	List<Object[]> findLastSubscriptionValues(int to, Collection<Integer> subscriptions);
+
+	/**
+	 * Return a chunk of the events older than the given horizon, ordered by identifier. The latest events are never
+	 * returned.
+	 *
+	 * @param horizon The exclusive upper bound of the event dates.
+	 * @param from    The exclusive lower bound of the event identifiers.
+	 * @param page    The chunk size.
+	 * @return The event identifier (index=0), type (index=1), value (index=2), date (index=3), subscription (index=4)
+	 * and node (index=5).
+	 */
+	@SuppressWarnings("unused")
+	@Query("SELECT e.id, e.type, e.value, e.date, s.id, n.id FROM Event e LEFT JOIN e.node n LEFT JOIN e.subscription s"
+			+ " WHERE e.id > :from AND e.date < :horizon AND (e.latest IS NULL OR e.latest = false) ORDER BY e.id")
+	List<Object[]> findAllExpired(Instant horizon, int from, Pageable page);
+
+	/**
+	 * Delete the given events.
+	 *
+	 * @param ids The event identifiers.
+	 */
+	@SuppressWarnings("unused")
+	@Modifying
+	@Query("DELETE Event WHERE id IN :ids")
+	void deleteByIds(Collection<Integer> ids);
+
 	/**
 	 * Delete all events related to the given node.
 	 *
@@ -107,7 +334,7 @@ public interface EventRepository extends RestRepository<Event, String> {
 	 */
 	@SuppressWarnings("unused")
 	@Modifying
-	@Query("DELETE Event WHERE node.id = :node OR node.id LIKE CONCAT(:node, ':%')"
-			+ " OR subscription.id IN (SELECT id FROM Subscription WHERE node.id = :node OR node.id LIKE CONCAT(:node, ':%'))")
+	@Query("DELETE Event WHERE node.id IN (" + NodeRepository.SUB_NODES + ")"
+			+ " OR subscription.id IN (SELECT id FROM Subscription WHERE node.id IN (" + NodeRepository.SUB_NODES + "))")
 	void deleteByNode(String node);
 }
@@ -3,6 +3,7 @@
  */
 package org.ligoj.app.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.ligoj.app.api.SubscriptionMode;
@@ -22,8 +23,12 @@ public interface NodeRepository extends RestRepository<Node, String> {
 	/**
 	 * Match delegate.
 	 */
-	String MATCH_DELEGATE = "(n.id LIKE CONCAT(d.name, ':%') OR d.name=n.id) AND "
-			+ DelegateOrgRepository.ASSIGNED_DELEGATE_D;
+	String MATCH_DELEGATE = "d.name MEMBER OF n.ancestors AND " + DelegateOrgRepository.ASSIGNED_DELEGATE_D;
+
+	/**
+	 * Identifiers of the given node and all its sub-nodes, resolved from the ancestry index.
+	 */
+	String SUB_NODES = "SELECT xn.id FROM Node xn INNER JOIN xn.ancestors xa WHERE xa = :node";
 
 	/**
 	 * Visible nodes condition.
@@ -52,6 +57,15 @@ public interface NodeRepository extends RestRepository<Node, String> {
 	 */
 	String ADMIN_NODES = VISIBLE_NODES_PART + " AND d.canAdmin = true))";
 
+	/**
+	 * ":user" : Context user login <br>
+	 * ":nodes" : The node identifiers delegated to this user with the required access, see
+	 * {@link org.ligoj.app.resource.node.NodeAuthorization} <br>
+	 * Granted nodes condition : either administrator, either one of the ancestors of the node is delegated.
+	 */
+	String GRANTED_NODES = "(" + SystemUser.IS_ADMIN
+			+ " OR EXISTS(SELECT 1 FROM Node xn INNER JOIN xn.ancestors xa WHERE xn.id = n.id AND xa IN :nodes))";
+
 	/**
 	 * Return all nodes with all unsecured parameters.
 	 *
@@ -61,6 +75,17 @@ public interface NodeRepository extends RestRepository<Node, String> {
 			+ " LEFT JOIN p.parameter param ON (param.id=p.parameter.id AND param.secured != TRUE) ORDER BY UPPER(n.name)")
 	List<Object[]> findAllWithValuesSecure();
 
+	/**
+	 * Return the given node and all its sub-nodes with all unsecured parameters.
+	 *
+	 * @param node The node identifier.
+	 * @return the nodes.
+	 */
+	@Query("SELECT n, p FROM ParameterValue p RIGHT JOIN p.node n"
+			+ " LEFT JOIN p.parameter param ON (param.id=p.parameter.id AND param.secured != TRUE)"
+			+ " WHERE n.id IN (" + SUB_NODES + ")")
+	List<Object[]> findAllWithValuesSecure(String node);
+
 	/**
 	 * Return final nodes, so representing a node (running instance) of a tool.
 	 *
@@ -69,6 +94,23 @@ public interface NodeRepository extends RestRepository<Node, String> {
 	@Query("SELECT n FROM Node n INNER JOIN FETCH n.refined tool WHERE tool.refined IS NOT NULL ORDER BY UPPER(n.name)")
 	List<Node> findAllInstance();
 
+	/**
+	 * Return the nodes created before the ancestry index.
+	 *
+	 * @return The nodes without materialized ancestry.
+	 */
+	@Query("SELECT n FROM Node n WHERE n.ancestors IS EMPTY")
+	List<Node> findAllNoAncestors();
+
+	/**
+	 * Return the identifiers of the given node and all its sub-nodes.
+	 *
+	 * @param node The node identifier.
+	 * @return The node and sub-node identifiers.
+	 */
+	@Query(SUB_NODES)
+	List<String> findAllSubNodes(String node);
+
 	/**
 	 * Return final nodes, so representing a node (running instance) of a tool and visible for a given user.
 	 *
@@ -79,6 +121,17 @@ public interface NodeRepository extends RestRepository<Node, String> {
 			+ " ORDER BY UPPER(n.name)")
 	List<Node> findAllInstance(String user);
 
+	/**
+	 * Return final nodes, so representing a node (running instance) of a tool and visible for a given user.
+	 *
+	 * @param user  The user requesting the nodes.
+	 * @param nodes The node identifiers delegated to this user.
+	 * @return instance nodes considered as final .
+	 */
+	@Query("SELECT n FROM Node n INNER JOIN FETCH n.refined tool WHERE tool.refined IS NOT NULL AND " + GRANTED_NODES
+			+ " ORDER BY UPPER(n.name)")
+	List<Node> findAllInstance(String user, Collection<String> nodes);
+
 	/**
 	 * Count subscriptions by node and visible to a given user.
 	 *
@@ -89,6 +142,17 @@ public interface NodeRepository extends RestRepository<Node, String> {
 			+ " GROUP BY n.id")
 	List<Object[]> countNodeSubscriptions(String user);
 
+	/**
+	 * Count subscriptions by node and visible to a given user.
+	 *
+	 * @param user  The user requesting the nodes.
+	 * @param nodes The node identifiers delegated to this user.
+	 * @return node subscriptions count
+	 */
+	@Query("SELECT n.id, count(sub) FROM Subscription sub INNER JOIN sub.node n WHERE " + GRANTED_NODES
+			+ " GROUP BY n.id")
+	List<Object[]> countNodeSubscriptions(String user, Collection<String> nodes);
+
 	/**
 	 * Return a {@link Node} by its identifier if it is visible for the current user.
 	 *
@@ -119,6 +183,29 @@ public interface NodeRepository extends RestRepository<Node, String> {
 	@Query("SELECT n FROM Node n WHERE n.id=:id AND " + ADMIN_NODES)
 	Node findOneAdministrable(String id, String user);
 
+	/**
+	 * Return a {@link Node} by its identifier if it is visible for current user and if this user can create a
+	 * subscription on it.
+	 *
+	 * @param id   The identifier to find.
+	 * @param user The user requesting the node.
+	 * @return The visible node the user can subscribe or <code>null</code>.
+	 */
+	@Query("SELECT n FROM Node n WHERE n.id=:id AND " + SUBSCRIBE_NODES)
+	Node findOneForSubscription(String id, String user);
+
+	/**
+	 * Return a {@link Node} by its identifier if it is granted to the current user. The required access is the one
+	 * used to resolve the delegated nodes.
+	 *
+	 * @param id    The identifier to find.
+	 * @param user  The user requesting the node.
+	 * @param nodes The node identifiers delegated to this user with the required access.
+	 * @return The granted node or <code>null</code>.
+	 */
+	@Query("SELECT n FROM Node n WHERE n.id=:id AND " + GRANTED_NODES)
+	Node findOneGranted(String id, String user, Collection<String> nodes);
+
 	/**
 	 * Return all visible {@link Node} for current user.
 	 *
@@ -143,15 +230,28 @@ public interface NodeRepository extends RestRepository<Node, String> {
 			Pageable page);
 
 	/**
-	 * Return a {@link Node} by its identifier if it is visible for current user and if this user can create a
-	 * subscription on it.
+	 * Return all visible {@link Node} for current user.
 	 *
-	 * @param id   The identifier to find.
-	 * @param user The user requesting the node.
-	 * @return The visible node the user can subscribe or <code>null</code>.
+	 * @param user     The user requesting the nodes.
+	 * @param nodes    The node identifiers delegated to this user.
+	 * @param criteria The optional criteria to match in the name.
+	 * @param parent   The optional parent identifier to be like. Special attention for 'service' value corresponding to
+	 *                 the root.
+	 * @param mode     Expected subscription mode. When <code>null</code>, the node's mode is not checked.
+	 * @param depth    The maximal depth. When <code>0</code> means no refined, so basically services only.
+	 *                 <code>1</code> means refined is a service, so nodes are basically tool only. <code>2</code> means
+	 *                 refined is a tool, so nodes are basically instances only. For the other cases, there is no limit.
+	 * @param page     The pagination.
+	 * @return The visible nodes. Ordered by their identifier.
 	 */
-	@Query("SELECT n FROM Node n WHERE n.id=:id AND " + SUBSCRIBE_NODES)
-	Node findOneForSubscription(String id, String user);
+	@Query("SELECT n FROM Node n LEFT JOIN n.refined nr1 LEFT JOIN nr1.refined nr2"
+			+ " WHERE (CAST(:parent as string) IS NULL OR (:parent = 'service' AND n.refined IS NULL) OR n.refined.id = :parent)"
+			+ " AND (:depth < 0 OR :depth > 1 OR (:depth = 0 AND nr1 IS NULL) OR (:depth = 1 AND nr2 IS NULL))  "
+			+ " AND (CAST(:mode as string) IS NULL OR n.mode = :mode OR n.mode = org.ligoj.app.api.SubscriptionMode.ALL)        "
+			+ " AND (UPPER(n.name) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))) AND " + GRANTED_NODES
+			+ " ORDER BY n.id")
+	Page<Node> findAllVisible(String user, Collection<String> nodes, String criteria, String parent,
+			SubscriptionMode mode, int depth, Pageable page);
 
 	/**
 	 * Return the amount of nodes having the parent node.
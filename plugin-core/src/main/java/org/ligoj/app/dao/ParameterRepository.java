@@ -70,6 +70,6 @@ public interface ParameterRepository extends RestRepository<Parameter, String> {
 	 */
 	@SuppressWarnings("unused")
 	@Modifying
-	@Query("DELETE Parameter WHERE owner.id = :node OR owner.id LIKE CONCAT(:node, ':%')")
+	@Query("DELETE Parameter WHERE owner.id IN (" + NodeRepository.SUB_NODES + ")")
 	void deleteByNode(String node);
 }
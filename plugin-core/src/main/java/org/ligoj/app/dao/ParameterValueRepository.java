@@ -16,7 +16,7 @@ import org.springframework.data.jpa.repository.Query;
 @SuppressWarnings("ALL")
 public interface ParameterValueRepository extends RestRepository<ParameterValue, Integer> {
 
-	String RELATED_SUBSCRIPTION = "  (s.id = :subscription AND (v.subscription.id = :subscription OR v.node.id = s.node.id OR s.node.id LIKE CONCAT(v.node.id, ':%')))";
+	String RELATED_SUBSCRIPTION = "  (s.id = :subscription AND (v.subscription.id = :subscription OR v.node.id MEMBER OF s.node.ancestors))";
 
 	/**
 	 * Return all parameter values associated to a node, including the ones from the parent.
@@ -25,7 +25,7 @@ public interface ParameterValueRepository extends RestRepository<ParameterValue,
 	 * @return All parameter values associated to a node.
 	 */
 	@SuppressWarnings("unused")
-	@Query("SELECT v FROM ParameterValue v INNER JOIN v.node n WHERE n.id = :node OR :node LIKE CONCAT(n.id, ':%')")
+	@Query("SELECT v FROM ParameterValue v, Node x WHERE x.id = :node AND v.node.id MEMBER OF x.ancestors")
 	List<ParameterValue> getParameterValues(String node);
 
 	/**
@@ -78,13 +78,10 @@ public interface ParameterValueRepository extends RestRepository<ParameterValue,
 	 */
 	@SuppressWarnings("unused")
 	@Modifying
-	@Query("""
-			DELETE ParameterValue WHERE
-			       parameter.id IN (SELECT id FROM Parameter WHERE owner.id = :node OR owner.id LIKE CONCAT(:node, ':%'))
-			    OR subscription.id IN (SELECT id FROM Subscription WHERE node.id = :node OR node.id LIKE CONCAT(:node, ':%'))
-			    OR node.id = :node
-			    OR node.id LIKE CONCAT(:node, ':%')
-			""")
+	@Query("DELETE ParameterValue WHERE"
+			+ "    parameter.id IN (SELECT id FROM Parameter WHERE owner.id IN (" + NodeRepository.SUB_NODES + "))"
+			+ " OR subscription.id IN (SELECT id FROM Subscription WHERE node.id IN (" + NodeRepository.SUB_NODES + "))"
+			+ " OR node.id IN (" + NodeRepository.SUB_NODES + ")")
 	void deleteByNode(String node);
 
 	/**
@@ -118,8 +115,8 @@ public interface ParameterValueRepository extends RestRepository<ParameterValue,
 			    AND param.id = :parameter
 			    AND UPPER(v.data) LIKE UPPER(CONCAT(CONCAT('%', :criteria),'%'))
 			    AND param.secured != TRUE
-			    AND (s.node.id = :node OR s.node.id LIKE CONCAT(:node, ':%'))
-			    AND (v.subscription.id = s.id OR s.node.id LIKE CONCAT(v.node.id, ':%'))
+			    AND :node MEMBER OF n.ancestors
+			    AND (v.subscription.id = s.id OR v.node.id MEMBER OF n.ancestors AND v.node.id <> n.id)
 			  ORDER BY v.data, v.id
 			""")
 	List<ParameterValue> findAll(String node, String parameter, int project, String criteria);
@@ -3,6 +3,7 @@
  */
 package org.ligoj.app.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.ligoj.app.iam.dao.DelegateOrgRepository;
@@ -31,6 +32,27 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 	String VISIBLE_PROJECTS = "(" + SystemUser.IS_ADMIN
 			+ " OR visibleProject(p.teamLeader, cg.description, :user) = true)";
 
+	/**
+	 * ":user" : Context user login <br>
+	 * ":projects" : The identifiers of the projects visible by this user, see
+	 * {@link org.ligoj.app.resource.project.ProjectAuthorization} <br>
+	 * Granted projects condition : either administrator, either visible project.
+	 */
+	String GRANTED_PROJECTS = "(" + SystemUser.IS_ADMIN + " OR p.id IN :projects)";
+
+	/**
+	 * Maximal amount of project identifiers given to a {@link #GRANTED_PROJECTS} finder. Above, the finders
+	 * evaluating {@link #VISIBLE_PROJECTS} are used instead, so the statement and its bound parameters remain small.
+	 */
+	int MAX_GRANTED_PROJECTS = 500;
+
+	/**
+	 * ":user" : Context user login <br>
+	 * ":granted" : The resolved right of this user on the project <br>
+	 * Granted project condition : either administrator, either granted project.
+	 */
+	String GRANTED_PROJECT = "(:granted = true OR " + SystemUser.IS_ADMIN + ")";
+
 	/**
 	 * Return all {@link Project} objects with visible by <code>user</code> and also filtered by a criteria. The
 	 * constraints are:
@@ -55,6 +77,31 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 					+ "       OR UPPER(p.pkey)        LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))) GROUP BY p")
 	Page<Object[]> findAllLight(String user, String criteria, Pageable page);
 
+	/**
+	 * Return all {@link Project} objects with visible by <code>user</code> and also filtered by a criteria. The
+	 * constraints are:
+	 * <ul>
+	 * <li>Either <code>user</code> is a system administrator</li>
+	 * <li>Either <code>user</code> is the team leader</li>
+	 * <li>Either <code>user</code> is member of the group associated to this project via the CacheGroup</li>
+	 * </ul>
+	 *
+	 * @param user     The principal username
+	 * @param projects The identifiers of the projects visible by <code>user</code>.
+	 * @param criteria the optional criteria to match: name, description or pkey. Case is insensitive.
+	 * @param page     the pagination.
+	 * @return all {@link Project} objects with the given name. Insensitive case search is used.
+	 */
+	@Query(value = "SELECT p, COUNT(DISTINCT s.id) FROM Project AS p LEFT JOIN p.subscriptions AS s"
+			+ " WHERE " + GRANTED_PROJECTS + " AND (UPPER(p.name) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))"
+			+ "       OR UPPER(p.description) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))"
+			+ "       OR UPPER(p.pkey)        LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))) GROUP BY p                ",
+			countQuery = "SELECT COUNT(p) FROM Project AS p"
+					+ " WHERE " + GRANTED_PROJECTS + " AND (UPPER(p.name) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))"
+					+ "       OR UPPER(p.description) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))"
+					+ "       OR UPPER(p.pkey)        LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%')))")
+	Page<Object[]> findAllLight(String user, Collection<Integer> projects, String criteria, Pageable page);
+
 	/**
 	 * Return all {@link Project} objects having at least one subscription and with light information. The visibility is
 	 * checked:
@@ -71,6 +118,23 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 			+ VISIBLE_PROJECTS + " AND EXISTS(SELECT 1 FROM Subscription AS s WHERE s.project.id=p.id)")
 	List<Object[]> findAllHavingSubscription(String user);
 
+	/**
+	 * Return all {@link Project} objects having at least one subscription and with light information. The visibility is
+	 * checked:
+	 * <ul>
+	 * <li>Either <code>user</code> is a system administrator</li>
+	 * <li>Either <code>user</code> is the team leader</li>
+	 * <li>Either <code>user</code> is member of the group associated to this project via the CacheGroup</li>
+	 * </ul>
+	 *
+	 * @param user     The principal username
+	 * @param projects The identifiers of the projects visible by <code>user</code>.
+	 * @return all visible {@link Project} objects for <code>user</code>.
+	 */
+	@Query("SELECT p.id, p.name, p.pkey FROM Project AS p WHERE " + GRANTED_PROJECTS
+			+ " AND EXISTS(SELECT 1 FROM Subscription AS s WHERE s.project.id=p.id)")
+	List<Object[]> findAllHavingSubscription(String user, Collection<Integer> projects);
+
 	/**
 	 * Return a project by its identifier. The constraints are:
 	 * <ul>
@@ -87,6 +151,19 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 			+ VISIBLE_PROJECTS)
 	Project findOneVisible(int id, String user);
 
+	/**
+	 * Return a project by its identifier when it is visible by <code>user</code>, or when <code>user</code> is a
+	 * system administrator.
+	 *
+	 * @param id      The project's identifier to match.
+	 * @param user    The current username.
+	 * @param granted The visibility of this project resolved for <code>user</code>.
+	 * @return the project or <code>null</code> if not found or not visible.
+	 */
+	@Query("SELECT DISTINCT p FROM Project AS p LEFT JOIN FETCH p.subscriptions AS s WHERE p.id = :id AND "
+			+ GRANTED_PROJECT)
+	Project findOneVisible(int id, String user, boolean granted);
+
 	/**
 	 * Return a project by its primary key. The constraints are:
 	 * <ul>
@@ -103,6 +180,19 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 			+ VISIBLE_PROJECTS)
 	Project findByPKey(String pkey, String user);
 
+	/**
+	 * Return a project by its primary key when it is visible by <code>user</code>, or when <code>user</code> is a
+	 * system administrator.
+	 *
+	 * @param pkey     The project primary key to match.
+	 * @param user     The principal username.
+	 * @param projects The identifiers of the projects visible by <code>user</code>.
+	 * @return the project or <code>null</code> if not found or not visible.
+	 */
+	@Query("SELECT DISTINCT p FROM Project AS p LEFT JOIN FETCH p.subscriptions AS s WHERE p.pkey = :pkey AND "
+			+ GRANTED_PROJECTS)
+	Project findByPKey(String pkey, String user, Collection<Integer> projects);
+
 	/**
 	 * Return a project by its <code>pkey</code> without fetching the related subscriptions. The constraints are:
 	 * <ul>
@@ -119,6 +209,18 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 			+ VISIBLE_PROJECTS)
 	Project findByPKeyNoFetch(String pkey, String user);
 
+	/**
+	 * Return a project by its <code>pkey</code> without fetching the related subscriptions, when it is visible by
+	 * <code>user</code>, or when <code>user</code> is a system administrator.
+	 *
+	 * @param pkey     The primary key to match.
+	 * @param user     The principal username.
+	 * @param projects The identifiers of the projects visible by <code>user</code>.
+	 * @return the project or <code>null</code> if not found or not visible.
+	 */
+	@Query("SELECT p FROM Project AS p WHERE p.pkey = :pkey AND " + GRANTED_PROJECTS)
+	Project findByPKeyNoFetch(String pkey, String user, Collection<Integer> projects);
+
 	/**
 	 * Indicate <code>user</code> can manage the subscriptions of <code>project</code>. The constraints are:
 	 * <ul>
@@ -151,4 +253,28 @@ public interface ProjectRepository extends RestRepository<Project, Integer> {
 			+ "      (dz.type=org.ligoj.app.iam.model.DelegateType.TREE"
 			+ "       AND (cg0.description LIKE CONCAT('%,',dz.dn) OR dz.dn=cg0.description))))))))")
 	boolean isManageSubscription(int project, String user);
+
+	/**
+	 * Indicate <code>user</code> can manage the subscriptions of <code>project</code>: either <code>user</code> is a
+	 * system administrator, either the right resolved for <code>user</code> is granted.
+	 *
+	 * @param project The project's identifier to match.
+	 * @param user    The principal username.
+	 * @param granted The management right of this project resolved for <code>user</code>.
+	 * @return <code>true</code> when <code>user</code> can manage the subscriptions of this project.
+	 * @see #isManageSubscription(int, String)
+	 */
+	@Query("SELECT COUNT(p.id) > 0 FROM Project AS p WHERE p.id = :project AND " + GRANTED_PROJECT)
+	boolean isManageSubscription(int project, String user, boolean granted);
+
+	/**
+	 * Return the team leader and the linked groups of all projects, or of a single project.
+	 *
+	 * @param project The optional project's identifier to match. When <code>null</code>, all projects are returned.
+	 * @return The project identifier, the team leader and the group identifier. The group is <code>null</code> for a
+	 *         project without group, and there is one row per linked group.
+	 */
+	@Query("SELECT p.id, p.teamLeader, cg.id FROM Project AS p LEFT JOIN p.cacheGroups AS cpg"
+			+ " LEFT JOIN cpg.group AS cg WHERE CAST(:project AS Integer) IS NULL OR p.id = :project")
+	List<Object[]> findAllAuthorizations(Integer project);
 }
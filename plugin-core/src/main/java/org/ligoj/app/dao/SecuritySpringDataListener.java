@@ -20,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -112,14 +113,24 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 		sessionFactory.getQueryEngine().getSqmFunctionRegistry().register(sqlFunction.getName(), sqlFunction);
 	}
 
+	/**
+	 * A compiled function body: the literal fragments surrounding the argument slots.
+	 *
+	 * @param fragments The literal SQL fragments. There is one more fragment than slots.
+	 * @param slots     The index of the argument to render after each fragment.
+	 */
+	private record Template(String[] fragments, int[] slots) {
+	}
+
 	private class DnFunction extends StandardSQLFunction {
 
 		private final List<String> args;
 		private final String access;
 		private final String query;
+		private final Template template;
 
 		/**
-		 * Construct a standard SQL function definition with a static return type.
+		 * Construct a standard SQL function definition with a static return type. The body is compiled once there.
 		 *
 		 * @param name The name of the function.
 		 */
@@ -129,6 +140,7 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 			this.args = args;
 			this.access = access;
 			this.query = query;
+			this.template = compile(expand("(" + Objects.toString(query, "") + ")"));
 		}
 
 		@Override
@@ -140,7 +152,13 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 			if (sqlAstArguments.size() != args.size()) {
 				throw new QueryException("The function requires " + args.size() + " arguments, but received " + sqlAstArguments.size(), query);
 			}
-			parse("(" + Objects.toString(query, "") + ")", sqlAppender, sqlAstArguments, walker);
+			final var fragments = template.fragments();
+			final var slots = template.slots();
+			for (var i = 0; i < slots.length; i++) {
+				sqlAppender.append(fragments[i]);
+				walker.render(sqlAstArguments.get(slots[i]), SqlAstNodeRenderingMode.DEFAULT);
+			}
+			sqlAppender.append(fragments[slots.length]);
 		}
 
 		@Override
@@ -189,10 +207,12 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 					+ ",([^,)]+)".repeat(Math.max(nbParam - 1, 0)) + "\\)";
 		}
 
-		private void parse(final String query, SqlAppender sqlAppender, List<? extends
-				SqlAstNode> sqlAstArguments, final SqlAstTranslator<?> translator) {
+		/**
+		 * Expand the macros, the table aliases and the quoted reserved words of the given body.
+		 */
+		private String expand(final String query) {
 			final var quote = dialect.openQuote() + "$1" + dialect.closeQuote();
-			var remaining = query
+			return query
 					.replace("$exists", "(EXISTS (SELECT 1 FROM").replace("$end", "))")
 
 					// Quote reserved words
@@ -217,6 +237,15 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 
 					// Quote reserved words
 					.replaceAll("\\$q\\(([^)]+)\\)", quote);
+		}
+
+		/**
+		 * Split the expanded body into literal fragments and argument slots.
+		 */
+		private Template compile(final String query) {
+			final var fragments = new ArrayList<String>();
+			final var slots = new ArrayList<Integer>();
+			var remaining = query;
 
 			// Parameter alias
 			do {
@@ -234,12 +263,12 @@ public class SecuritySpringDataListener implements AfterJpaBeforeSpringDataListe
 					// all replacements have been done
 					break;
 				}
-				final var nextArg = args.get(nextArgIndex);
-				sqlAppender.append(remaining.substring(0, nextIndexInQuery));
-				translator.render(sqlAstArguments.get(nextArgIndex), SqlAstNodeRenderingMode.DEFAULT);
-				remaining = remaining.substring(nextIndexInQuery + nextArg.length());
+				fragments.add(remaining.substring(0, nextIndexInQuery));
+				slots.add(nextArgIndex);
+				remaining = remaining.substring(nextIndexInQuery + args.get(nextArgIndex).length());
 			} while (true);
-			sqlAppender.append(remaining);
+			fragments.add(remaining);
+			return new Template(fragments.toArray(String[]::new), slots.stream().mapToInt(Integer::intValue).toArray());
 		}
 
 	}
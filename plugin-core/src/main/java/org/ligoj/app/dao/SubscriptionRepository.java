@@ -65,6 +65,15 @@ public interface SubscriptionRepository extends RestRepository<Subscription, Int
 			+ " LEFT JOIN service.refined sn0 LEFT JOIN sn0.refined sn1 WHERE (service.id = :node OR sn0.id = :node OR sn1.id = :node)")
 	int countByNode(String node);
 
+	/**
+	 * Return the identifiers of the subscriptions to given node or one of the sub-nodes.
+	 *
+	 * @param node The subscribed node. Directly or not.
+	 * @return The subscription identifiers.
+	 */
+	@Query("SELECT id FROM Subscription WHERE node.id IN (" + NodeRepository.SUB_NODES + ")")
+	List<Integer> findAllIdsBySubNodes(String node);
+
 	/**
 	 * Return the amount of subscriptions involving the given parameter value.
 	 *
@@ -72,7 +81,7 @@ public interface SubscriptionRepository extends RestRepository<Subscription, Int
 	 * @return The amount of subscriptions involving the given parameter value directly or not.
 	 */
 	@Query("SELECT count(s.id) FROM Subscription s, ParameterValue v INNER JOIN s.node sn INNER JOIN v.node vn"
-			+ " WHERE v.id = :parameterValue AND (vn.id = sn.id OR sn.id LIKE CONCAT(vn.id, ':%'))")
+			+ " WHERE v.id = :parameterValue AND vn.id MEMBER OF sn.ancestors")
 	int countByParameterValue(int parameterValue);
 
 	/**
@@ -3,6 +3,7 @@
  */
 package org.ligoj.app.iam.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.ligoj.app.iam.model.CacheContainer;
@@ -31,6 +32,20 @@ public interface CacheContainerRepository<C extends CacheContainer> {
 	 */
 	String ADMIN_RESOURCE = "(" + SystemUser.IS_ADMIN + " OR admindn(l.description,:user)=true)";
 
+	/**
+	 * ":user" : Context user login <br>
+	 * ":ids" : The container identifiers granted to this user, see
+	 * {@link org.ligoj.app.resource.delegate.OrgAuthorization} <br>
+	 * Granted containers condition : either administrator, either granted container.
+	 */
+	String GRANTED_RESOURCE = "(" + SystemUser.IS_ADMIN + " OR l.id IN :ids)";
+
+	/**
+	 * Maximal amount of container identifiers given to a {@link #GRANTED_RESOURCE} finder. Above, the finders
+	 * evaluating the DN functions are used instead, so the statement and its bound parameters remain small.
+	 */
+	int MAX_GRANTED_CONTAINERS = 500;
+
 	/**
 	 * All visible containers regarding the security, and the criteria.
 	 *
@@ -97,6 +112,53 @@ public interface CacheContainerRepository<C extends CacheContainer> {
 	@Query("FROM #{#entityName} l WHERE " + ADMIN_RESOURCE)
 	List<C> findAllAdmin(String user);
 
+	/**
+	 * All containers among the given ones, and the criteria. The given identifiers are the ones resolved by the
+	 * in-memory authorization, and are ignored for a system administrator.
+	 *
+	 * @param user     The user requesting the operation.
+	 * @param ids      The identifiers of the containers granted to the user.
+	 * @param criteria Optional criteria.
+	 * @param page     Page control.
+	 * @return The pagination result.
+	 */
+	@SuppressWarnings("unused")
+	@Query("FROM #{#entityName} l WHERE (UPPER(cast(id as string)) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))) AND "
+			+ GRANTED_RESOURCE)
+	Page<C> findAllIn(String user, Collection<String> ids, String criteria, Pageable page);
+
+	/**
+	 * All containers among the given ones. The given identifiers are the ones resolved by the in-memory
+	 * authorization, and are ignored for a system administrator.
+	 *
+	 * @param user The user requesting the operation.
+	 * @param ids  The identifiers of the containers granted to the user.
+	 * @return The granted items.
+	 */
+	@SuppressWarnings("unused")
+	@Query("FROM #{#entityName} l WHERE " + GRANTED_RESOURCE)
+	List<C> findAllIn(String user, Collection<String> ids);
+
+	/**
+	 * Return a container matching to the given identifier and granted to the given user.
+	 *
+	 * @param user    The user requesting the operation.
+	 * @param id      The container's identifier to find.
+	 * @param granted The resolved right of this user on the container.
+	 * @return a container matching to the given identifier and granted to the given user. May be <code>null</code>
+	 */
+	@SuppressWarnings("unused")
+	@Query("FROM #{#entityName} l WHERE l.id=:id AND (:granted = true OR " + SystemUser.IS_ADMIN + ")")
+	C findById(String user, String id, boolean granted);
+
+	/**
+	 * Return the identifier and the DN of all containers.
+	 *
+	 * @return The identifier (index=0) and the DN (index=1) of all containers.
+	 */
+	@Query("SELECT id, description FROM #{#entityName}")
+	List<Object[]> findAllDescriptions();
+
 	/**
 	 * Return a container matching to the given identifier and also visible by the given user.
 	 *
@@ -3,8 +3,11 @@
  */
 package org.ligoj.app.iam.dao;
 
+import java.util.List;
+
 import org.ligoj.app.iam.model.CacheMembership;
 import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /**
  * {@link CacheMembership} repository
@@ -12,6 +15,13 @@ import org.ligoj.bootstrap.core.dao.RestRepository;
 @SuppressWarnings("ALL")
 public interface CacheMembershipRepository extends RestRepository<CacheMembership, Integer> {
 
-	// All delegated
+	/**
+	 * Return the DN of the groups the given user is directly member of.
+	 *
+	 * @param user The user identifier.
+	 * @return The DN of the groups of the given user.
+	 */
+	@Query("SELECT g.description FROM CacheMembership cm INNER JOIN cm.group g WHERE cm.user.id = :user")
+	List<String> findAllGroupDescriptions(String user);
 
 }
@@ -48,4 +48,13 @@ public interface CacheUserRepository extends RestRepository<CacheUser, String> {
 	@Query(value = "SELECT u FROM SystemUser u LEFT JOIN FETCH u.roles ra LEFT JOIN FETCH ra.role" + LOOKUP_WHERE,
 			countQuery = "SELECT COUNT(u)" + LOOKUP_CRITERIA)
 	Page<SystemUser> findAllSystemUsersByDetails(String criteria, Pageable page);
+
+	/**
+	 * Return the DN of the company of the given user.
+	 *
+	 * @param user The user identifier.
+	 * @return The DN of the company of the given user. <code>null</code> when the user is not known.
+	 */
+	@Query("SELECT c.description FROM CacheUser u INNER JOIN u.company c WHERE u.id = :user")
+	String findCompanyDescription(String user);
 }
@@ -3,6 +3,7 @@
  */
 package org.ligoj.app.iam.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.ligoj.app.iam.model.DelegateOrg;
@@ -60,6 +61,34 @@ public interface DelegateOrgRepository extends RestRepository<DelegateOrg, Integ
 			+ "  OR EXISTS (SELECT dz.id FROM DelegateOrg dz WHERE " + ASSIGNED_DELEGATE_DZ
 			+ "    AND (dz.type=d.type OR dz.type=org.ligoj.app.iam.model.DelegateType.TREE)                         "
 			+ "    AND (dz.canAdmin=true AND (d.dn LIKE CONCAT('%,',dz.dn) OR dz.dn=d.dn))))                         ";
+	/**
+	 * ":user" : Context user login <br>
+	 * ":delegates" : The delegate identifiers visible by this user, see
+	 * {@link org.ligoj.app.resource.delegate.OrgAuthorization} <br>
+	 * Granted delegates condition : either administrator, either visible delegate.
+	 */
+	String GRANTED_DELEGATE = "(" + SystemUser.IS_ADMIN + " OR d.id IN :delegates)";
+
+	/**
+	 * Maximal amount of delegate identifiers given to a {@link #GRANTED_DELEGATE} finder. Above, the finders
+	 * evaluating {@link #VISIBLE_DELEGATE} are used instead, so the statement and its bound parameters remain small.
+	 */
+	int MAX_GRANTED_DELEGATES = 500;
+
+	/**
+	 * ":type" : Optional type of resource <br>
+	 * ":criteria" : Receiver, name or tree DN to match <br>
+	 * Match the criteria of a delegate
+	 */
+	String MATCH_CRITERIA = """
+			 AND (CAST(:type as string) IS NULL OR d.type = :type)
+			  AND (:criteria = ''
+			   OR   UPPER(d.receiver) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))
+			   OR   UPPER(d.name)     LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))
+			   OR   (d.type=org.ligoj.app.iam.model.DelegateType.TREE
+			     AND UPPER(d.dn)       LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))))
+			""";
+
 	/**
 	 * ":type" : Type of resource <br>
 	 * <br>
@@ -141,16 +170,35 @@ public interface DelegateOrgRepository extends RestRepository<DelegateOrg, Integ
 	 * @param page     The pagination.
 	 * @return All {@link DelegateOrg} objects with the given name. Insensitive case search is used.
 	 */
-	@Query("FROM DelegateOrg d WHERE " + VISIBLE_DELEGATE + """
-			 AND (CAST(:type as string) IS NULL OR d.type = :type)
-			  AND (:criteria = ''
-			   OR   UPPER(d.receiver) LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))
-			   OR   UPPER(d.name)     LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))
-			   OR   (d.type=org.ligoj.app.iam.model.DelegateType.TREE
-			     AND UPPER(d.dn)       LIKE UPPER(CONCAT(CONCAT('%',:criteria),'%'))))
-			""")
+	@Query("FROM DelegateOrg d WHERE " + VISIBLE_DELEGATE + MATCH_CRITERIA)
 	Page<DelegateOrg> findAll(String user, String criteria, DelegateType type, Pageable page);
 
+	/**
+	 * Return a granted {@link DelegateOrg} from its identifier.
+	 *
+	 * @param user    The target username, receiving the delegation.
+	 * @param id      The identifier.
+	 * @param granted The resolved visibility of this delegate for this user.
+	 * @return A visible {@link DelegateOrg} from its identifier.
+	 */
+	@Query("FROM DelegateOrg d WHERE id=:id AND (:granted = true OR " + SystemUser.IS_ADMIN + ")")
+	DelegateOrg findById(String user, int id, boolean granted);
+
+	/**
+	 * Return all {@link DelegateOrg} objects among the given ones, and regarding the given criteria. The given
+	 * identifiers are the ones resolved by the in-memory authorization, and are ignored for a system administrator.
+	 *
+	 * @param user      The target username, receiving the delegation.
+	 * @param delegates The identifiers of the delegates visible by the user.
+	 * @param criteria  Optional, use to filter by receiver's name of delegate's name.
+	 * @param type      Optional {@link DelegateType} to match.
+	 * @param page      The pagination.
+	 * @return All {@link DelegateOrg} objects with the given name. Insensitive case search is used.
+	 */
+	@Query("FROM DelegateOrg d WHERE " + GRANTED_DELEGATE + MATCH_CRITERIA)
+	Page<DelegateOrg> findAll(String user, Collection<Integer> delegates, String criteria, DelegateType type,
+			Pageable page);
+
 	/**
 	 * Return delegate identifiers matching to the given DN
 	 *
@@ -18,7 +18,8 @@ import java.time.Instant;
 @Getter
 @Setter
 @Entity
-@Table(name = "LIGOJ_EVENT")
+@Table(name = "LIGOJ_EVENT", indexes = { @Index(columnList = "node_id,type,latest"),
+		@Index(columnList = "subscription_id,type,latest") })
 public class Event extends AbstractPersistable<Integer> implements NodeScoped<Integer> {
 
 	/**
@@ -52,4 +53,10 @@ public class Event extends AbstractPersistable<Integer> implements NodeScoped<In
 	 */
 	@ManyToOne
 	private Subscription subscription;
+
+	/**
+	 * When <code>true</code>, this event is the latest one of its node or subscription for its type. Maintained by
+	 * the event registration to avoid the lookup of the maximal identifier within the whole history.
+	 */
+	private Boolean latest;
 }
@@ -15,6 +15,11 @@ import org.ligoj.app.api.SubscriptionMode;
 import org.ligoj.bootstrap.core.INamableBean;
 import org.ligoj.bootstrap.core.model.AbstractStringKeyEntity;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Node definition. Node#key is used as additional business key.
  */
@@ -68,6 +73,43 @@ public class Node extends AbstractStringKeyEntity implements Refining<Node>, Nod
 	 */
 	private String tagUiClasses;
 
+	/**
+	 * Identifiers of this node and of all its ancestors, materialized from the hierarchical identifier on creation.
+	 * This ancestry index replaces the reversed <code>LIKE</code> predicates by index seeks. Since the identifier is
+	 * immutable, the index is never updated.
+	 */
+	@ElementCollection
+	@CollectionTable(name = "LIGOJ_NODE_ANCESTOR", indexes = @Index(columnList = "ancestor"))
+	@Column(name = "ancestor", nullable = false)
+	@JsonIgnore
+	@ToString.Exclude
+	private Set<String> ancestors = new HashSet<>();
+
+	/**
+	 * Materialize the ancestry index from the identifier.
+	 */
+	@PrePersist
+	void materializeAncestors() {
+		ancestors = new HashSet<>(toAncestors(getId()));
+	}
+
+	/**
+	 * Return the given node identifier and all its ancestors, from the root to the node itself. For sample,
+	 * <code>service:bt:jira</code> gives <code>service</code>, <code>service:bt</code> and
+	 * <code>service:bt:jira</code>.
+	 *
+	 * @param id The node identifier.
+	 * @return The identifier and all its ancestors. Never <code>null</code>.
+	 */
+	public static List<String> toAncestors(final String id) {
+		final var result = new ArrayList<String>();
+		for (var index = id.indexOf(':'); index != -1; index = id.indexOf(':', index + 1)) {
+			result.add(id.substring(0, index));
+		}
+		result.add(id);
+		return result;
+	}
+
 	@Override
 	@Transient
 	@JsonIgnore
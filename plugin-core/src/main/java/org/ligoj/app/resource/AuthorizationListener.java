@@ -0,0 +1,351 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.DeleteContext;
+import org.hibernate.event.spi.DeleteEvent;
+import org.hibernate.event.spi.DeleteEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.MergeContext;
+import org.hibernate.event.spi.MergeEvent;
+import org.hibernate.event.spi.MergeEventListener;
+import org.hibernate.event.spi.PersistContext;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.ligoj.app.iam.model.CacheCompany;
+import org.ligoj.app.iam.model.CacheGroup;
+import org.ligoj.app.iam.model.CacheMembership;
+import org.ligoj.app.iam.model.CacheUser;
+import org.ligoj.app.iam.model.DelegateOrg;
+import org.ligoj.app.model.CacheProjectGroup;
+import org.ligoj.app.model.DelegateNode;
+import org.ligoj.app.model.Project;
+import org.ligoj.app.resource.delegate.OrgAuthorization;
+import org.ligoj.app.resource.node.NodeAuthorization;
+import org.ligoj.app.resource.project.ProjectAuthorization;
+import org.ligoj.bootstrap.core.dao.AfterJpaBeforeSpringDataListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Follow the changes of the entities the in-memory authorizations are built from. The changes are recorded when the
+ * entities are persisted, merged or removed, before they are flushed: reading an authorization never flushes the
+ * persistence context. The changes of a managed entity not given to one of these operations are recorded once
+ * flushed. The JPQL bulk statements bypass these events, they are recorded by {@link #onBulkChange(Class[])}.
+ * <p>
+ * The shared state of the authorizations is never built from uncommitted data: while a transaction has pending
+ * changes, the authorizations it reads are built for this transaction only, see {@link #getLocal(Object, Function)}.
+ * Once the transaction is completed, the changes are published to all cluster members on commit, and simply dropped
+ * on rollback.
+ *
+ * @see OrgAuthorization
+ * @see NodeAuthorization
+ * @see ProjectAuthorization
+ */
+@Component
+public class AuthorizationListener implements AfterJpaBeforeSpringDataListener, PersistEventListener,
+		MergeEventListener, DeleteEventListener, PostInsertEventListener, PostUpdateEventListener,
+		PostDeleteEventListener {
+
+	/**
+	 * The entities the organizational rights are built from.
+	 */
+	private static final Set<Class<?>> ORG_ENTITIES = Set.of(DelegateOrg.class, CacheGroup.class, CacheCompany.class,
+			CacheUser.class, CacheMembership.class);
+
+	/**
+	 * The changes of a session not yet completed.
+	 */
+	public static class Changes {
+		private boolean org;
+		private boolean node;
+		private boolean allProjects;
+		private final Set<Integer> projects = new HashSet<>();
+
+		/**
+		 * The states built from these changes, by component. Dropped on each new change.
+		 */
+		private final Map<Object, Object> states = new HashMap<>();
+
+		/**
+		 * Indicate the delegates or the IAM cache tables have changed.
+		 *
+		 * @return <code>true</code> when the organizational rights have changed.
+		 */
+		public boolean isOrg() {
+			return org;
+		}
+
+		/**
+		 * Indicate the node delegates have changed.
+		 *
+		 * @return <code>true</code> when the node delegates have changed.
+		 */
+		public boolean isNode() {
+			return node;
+		}
+
+		/**
+		 * Return the identifiers of the created, deleted or updated projects: team leader or groups.
+		 *
+		 * @return The changed project identifiers.
+		 */
+		public Set<Integer> getProjects() {
+			return projects;
+		}
+
+		/**
+		 * Indicate the projects have changed by a bulk statement, so the changed ones are unknown.
+		 *
+		 * @return <code>true</code> when all projects have to be considered as changed.
+		 */
+		public boolean isAllProjects() {
+			return allProjects;
+		}
+	}
+
+	private final LocalContainerEntityManagerFactoryBean emf;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	/**
+	 * The pending changes, by session.
+	 */
+	private final Map<EventSource, Changes> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Listener with EMF as context.
+	 *
+	 * @param emf The current EMF.
+	 */
+	@Autowired
+	public AuthorizationListener(final LocalContainerEntityManagerFactoryBean emf) {
+		this.emf = emf;
+	}
+
+	@Override
+	public void callback() {
+		final var sessionFactory = (SessionFactoryImpl) emf.getNativeEntityManagerFactory();
+		final var registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.PERSIST, this);
+		registry.appendListeners(EventType.MERGE, this);
+		registry.appendListeners(EventType.DELETE, this);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	/**
+	 * Record a change made by a JPQL bulk statement, such as a <code>@Modifying</code> DELETE query: these statements
+	 * bypass the entity events. To be called by the bulk paths involving the given entities. Without transaction, the
+	 * change is published immediately.
+	 *
+	 * @param entities The entity types changed by the statement.
+	 */
+	public void onBulkChange(final Class<?>... entities) {
+		final var changes = new Changes();
+		for (final var entity : entities) {
+			if (ORG_ENTITIES.contains(entity)) {
+				changes.org = true;
+			} else if (entity == DelegateNode.class) {
+				changes.node = true;
+			} else if (entity == Project.class || entity == CacheProjectGroup.class) {
+				changes.allProjects = true;
+			}
+		}
+		if (!changes.org && !changes.node && !changes.allProjects) {
+			// Not involved in the authorizations
+			return;
+		}
+		final var session = getCurrentSession();
+		if (session == null) {
+			publish(changes);
+			return;
+		}
+		final var current = getChanges(session);
+		current.org |= changes.org;
+		current.node |= changes.node;
+		current.allProjects |= changes.allProjects;
+	}
+
+	@Override
+	public void onPersist(final PersistEvent event) {
+		onChange(event.getSession(), event.getObject());
+	}
+
+	@Override
+	public void onPersist(final PersistEvent event, final PersistContext context) {
+		onPersist(event);
+	}
+
+	@Override
+	public void onMerge(final MergeEvent event) {
+		onChange(event.getSession(), event.getOriginal());
+	}
+
+	@Override
+	public void onMerge(final MergeEvent event, final MergeContext context) {
+		onMerge(event);
+	}
+
+	@Override
+	public void onDelete(final DeleteEvent event) {
+		onChange(event.getSession(), event.getObject());
+	}
+
+	@Override
+	public void onDelete(final DeleteEvent event, final DeleteContext context) {
+		onDelete(event);
+	}
+
+	@Override
+	public void onPostInsert(final PostInsertEvent event) {
+		onChange(event.getSession(), event.getEntity());
+	}
+
+	@Override
+	public void onPostUpdate(final PostUpdateEvent event) {
+		onChange(event.getSession(), event.getEntity());
+	}
+
+	@Override
+	public void onPostDelete(final PostDeleteEvent event) {
+		onChange(event.getSession(), event.getEntity());
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(final EntityPersister persister) {
+		return false;
+	}
+
+	/**
+	 * Remember a change until the transaction is completed. A project without identifier is not yet inserted, its
+	 * insertion is recorded later.
+	 */
+	private void onChange(final EventSource session, final Object entity) {
+		switch (entity) {
+			case DelegateOrg _, CacheGroup _, CacheCompany _, CacheUser _, CacheMembership _ ->
+					getChanges(session).org = true;
+			case DelegateNode _ -> getChanges(session).node = true;
+			case Project p when p.getId() != null -> getChanges(session).projects.add(p.getId());
+			case CacheProjectGroup g when g.getProject() != null && g.getProject().getId() != null ->
+					getChanges(session).projects.add(g.getProject().getId());
+			case null, default -> {
+				// Not involved in the authorizations
+			}
+		}
+	}
+
+	/**
+	 * Return the pending changes of the given session, registering their completion on the first change. The states
+	 * built from the previous changes are dropped.
+	 */
+	private Changes getChanges(final EventSource session) {
+		final var changes = pending.computeIfAbsent(session, s -> {
+			s.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, _) -> complete(s, success));
+			return new Changes();
+		});
+		changes.states.clear();
+		return changes;
+	}
+
+	/**
+	 * Return the state of the given component built for the pending changes of the current transaction. This state is
+	 * private to this transaction, built again after each new change, and dropped once the transaction is completed.
+	 *
+	 * @param owner  The component owning the state.
+	 * @param loader The function building the state from the pending changes. Returns <code>null</code> when these
+	 *               changes do not involve this component.
+	 * @param <S>    The state type.
+	 * @return The local state, or <code>null</code> when the shared state can be used.
+	 */
+	@SuppressWarnings("unchecked")
+	public <S> S getLocal(final Object owner, final Function<Changes, S> loader) {
+		final var changes = getCurrentChanges();
+		if (changes == null) {
+			return null;
+		}
+		if (!changes.states.containsKey(owner)) {
+			// Not a computeIfAbsent() since a loader may read the local state of another component
+			changes.states.put(owner, loader.apply(changes));
+		}
+		return (S) changes.states.get(owner);
+	}
+
+	/**
+	 * Return the pending changes of the current transaction, or <code>null</code>.
+	 */
+	private Changes getCurrentChanges() {
+		if (pending.isEmpty()) {
+			return null;
+		}
+		final var session = getCurrentSession();
+		return session == null ? null : pending.get(session);
+	}
+
+	/**
+	 * Return the session of the current transaction, or <code>null</code>.
+	 */
+	private EventSource getCurrentSession() {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return null;
+		}
+		final var em = EntityManagerFactoryUtils.getTransactionalEntityManager(emf.getObject());
+		return em == null ? null : em.unwrap(EventSource.class);
+	}
+
+	/**
+	 * Publish the changes of the given session once its transaction is committed. On rollback, there is nothing to
+	 * drop since only the local states have seen these changes.
+	 */
+	private void complete(final EventSource session, final boolean success) {
+		final var changes = pending.remove(session);
+		if (changes != null && success) {
+			publish(changes);
+		}
+	}
+
+	/**
+	 * Invalidate the states involved by the given committed changes on all cluster members.
+	 */
+	private void publish(final Changes changes) {
+		// The node and project states follow the version of the organizational rights
+		if (changes.org) {
+			getBean(OrgAuthorization.class).invalidate();
+		}
+		if (changes.node) {
+			getBean(NodeAuthorization.class).invalidate();
+		}
+		if (changes.allProjects || !changes.projects.isEmpty()) {
+			getBean(ProjectAuthorization.class).invalidate();
+		}
+	}
+
+	private <T> T getBean(final Class<T> type) {
+		return applicationContext.getBean(type);
+	}
+}
@@ -4,38 +4,68 @@
 package org.ligoj.app.resource;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import javax.cache.annotation.CacheKey;
-import javax.cache.annotation.CacheResult;
-
 import org.apache.commons.lang3.StringUtils;
 import org.ligoj.app.api.PluginNotFoundException;
 import org.ligoj.app.api.ServicePlugin;
 import org.ligoj.app.api.ToolPlugin;
+import org.ligoj.app.resource.node.NearCache;
+import org.ligoj.app.resource.plugin.LongTaskRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import lombok.Setter;
 
 /**
- * Locate service resource from the plug-in key.
+ * Locate service resource from the plug-in key. The plug-ins are indexed by their key with their parent chain, and
+ * the index is built again when the context is refreshed, so a lookup is a plain map read. A bean registered out of a
+ * context refresh requires an explicit {@link #refresh()}.
  */
 @Component
 public class ServicePluginLocator implements ApplicationContextAware {
 
 	/**
-	 * Used for "this" and forcing proxying.
+	 * Cache of the plug-in activations, derived from the registered plug-ins.
 	 */
+	private static final String NODE_ENABLEMENT = "node-enablement";
+
 	@Autowired
-	protected ServicePluginLocator self;
+	private NearCache nearCache;
 
 	@Setter
 	private ApplicationContext applicationContext;
 
+	/**
+	 * A registered plug-in.
+	 *
+	 * @param name  The bean name.
+	 * @param chain The plug-in followed by the plug-ins of its parents, the nearest first.
+	 */
+	private record Entry(String name, List<ServicePlugin> chain) {
+	}
+
+	/**
+	 * The plug-ins index.
+	 *
+	 * @param plugins The bean names of type {@link ServicePlugin} this index has been built from.
+	 * @param entries The registered plug-ins by key.
+	 * @param tasks   The {@link LongTaskRunner} beans by the location of their code source.
+	 */
+	private record Registry(String[] plugins, Map<String, Entry> entries,
+			Map<String, List<LongTaskRunner<?, ?, ?, ?, ?, ?>>> tasks) {
+	}
+
+	private volatile Registry registry;
+
 	/**
 	 * Return the plug-in from the service key.
 	 *
@@ -54,27 +84,9 @@ public class ServicePluginLocator implements ApplicationContextAware {
 	 * @param <T>          The required resource type. For sample <code>ServicePlugin</code>
 	 * @return the plug-in from the service key. <code>null</code> if not found.
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> T getResource(final String service, final Class<T> requiredType) {
-		if (service == null) {
-			// No service, may be from the recursive call ...
-			return null;
-		}
-
-		// Search the resource
-		final var name = self.getResourceName(service);
-		if (name == null) {
-			// Bean does not exists
-			return null;
-		}
-
-		// Check the type
-		final var bean = applicationContext.getBean(name, ServicePlugin.class);
-		if (requiredType.isInstance(bean)) {
-			return (T) bean;
-		}
-		// Try the parent
-		return getResource(getParent(bean.getKey()), requiredType);
+		return getEntry(service).flatMap(e -> e.chain().stream().filter(requiredType::isInstance).findFirst())
+				.map(requiredType::cast).orElse(null);
 	}
 
 	/**
@@ -96,64 +108,143 @@ public class ServicePluginLocator implements ApplicationContextAware {
 	 * @param service the service name.
 	 * @return the plug-in from the service key. <code>null</code> if not found.
 	 */
-	@CacheResult(cacheName = "services")
-	public String getResourceName(@CacheKey final String service) {
-		return getResources(service).stream().findFirst().orElse(null);
+	public String getResourceName(final String service) {
+		return getEntry(service).map(Entry::name).orElse(null);
 	}
 
 	/**
-	 * Return all Spring context bean of type {@link ServicePlugin}
+	 * Return the {@link LongTaskRunner} beans of the given type and provided by the same code source than the given
+	 * plug-in.
+	 *
+	 * @param plugin The plug-in providing the task runners.
+	 * @param type   The required task runner type.
+	 * @param <T>    The required task runner type.
+	 * @return The task runners. Never <code>null</code>.
 	 */
-	private String[] getPluginResources() {
-		return applicationContext.getBeanNamesForType(ServicePlugin.class);
+	public <T> List<T> getTaskRunners(final ServicePlugin plugin, final Class<T> type) {
+		return getRegistry().tasks().getOrDefault(getLocation(plugin), List.of()).stream().filter(type::isInstance)
+				.map(type::cast).toList();
 	}
 
 	/**
-	 * Return the plug-in from the service key.
-	 *
-	 * @param service the service name.
-	 * @return the plug-in from the service key.
+	 * Build again the index of the plug-ins, once the context is ready, or after the registration of plug-ins or task
+	 * runners.
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	public synchronized void refresh() {
+		setRegistry(newRegistry(getPluginResources(), getTaskRunnerResources()));
+	}
+
+	/**
+	 * Return the entry of the given service key or of its nearest registered parent.
 	 */
-	private List<String> getResources(final String service) {
-		return getResources(getPluginResources(), service);
+	private Optional<Entry> getEntry(final String service) {
+		final var entries = getRegistry().entries();
+		var key = service;
+		while (key != null) {
+			final var entry = entries.get(key);
+			if (entry != null) {
+				return Optional.of(entry);
+			}
+			// Try the parent
+			key = getParent(key);
+		}
+		// No service, or not registered service
+		return Optional.empty();
 	}
 
 	/**
-	 * Return the resource of required service.
+	 * Return the current index, built on the first lookup preceding the context refresh.
 	 */
-	private List<String> getResources(final String[] registeredServices, final String service) {
-		final var result = getExactResources(registeredServices, service);
-		if (result.isEmpty()) {
-			return getParentResources(registeredServices, service, result);
+	private Registry getRegistry() {
+		final var current = registry;
+		if (current == null) {
+			synchronized (this) {
+				if (registry == null) {
+					refresh();
+				}
+				return registry;
+			}
 		}
-		return result;
+		return current;
 	}
 
 	/**
-	 * Return the resources implementing the parent of given service key.
+	 * Replace the index. The plug-in activations shared by the cluster are invalidated only when the set of plug-ins
+	 * has changed, so building again the same index keeps them.
 	 */
-	private List<String> getParentResources(final String[] registeredServices, final String service,
-			final List<String> result) {
-		// Try the parent
-		final var parentService = getParent(service);
-		if (parentService == null) {
-			return result;
+	private void setRegistry(final Registry registry) {
+		final var previous = this.registry;
+		this.registry = registry;
+		if (previous != null && !Arrays.equals(previous.plugins(), registry.plugins())) {
+			nearCache.clear(NODE_ENABLEMENT);
 		}
-		return getResources(registeredServices, parentService);
 	}
 
 	/**
-	 * Return the resources implementing the exact given service key.
+	 * Build the index from the given bean names.
 	 */
-	private List<String> getExactResources(final String[] registeredServices, final String service) {
-		final var result = new ArrayList<String>();
-		for (final var plugin : registeredServices) {
-			final var bean = applicationContext.getBean(plugin, ServicePlugin.class);
-			if (service.equals(bean.getKey())) {
-				result.add(plugin);
+	private Registry newRegistry(final String[] plugins, final String[] runners) {
+		final var beans = new HashMap<String, String>();
+		for (final var plugin : plugins) {
+			final var key = applicationContext.getBean(plugin, ServicePlugin.class).getKey();
+			if (key != null) {
+				// The first plug-in wins
+				beans.putIfAbsent(key, plugin);
 			}
 		}
-		return result;
+		final var entries = new HashMap<String, Entry>();
+		beans.keySet().forEach(key -> newEntry(beans, entries, key));
+
+		final var tasks = new HashMap<String, List<LongTaskRunner<?, ?, ?, ?, ?, ?>>>();
+		for (final var runner : runners) {
+			final var bean = (LongTaskRunner<?, ?, ?, ?, ?, ?>) applicationContext.getBean(runner, LongTaskRunner.class);
+			tasks.computeIfAbsent(getLocation(bean), _ -> new ArrayList<>()).add(bean);
+		}
+		return new Registry(plugins, Map.copyOf(entries), Map.copyOf(tasks));
+	}
+
+	/**
+	 * Build the entry of the given key after the one of its nearest registered parent.
+	 */
+	private Entry newEntry(final Map<String, String> beans, final Map<String, Entry> entries, final String key) {
+		var entry = entries.get(key);
+		if (entry == null) {
+			final var name = beans.get(key);
+			final var chain = new ArrayList<ServicePlugin>();
+			chain.add(applicationContext.getBean(name, ServicePlugin.class));
+			var parent = getParent(key);
+			while (parent != null && !beans.containsKey(parent)) {
+				parent = getParent(parent);
+			}
+			if (parent != null) {
+				chain.addAll(newEntry(beans, entries, parent).chain());
+			}
+			entry = new Entry(name, List.copyOf(chain));
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Return the location of the code source of the given bean.
+	 */
+	private String getLocation(final Object bean) {
+		return bean.getClass().getProtectionDomain().getCodeSource().getLocation().toString();
+	}
+
+	/**
+	 * Return all Spring context bean of type {@link ServicePlugin}
+	 */
+	private String[] getPluginResources() {
+		return applicationContext.getBeanNamesForType(ServicePlugin.class);
+	}
+
+	/**
+	 * Return all Spring context bean of type {@link LongTaskRunner}
+	 */
+	private String[] getTaskRunnerResources() {
+		return applicationContext.getBeanNamesForType(LongTaskRunner.class);
 	}
 
 	/**
@@ -175,10 +266,9 @@ public class ServicePluginLocator implements ApplicationContextAware {
 	 * @param id The tested plug-in identifier.
 	 * @return The plug-in activation.
 	 */
-	@CacheResult(cacheName = "node-enablement")
 	public boolean isEnabled(String id) {
-		return getResource(id, ToolPlugin.class) != null
-				|| (getParent(id) == null && getResource(id, ServicePlugin.class) != null);
+		return nearCache.get(NODE_ENABLEMENT, id, () -> getResource(id, ToolPlugin.class) != null
+				|| (getParent(id) == null && getResource(id, ServicePlugin.class) != null));
 	}
 
 }
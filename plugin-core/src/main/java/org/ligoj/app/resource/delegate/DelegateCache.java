@@ -0,0 +1,38 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.delegate;
+
+import com.hazelcast.cache.HazelcastCacheManager;
+import org.ligoj.app.resource.node.NearCache;
+import org.ligoj.bootstrap.resource.system.cache.CacheConfigurer;
+import org.ligoj.bootstrap.resource.system.cache.CacheManagerAware;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Role;
+import org.springframework.stereotype.Component;
+
+import javax.cache.expiry.Duration;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Delegates data cache configurations.
+ */
+@Component
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class DelegateCache implements CacheManagerAware {
+
+	@Autowired
+	private NearCache nearCache;
+
+	@Override
+	public void onCreate(final HazelcastCacheManager cacheManager, final CacheConfigurer configurer) {
+		// The IAM cache tables may be refreshed without notification, the version expiration bounds the staleness
+		cacheManager.createCache("authorizations", configurer.newCacheConfig("authorizations", new Duration(MINUTES, 10)));
+
+		// Local tier of the version tokens, read on each authorization check
+		nearCache.register(cacheManager.getCache("authorizations"));
+	}
+
+}
@@ -48,6 +48,9 @@ public class DelegateOrgResource {
 	@Autowired
 	private PaginationJson paginationJson;
 
+	@Autowired
+	private OrgAuthorization authorization;
+
 	@Autowired
 	protected IamProvider[] iamProvider;
 
@@ -141,10 +144,13 @@ public class DelegateOrgResource {
 		// Trigger cache loading
 		getUser().findAll();
 
-		var pageRequest = paginationJson.getPageRequest(uriInfo, ORDERED_COLUMNS);
-		final var findAll = repository.findAll(securityHelper.getLogin(),
-				StringUtils.trimToEmpty(DataTableAttributes.getSearch(uriInfo)),
-				typeSearch, pageRequest);
+		final var user = securityHelper.getLogin();
+		final var visible = authorization.getDelegates(user);
+		final var search = StringUtils.trimToEmpty(DataTableAttributes.getSearch(uriInfo));
+		final var pageRequest = paginationJson.getPageRequest(uriInfo, ORDERED_COLUMNS);
+		final var findAll = visible.size() > DelegateOrgRepository.MAX_GRANTED_DELEGATES
+				? repository.findAll(user, search, typeSearch, pageRequest)
+				: repository.findAll(user, visible, search, typeSearch, pageRequest);
 
 		// Apply pagination and prevent lazy initialization issue
 		return paginationJson.applyPagination(uriInfo, findAll, this::toVo);
@@ -159,7 +165,8 @@ public class DelegateOrgResource {
 	@GET
 	@Path("{id:\\d+}")
 	public DelegateOrg findById(@PathParam("id") final int id) {
-		return repository.findById(securityHelper.getLogin(), id);
+		final var user = securityHelper.getLogin();
+		return repository.findById(user, id, authorization.getDelegates(user).contains(id));
 	}
 
 	/**
@@ -0,0 +1,555 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.delegate;
+
+import org.ligoj.app.iam.dao.CacheCompanyRepository;
+import org.ligoj.app.iam.dao.CacheContainerRepository;
+import org.ligoj.app.iam.dao.CacheGroupRepository;
+import org.ligoj.app.iam.dao.CacheMembershipRepository;
+import org.ligoj.app.iam.dao.CacheUserRepository;
+import org.ligoj.app.iam.dao.DelegateOrgRepository;
+import org.ligoj.app.iam.model.CacheCompany;
+import org.ligoj.app.iam.model.CacheContainer;
+import org.ligoj.app.iam.model.CacheGroup;
+import org.ligoj.app.iam.model.DelegateType;
+import org.ligoj.app.iam.model.ReceiverType;
+import org.ligoj.app.resource.AuthorizationListener;
+import org.ligoj.app.resource.node.NearCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory evaluation of the organizational rights, equivalent to the <code>visibleGroup</code>,
+ * <code>visibleCompany</code>, <code>writeDN</code> and <code>adminDN</code> SQL functions. The DN of the groups and
+ * companies and the {@link org.ligoj.app.iam.model.DelegateOrg} rules are loaded once, and the rights of each user are
+ * resolved once from its memberships. A right on a DN is granted by a rule or a membership on this DN or on one of
+ * its parents.
+ * <p>
+ * The state is dropped when {@link #invalidate()} is called by any cluster member, and at least every ten minutes to
+ * follow the IAM cache tables refreshed outside this application. The group, company and delegate finders are given
+ * the granted identifiers resolved there, the SQL functions remain available for the plug-in queries and for the users
+ * granted too many containers.
+ */
+@Component
+public class OrgAuthorization {
+
+	/**
+	 * Key of the version token within the <code>authorizations</code> cache.
+	 */
+	private static final String VERSION = "version";
+
+	/**
+	 * The granted access on a DN.
+	 */
+	public enum Access {
+		/**
+		 * Membership or any delegate.
+		 */
+		VISIBLE,
+
+		/**
+		 * Delegate with <code>canWrite</code> flag.
+		 */
+		WRITE,
+
+		/**
+		 * Delegate with <code>canAdmin</code> flag.
+		 */
+		ADMIN
+	}
+
+	@Autowired
+	private DelegateOrgRepository delegateRepository;
+
+	@Autowired
+	private AuthorizationListener listener;
+
+	@Autowired
+	private CacheGroupRepository groupRepository;
+
+	@Autowired
+	private CacheCompanyRepository companyRepository;
+
+	@Autowired
+	private CacheMembershipRepository membershipRepository;
+
+	@Autowired
+	private CacheUserRepository userRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private NearCache nearCache;
+
+	/**
+	 * The groups involved in the rights of a user on the projects.
+	 *
+	 * @param visible  The identifiers of the visible groups, see {@link #isVisibleGroup(String, String)}.
+	 * @param writable The identifiers of the writable groups, see {@link #isWritableGroup(String, String, String)}.
+	 */
+	public record ProjectGroups(Set<String> visible, Set<String> writable) {
+	}
+
+	/**
+	 * A delegate rule.
+	 *
+	 * @param id           The delegate identifier.
+	 * @param type         The delegate type.
+	 * @param name         The delegated resource name.
+	 * @param dn           The delegated DN.
+	 * @param receiver     The receiver identifier.
+	 * @param receiverType The receiver type.
+	 * @param receiverDn   The receiver DN of a group or a company.
+	 * @param canWrite     The write flag.
+	 * @param canAdmin     The administration flag.
+	 */
+	private record Rule(int id, DelegateType type, String name, String dn, String receiver,
+			ReceiverType receiverType, String receiverDn, boolean canWrite, boolean canAdmin) {
+	}
+
+	/**
+	 * The resolved rights of a user.
+	 *
+	 * @param groups    The DN of the groups the user is member of.
+	 * @param company   The DN of the company of the user. May be <code>null</code>.
+	 * @param received  The rules received by the user.
+	 * @param delegated The DN delegated to the user, by access.
+	 * @param writable  The names of the groups, and the DN of the trees delegated to the user with write access.
+	 * @param granted   The resolved identifiers of the granted groups, companies and delegates.
+	 */
+	private record Principal(Set<String> groups, String company, List<Rule> received,
+			Map<Access, Set<String>> delegated, Map<DelegateType, Set<String>> writable,
+			Map<String, Set<?>> granted) {
+	}
+
+	/**
+	 * A consistent state.
+	 *
+	 * @param version    The version token this state has been built for.
+	 * @param groups     The DN of all groups, by identifier.
+	 * @param companies  The DN of all companies, by identifier.
+	 * @param rules      All delegate rules.
+	 * @param principals The resolved rights, by user.
+	 */
+	private record Snapshot(Object version, Map<String, String> groups, Map<String, String> companies,
+			List<Rule> rules, Map<String, Principal> principals) {
+	}
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Indicate the given group DN is visible by the given user: member of this group or one of its parents, or
+	 * receiving a delegate on this DN or one of its parents.
+	 *
+	 * @param user The user identifier.
+	 * @param dn   The group DN.
+	 * @return <code>true</code> when visible.
+	 */
+	public boolean isVisibleGroup(final String user, final String dn) {
+		return isVisibleGroup(getPrincipal(snapshot(), user), dn);
+	}
+
+	/**
+	 * Indicate the given company DN is visible by the given user: member of this company or one of its parents, or
+	 * receiving a delegate on this DN or one of its parents.
+	 *
+	 * @param user The user identifier.
+	 * @param dn   The company DN.
+	 * @return <code>true</code> when visible.
+	 */
+	public boolean isVisibleCompany(final String user, final String dn) {
+		return isVisibleCompany(getPrincipal(snapshot(), user), dn);
+	}
+
+	/**
+	 * Indicate the given user receives a delegate with the given access on the given DN or one of its parents.
+	 *
+	 * @param user   The user identifier.
+	 * @param dn     The DN.
+	 * @param access The required access.
+	 * @return <code>true</code> when delegated.
+	 */
+	public boolean isDelegated(final String user, final String dn, final Access access) {
+		return isDelegated(getPrincipal(snapshot(), user), dn, access);
+	}
+
+	/**
+	 * Indicate the given user receives a delegate with write access on the given group: a group delegate on this
+	 * group, or a tree delegate on its DN or one of its parents. This is the delegate required to manage the
+	 * subscriptions of the projects linked to this group.
+	 *
+	 * @param user The user identifier.
+	 * @param id   The group identifier.
+	 * @param dn   The group DN.
+	 * @return <code>true</code> when the group is writable.
+	 */
+	public boolean isWritableGroup(final String user, final String id, final String dn) {
+		return isWritableGroup(getPrincipal(snapshot(), user), id, dn);
+	}
+
+	/**
+	 * Indicate the given user is the given receiver, directly or by one of its groups or its company, including their
+	 * parents. Used to resolve the receivers of the other delegates.
+	 *
+	 * @param user         The user identifier.
+	 * @param receiverType The receiver type.
+	 * @param receiver     The receiver identifier: a user, a group or a company.
+	 * @return <code>true</code> when the user receives the delegate.
+	 */
+	public boolean isReceiver(final String user, final ReceiverType receiverType, final String receiver) {
+		final var current = snapshot();
+		final var principal = getPrincipal(current, user);
+		return switch (receiverType) {
+			case USER -> receiver.equals(user);
+			case GROUP -> isReceiver(current.groups().get(receiver), principal.groups());
+			case COMPANY -> isParent(current.companies().get(receiver), principal.company());
+		};
+	}
+
+	/**
+	 * Return the identifiers of the groups granted to the given user.
+	 *
+	 * @param user   The user identifier.
+	 * @param access The required access. {@link Access#VISIBLE} includes the memberships.
+	 * @return The granted group identifiers. Never <code>null</code>.
+	 */
+	public Set<String> getGroups(final String user, final Access access) {
+		final var current = snapshot();
+		return getGroups(current, getPrincipal(current, user), access);
+	}
+
+	/**
+	 * Return the identifiers of the companies granted to the given user.
+	 *
+	 * @param user   The user identifier.
+	 * @param access The required access. {@link Access#VISIBLE} includes the membership.
+	 * @return The granted company identifiers. Never <code>null</code>.
+	 */
+	public Set<String> getCompanies(final String user, final Access access) {
+		final var current = snapshot();
+		return getCompanies(current, getPrincipal(current, user), access);
+	}
+
+	/**
+	 * Return the identifiers of the groups visible by the given user, and the ones writable by this user. Both are
+	 * resolved from the same state, once per user.
+	 *
+	 * @param user The user identifier.
+	 * @return The visible and writable group identifiers. Never <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public ProjectGroups getProjectGroups(final String user) {
+		final var current = snapshot();
+		final var principal = getPrincipal(current, user);
+		final var writable = (Set<String>) principal.granted().computeIfAbsent("group-writable",
+				_ -> current.groups().entrySet().stream().filter(e -> isWritableGroup(principal, e.getKey(), e.getValue()))
+						.map(Map.Entry::getKey).collect(Collectors.toUnmodifiableSet()));
+		return new ProjectGroups(getGroups(current, principal, Access.VISIBLE), writable);
+	}
+
+	/**
+	 * Return the identifiers of the delegates visible by the given user: received by this user, or within the scope
+	 * of a received delegate with the <code>canAdmin</code> flag. Equivalent to
+	 * {@link DelegateOrgRepository#VISIBLE_DELEGATE}, the system administrators are not considered there.
+	 *
+	 * @param user The user identifier.
+	 * @return The visible delegate identifiers. Never <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<Integer> getDelegates(final String user) {
+		final var current = snapshot();
+		final var principal = getPrincipal(current, user);
+		return (Set<Integer>) principal.granted().computeIfAbsent("delegate",
+				_ -> current.rules().stream().filter(r -> isVisibleDelegate(principal, r)).map(Rule::id)
+						.collect(Collectors.toUnmodifiableSet()));
+	}
+
+	/**
+	 * Return the groups granted to the given user, and matching the criteria. The granted identifiers are resolved in
+	 * memory, unless they are too many.
+	 *
+	 * @param user     The user requesting the operation.
+	 * @param criteria The criteria to match.
+	 * @param page     Page control.
+	 * @param access   The required access.
+	 * @return The pagination result.
+	 */
+	public Page<CacheGroup> findAllGroups(final String user, final String criteria, final Pageable page,
+			final Access access) {
+		return findAll(groupRepository, user, getGroups(user, access), criteria, page, access);
+	}
+
+	/**
+	 * Return the companies granted to the given user, and matching the criteria. The granted identifiers are resolved
+	 * in memory, unless they are too many.
+	 *
+	 * @param user     The user requesting the operation.
+	 * @param criteria The criteria to match.
+	 * @param page     Page control.
+	 * @param access   The required access.
+	 * @return The pagination result.
+	 */
+	public Page<CacheCompany> findAllCompanies(final String user, final String criteria, final Pageable page,
+			final Access access) {
+		return findAll(companyRepository, user, getCompanies(user, access), criteria, page, access);
+	}
+
+	/**
+	 * Return the group matching the given identifier, and visible by the given user.
+	 *
+	 * @param user The user requesting the operation.
+	 * @param id   The group identifier.
+	 * @return The visible group. May be <code>null</code>.
+	 */
+	public CacheGroup findGroup(final String user, final String id) {
+		final var current = snapshot();
+		return groupRepository.findById(user, id, isVisibleGroup(getPrincipal(current, user), current.groups().get(id)));
+	}
+
+	/**
+	 * Return the company matching the given identifier, and visible by the given user.
+	 *
+	 * @param user The user requesting the operation.
+	 * @param id   The company identifier.
+	 * @return The visible company. May be <code>null</code>.
+	 */
+	public CacheCompany findCompany(final String user, final String id) {
+		final var current = snapshot();
+		return companyRepository.findById(user, id,
+				isVisibleCompany(getPrincipal(current, user), current.companies().get(id)));
+	}
+
+	/**
+	 * Drop the current state on all cluster members. To be called once the changes of the delegates, or of the IAM
+	 * cache tables are committed: the other members would otherwise reload a state not yet visible, and keep it after
+	 * a rollback.
+	 */
+	public void invalidate() {
+		snapshot = null;
+		Optional.ofNullable(cacheManager.getCache("authorizations"))
+				.ifPresent(c -> c.put(VERSION, UUID.randomUUID().toString()));
+	}
+
+	private <C extends CacheContainer> Page<C> findAll(final CacheContainerRepository<C> repository, final String user,
+			final Set<String> granted, final String criteria, final Pageable page, final Access access) {
+		if (granted.size() > CacheContainerRepository.MAX_GRANTED_CONTAINERS) {
+			return switch (access) {
+				case VISIBLE -> repository.findAll(user, criteria, page);
+				case WRITE -> repository.findAllWrite(user, criteria, page);
+				case ADMIN -> repository.findAllAdmin(user, criteria, page);
+			};
+		}
+		return repository.findAllIn(user, granted, criteria, page);
+	}
+
+	private static Set<String> getGroups(final Snapshot current, final Principal principal, final Access access) {
+		return grant(principal, "group-" + access, current.groups(),
+				dn -> access == Access.VISIBLE ? isVisibleGroup(principal, dn) : isDelegated(principal, dn, access));
+	}
+
+	private static Set<String> getCompanies(final Snapshot current, final Principal principal, final Access access) {
+		return grant(principal, "company-" + access, current.companies(),
+				dn -> access == Access.VISIBLE ? isVisibleCompany(principal, dn) : isDelegated(principal, dn, access));
+	}
+
+	/**
+	 * Return the identifiers of the containers having a granted DN, resolved once per user.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Set<String> grant(final Principal principal, final String key, final Map<String, String> containers,
+			final Predicate<String> granted) {
+		return (Set<String>) principal.granted().computeIfAbsent(key, _ -> containers.entrySet().stream()
+				.filter(e -> granted.test(e.getValue())).map(Map.Entry::getKey).collect(Collectors.toUnmodifiableSet()));
+	}
+
+	private static boolean isVisibleGroup(final Principal principal, final String dn) {
+		return matches(principal.groups(), dn) || matches(principal.delegated().get(Access.VISIBLE), dn);
+	}
+
+	private static boolean isVisibleCompany(final Principal principal, final String dn) {
+		return isParent(principal.company(), dn) || matches(principal.delegated().get(Access.VISIBLE), dn);
+	}
+
+	private static boolean isDelegated(final Principal principal, final String dn, final Access access) {
+		return matches(principal.delegated().get(access), dn);
+	}
+
+	private static boolean isWritableGroup(final Principal principal, final String id, final String dn) {
+		final var writable = principal.writable();
+		return writable.get(DelegateType.GROUP).contains(id) || matches(writable.get(DelegateType.TREE), dn);
+	}
+
+	/**
+	 * Indicate the given rule is received by the given user, or is within the scope of a received rule with the
+	 * <code>canAdmin</code> flag.
+	 */
+	private static boolean isVisibleDelegate(final Principal principal, final Rule rule) {
+		return principal.received().stream().anyMatch(r -> r.id() == rule.id()
+				|| r.canAdmin() && (r.type() == rule.type() || r.type() == DelegateType.TREE)
+						&& isParent(r.dn(), rule.dn()));
+	}
+
+	/**
+	 * Indicate the given DN or one of its parents is within the given DN set.
+	 */
+	private static boolean matches(final Set<String> dns, final String dn) {
+		if (dns.isEmpty() || dn == null) {
+			return false;
+		}
+		var index = -1;
+		do {
+			if (dns.contains(dn.substring(index + 1))) {
+				return true;
+			}
+			index = dn.indexOf(',', index + 1);
+		} while (index != -1);
+		return false;
+	}
+
+	/**
+	 * Indicate the given DN is the given parent DN or one of its descendants.
+	 */
+	private static boolean isParent(final String parent, final String dn) {
+		return parent != null && dn != null && (dn.equals(parent) || dn.endsWith("," + parent));
+	}
+
+	/**
+	 * Return the resolved rights of the given user within the given state.
+	 */
+	private Principal getPrincipal(final Snapshot current, final String user) {
+		return current.principals().computeIfAbsent(user, u -> newPrincipal(current, u));
+	}
+
+	/**
+	 * Resolve the rights of the given user.
+	 */
+	private Principal newPrincipal(final Snapshot current, final String user) {
+		final var groups = Set.copyOf(membershipRepository.findAllGroupDescriptions(user));
+		final var company = userRepository.findCompanyDescription(user);
+		final var delegated = new EnumMap<Access, Set<String>>(Access.class);
+		for (final var access : Access.values()) {
+			delegated.put(access, new HashSet<>());
+		}
+		final var writable = new EnumMap<DelegateType, Set<String>>(DelegateType.class);
+		for (final var type : DelegateType.values()) {
+			writable.put(type, new HashSet<>());
+		}
+		final var received = current.rules().stream().filter(r -> isReceiver(r, user, groups, company)).toList();
+		received.forEach(r -> {
+			delegated.get(Access.VISIBLE).add(r.dn());
+			if (r.canWrite()) {
+				delegated.get(Access.WRITE).add(r.dn());
+				writable.get(r.type()).add(r.type() == DelegateType.TREE ? r.dn() : r.name());
+			}
+			if (r.canAdmin()) {
+				delegated.get(Access.ADMIN).add(r.dn());
+			}
+		});
+		return new Principal(groups, company, received, delegated, writable, new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Indicate the given user receives the given rule, directly or by one of its groups or its company, including
+	 * their parents.
+	 */
+	private boolean isReceiver(final Rule rule, final String user, final Set<String> groups, final String company) {
+		return switch (rule.receiverType()) {
+			case USER -> rule.receiver().equals(user);
+			case GROUP -> isReceiver(rule.receiverDn(), groups);
+			case COMPANY -> isParent(rule.receiverDn(), company);
+		};
+	}
+
+	/**
+	 * Indicate one of the given group DN is the given receiver DN or one of its descendants.
+	 */
+	private static boolean isReceiver(final String receiverDn, final Set<String> groups) {
+		return groups.stream().anyMatch(g -> isParent(receiverDn, g));
+	}
+
+	/**
+	 * Return the current state, loaded again when missing or changed by another member. The pending changes of the
+	 * current transaction are read from a state built for this transaction only.
+	 */
+	private Snapshot snapshot() {
+		final Snapshot local = listener.getLocal(this, c -> c.isOrg() ? newSnapshot(VERSION) : null);
+		if (local != null) {
+			return local;
+		}
+		final var version = getVersion();
+		var current = snapshot;
+		if (current == null || !current.version().equals(version)) {
+			current = load(version);
+		}
+		return current;
+	}
+
+	private synchronized Snapshot load(final Object version) {
+		final var current = snapshot;
+		if (current != null && current.version().equals(version)) {
+			// Already loaded by a concurrent caller
+			return current;
+		}
+		snapshot = newSnapshot(version);
+		return snapshot;
+	}
+
+	private Snapshot newSnapshot(final Object version) {
+		final var rules = delegateRepository.findAll().stream().map(d -> new Rule(d.getId(), d.getType(), d.getName(),
+				d.getDn(), d.getReceiver(), d.getReceiverType(), d.getReceiverDn(), d.isCanWrite(), d.isCanAdmin()))
+				.toList();
+		return new Snapshot(version, toDescriptions(groupRepository), toDescriptions(companyRepository), rules,
+				new ConcurrentHashMap<>());
+	}
+
+	private Map<String, String> toDescriptions(final CacheContainerRepository<?> repository) {
+		final var result = new HashMap<String, String>();
+		repository.findAllDescriptions().forEach(r -> result.put((String) r[0], (String) r[1]));
+		return result;
+	}
+
+	/**
+	 * Return the shared version token, initialized when missing. This token changes on each invalidation, so the
+	 * states depending on the organizational rights can follow it. The token is read from the local tier of the
+	 * <code>authorizations</code> cache, invalidated by the changes of the shared entry.
+	 *
+	 * @return The current version token.
+	 */
+	public Object getVersion() {
+		final var cache = cacheManager.getCache("authorizations");
+		if (cache == null) {
+			// Local only state
+			return Optional.ofNullable(snapshot).map(Snapshot::version).orElse(VERSION);
+		}
+		return nearCache.get("authorizations", VERSION, () -> getVersion(cache));
+	}
+
+	/**
+	 * Return the shared version token, initialized only when missing.
+	 */
+	private Object getVersion(final Cache cache) {
+		return Optional.ofNullable(cache.get(VERSION)).map(Cache.ValueWrapper::get).orElseGet(() -> {
+			final var version = UUID.randomUUID().toString();
+			return Optional.ofNullable(cache.putIfAbsent(VERSION, version)).map(Cache.ValueWrapper::get)
+					.orElse(version);
+		});
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.app.model.Event;
+import org.ligoj.app.model.Node;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Adaptive scheduling of the health checks by node. The nodes are ordered by their next due time, derived from an
+ * {@link Event} history: a node that is down or flapping is checked at the minimal interval, while a stable node is
+ * backed off proportionally to its stability, up to the maximal interval. The due times are spread with a per-node
+ * offset, so the checks are distributed evenly instead of being bunched at the same time.
+ */
+public abstract class AbstractHealthCheckScheduler {
+
+	/**
+	 * Configuration key of the minimal interval in minutes between two checks of a node.
+	 */
+	public static final String CONF_MIN = "health.adaptive.min";
+
+	/**
+	 * Configuration key of the maximal interval in minutes between two checks of a node.
+	 */
+	public static final String CONF_MAX = "health.adaptive.max";
+
+	/**
+	 * Default minimal interval in minutes.
+	 */
+	public static final int DEFAULT_MIN = 5;
+
+	/**
+	 * Default maximal interval in minutes.
+	 */
+	public static final int DEFAULT_MAX = 1440;
+
+	/**
+	 * Amount of transitions within the maximal interval making a node flapping.
+	 */
+	private static final int FLAPPING = 2;
+
+	/**
+	 * Ratio between the stability duration of a node and its check interval: a node stable for a day is checked
+	 * every hour.
+	 */
+	private static final int BACK_OFF = 24;
+
+	/**
+	 * Maximal amount of identifiers within a single IN clause.
+	 */
+	private static final int IN_SIZE = 1000;
+
+	@Autowired
+	protected EventRepository repository;
+
+	@Autowired
+	protected ConfigurationResource configuration;
+
+	/**
+	 * A scheduled check.
+	 */
+	private record Due(String node, Instant next) {
+	}
+
+	/**
+	 * Scheduled checks ordered by due time. Outdated entries are ignored when they do not match {@link #dues}.
+	 */
+	private final PriorityQueue<Due> queue = new PriorityQueue<>(Comparator.comparing(Due::next));
+
+	/**
+	 * Current due time of each scheduled node.
+	 */
+	private final Map<String, Instant> dues = new HashMap<>();
+
+	/**
+	 * Return the nodes to check now. The scheduled nodes are synchronized with the given instances: the new ones are
+	 * scheduled within their interval, the removed ones are forgotten.
+	 *
+	 * @param instances The current node instances.
+	 * @param now       The current time.
+	 * @return The due nodes, to be rescheduled with {@link #reschedule(Collection, Instant)} once checked.
+	 */
+	public synchronized List<Node> poll(final List<Node> instances, final Instant now) {
+		final var nodes = instances.stream().collect(Collectors.toMap(Node::getId, Function.identity()));
+		dues.keySet().retainAll(nodes.keySet());
+		final var added = nodes.keySet().stream().filter(n -> !dues.containsKey(n)).toList();
+		getIntervals(added, now).forEach((n, interval) -> schedule(n,
+				now.plusMillis(Math.floorMod(n.hashCode(), Math.max(1, interval.toMillis())))));
+
+		final var result = new ArrayList<Node>();
+		while (!queue.isEmpty() && !queue.peek().next().isAfter(now)) {
+			final var due = queue.poll();
+			if (due.next().equals(dues.get(due.node()))) {
+				result.add(nodes.get(due.node()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reschedule the given checked nodes according to their updated history.
+	 *
+	 * @param nodes The checked node identifiers.
+	 * @param now   The current time.
+	 */
+	public synchronized void reschedule(final Collection<String> nodes, final Instant now) {
+		getIntervals(nodes, now).forEach((n, interval) -> schedule(n, now.plus(interval)));
+	}
+
+	/**
+	 * Return the next due time of a node.
+	 *
+	 * @param node The node identifier.
+	 * @return The next due time. <code>null</code> when not scheduled.
+	 */
+	public synchronized Instant getNextDue(final String node) {
+		return dues.get(node);
+	}
+
+	private void schedule(final String node, final Instant next) {
+		dues.put(node, next);
+		queue.add(new Due(node, next));
+	}
+
+	/**
+	 * Compute the check interval of each node from its latest status and its recent transitions. The interval is
+	 * slightly shifted per node to avoid the synchronization of nodes sharing the same history.
+	 */
+	private Map<String, Duration> getIntervals(final Collection<String> nodes, final Instant now) {
+		final var min = Duration.ofMinutes(Math.max(1, configuration.get(CONF_MIN, DEFAULT_MIN)));
+		final var max = Duration.ofMinutes(Math.max(1, configuration.get(CONF_MAX, DEFAULT_MAX)));
+		final var latest = new HashMap<String, Event>();
+		final var transitions = new HashMap<String, Long>();
+		ListUtils.partition(new ArrayList<>(nodes), IN_SIZE)
+				.forEach(ids -> loadHistory(ids, now.minus(max), latest, transitions));
+
+		final var result = new HashMap<String, Duration>();
+		nodes.forEach(n -> {
+			final var interval = getInterval(latest.get(n), transitions.getOrDefault(n, 0L), now, min, max);
+			// Up to 10% shift
+			result.put(n, interval.plus(interval.multipliedBy(Math.floorMod(n.hashCode(), 100)).dividedBy(1000)));
+		});
+		return result;
+	}
+
+	/**
+	 * Load the history of the given nodes.
+	 *
+	 * @param nodes       The node identifiers, within the IN clause limits.
+	 * @param since       The inclusive lower bound of the counted transitions.
+	 * @param latest      The latest status event of each node to fill. Nodes without event are absent.
+	 * @param transitions The amount of transitions of each node since the given date to fill.
+	 */
+	protected abstract void loadHistory(List<String> nodes, Instant since, Map<String, Event> latest,
+			Map<String, Long> transitions);
+
+	/**
+	 * Compute the check interval of a node.
+	 */
+	private Duration getInterval(final Event latest, final long transitions, final Instant now, final Duration min,
+			final Duration max) {
+		if (latest == null || latest.getDate() == null || NodeStatus.DOWN.name().equals(latest.getValue())
+				|| transitions >= FLAPPING) {
+			// Unknown, down or flapping node
+			return min;
+		}
+		final var stability = Duration.between(latest.getDate(), now).dividedBy(BACK_OFF);
+		return ObjectUtils.max(min, ObjectUtils.min(max, stability));
+	}
+}
@@ -37,11 +37,7 @@ public abstract class AbstractLockedResource<L extends Persistable<I>, I extends
 	 */
 	public void deleteTasks(final ServicePlugin plugin, final I id) {
 		// Check and delete the related finished tasks
-		final var scope = plugin.getClass().getProtectionDomain().getCodeSource().getLocation().toString();
-		final var taskClass = getLongTaskRunnerClass();
-		applicationContext.getBeansOfType(taskClass).values().stream()
-				.filter(l -> l.getClass().getProtectionDomain().getCodeSource().getLocation().toString().equals(scope))
-				.forEach(l -> l.deleteTask(id));
+		locator.getTaskRunners(plugin, getLongTaskRunnerClass()).forEach(l -> l.deleteTask(id));
 	}
 
 	/**
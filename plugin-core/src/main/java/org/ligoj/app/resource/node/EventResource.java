@@ -4,16 +4,23 @@
 package org.ligoj.app.resource.node;
 
 import jakarta.transaction.Transactional;
+import org.apache.commons.collections4.ListUtils;
 import org.ligoj.app.dao.EventRepository;
 import org.ligoj.app.model.Event;
 import org.ligoj.app.model.EventType;
 import org.ligoj.app.model.Node;
 import org.ligoj.app.model.Subscription;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * {@link Event} resource.
@@ -22,9 +29,23 @@ import java.util.*;
 @Transactional
 public class EventResource {
 
+	/**
+	 * Configuration key of the flag set once the events registered before the materialization of the latest events
+	 * have been flagged.
+	 */
+	public static final String CONF_LATEST = "event.latest.materialized";
+
+	/**
+	 * Maximal amount of identifiers within a single IN clause.
+	 */
+	private static final int IN_SIZE = 1000;
+
 	@Autowired
 	private EventRepository repository;
 
+	@Autowired
+	private ConfigurationResource configuration;
+
 	/**
 	 * Register an event on a node. The event will be registered only if the value is new.
 	 *
@@ -34,13 +55,15 @@ public class EventResource {
 	 * @return <code>true</code> if the event has been registered in database.
 	 */
 	public boolean registerEvent(final Node node, final EventType eventType, final String value) {
-		final var lastEvent = repository.findFirstByNodeAndTypeOrderByIdDesc(node, eventType);
+		repository.lockNodes(List.of(node.getId()));
+		final var lastEvent = repository.findFirstByNodeAndTypeAndLatestTrue(node, eventType);
 
 		// Register event if it is a discovered node, or a status change
 		if (lastEvent == null || !value.equals(lastEvent.getValue())) {
-			final var newEvent = new Event();
+			repository.unmarkLatestNodes(eventType, List.of(node.getId()));
+			final var newEvent = newEvent(eventType, value);
 			newEvent.setNode(node);
-			saveEvent(newEvent, eventType, value);
+			repository.save(newEvent);
 			return true;
 		}
 
@@ -57,28 +80,136 @@ public class EventResource {
 	 * @return <code>true</code> if an event has been saved in database.
 	 */
 	public boolean registerEvent(final Subscription subscription, final EventType eventType, final String value) {
-		final var lastEvent = repository.findFirstBySubscriptionAndTypeOrderByIdDesc(subscription, eventType);
+		repository.lockSubscriptions(List.of(subscription.getId()));
+		final var lastEvent = repository.findFirstBySubscriptionAndTypeAndLatestTrue(subscription, eventType);
 		if (lastEvent == null || !value.equals(lastEvent.getValue())) {
-			final var newEvent = new Event();
+			repository.unmarkLatestSubscriptions(eventType, List.of(subscription.getId()));
+			final var newEvent = newEvent(eventType, value);
 			newEvent.setSubscription(subscription);
-			saveEvent(newEvent, eventType, value);
+			repository.save(newEvent);
 			return true;
 		}
 		return false;
 	}
 
 	/**
-	 * save an event
+	 * Register the events of many nodes. The latest events of all nodes are loaded with a single query, and only the
+	 * real transitions are written within a JDBC batch.
+	 *
+	 * @param eventType The event type.
+	 * @param values    The new value of each node.
+	 * @return The nodes whose event has been registered in database.
+	 */
+	public Set<Node> registerNodeEvents(final EventType eventType, final Map<Node, String> values) {
+		return registerEvents(eventType, values, Node::getId, repository::lockNodes,
+				ids -> repository.findLastNodeEvents(eventType, ids), ids -> repository.unmarkLatestNodes(eventType, ids),
+				Event::setNode);
+	}
+
+	/**
+	 * Register the events of many subscriptions. The latest events of all subscriptions are loaded with a single
+	 * query, and only the real transitions are written within a JDBC batch.
+	 *
+	 * @param eventType The event type.
+	 * @param values    The new value of each subscription.
+	 * @return The subscriptions whose event has been registered in database.
+	 */
+	public Set<Subscription> registerSubscriptionEvents(final EventType eventType,
+			final Map<Subscription, String> values) {
+		return registerEvents(eventType, values, Subscription::getId, repository::lockSubscriptions,
+				ids -> repository.findLastSubscriptionEvents(eventType, ids),
+				ids -> repository.unmarkLatestSubscriptions(eventType, ids), Event::setSubscription);
+	}
+
+	/**
+	 * Register the events of many targets, only for the real transitions. The targets are locked before their latest
+	 * events are read, so the concurrent registrations of a same target are serialized.
+	 */
+	private <T, K extends Comparable<K>> Set<T> registerEvents(final EventType eventType, final Map<T, String> values,
+			final Function<T, K> toId, final Consumer<List<K>> lock,
+			final Function<List<K>, List<Object[]>> findLastEvents, final Consumer<List<K>> unmarkLatest,
+			final BiConsumer<Event, T> linker) {
+		// Lock then load the latest events by chunks to stay within the IN clause limits
+		final var ids = values.keySet().stream().map(toId).sorted().toList();
+		final var lastEvents = new HashMap<Object, Event>();
+		ListUtils.partition(ids, IN_SIZE).forEach(lock);
+		ListUtils.partition(ids, IN_SIZE)
+				.forEach(chunk -> findLastEvents.apply(chunk).forEach(r -> lastEvents.put(r[0], (Event) r[1])));
+
+		// Insert only the transitions
+		final var registered = new HashSet<T>();
+		final var events = new ArrayList<Event>();
+		values.forEach((target, value) -> {
+			final var lastEvent = lastEvents.get(toId.apply(target));
+			if (lastEvent == null || !value.equals(lastEvent.getValue())) {
+				final var event = newEvent(eventType, value);
+				linker.accept(event, target);
+				events.add(event);
+				registered.add(target);
+			}
+		});
+		if (!events.isEmpty()) {
+			ListUtils.partition(registered.stream().map(toId).toList(), IN_SIZE).forEach(unmarkLatest);
+			repository.saveAll(events);
+			repository.flush();
+		}
+		return registered;
+	}
+
+	/**
+	 * Build a new event, not yet persisted, flagged as the latest one. The previous latest event must be unflagged
+	 * before.
 	 *
-	 * @param event     event
 	 * @param eventType event Type
 	 * @param value     value
+	 * @return The new event.
 	 */
-	private void saveEvent(final Event event, final EventType eventType, final String value) {
+	private Event newEvent(final EventType eventType, final String value) {
+		final var event = new Event();
 		event.setValue(value);
 		event.setType(eventType);
 		event.setDate(Instant.now());
-		repository.save(event);
+		event.setLatest(true);
+		return event;
+	}
+
+	/**
+	 * Flag the latest events of the nodes and subscriptions having no flagged event yet, once the context is ready.
+	 *
+	 * @see #materializeLatestOnce()
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	public void materializeLatestOnStartup() {
+		materializeLatestOnce();
+	}
+
+	/**
+	 * Flag the latest events from the whole history, until this migration has completed once. Then, the registration
+	 * of the events maintains these flags, and the history is no more scanned.
+	 *
+	 * @return The amount of flagged events.
+	 */
+	public int materializeLatestOnce() {
+		if (configuration.get(CONF_LATEST, 0) != 0) {
+			// Already migrated
+			return 0;
+		}
+		final var count = materializeLatest();
+		configuration.put(CONF_LATEST, "1");
+		return count;
+	}
+
+	/**
+	 * Flag the latest events from the whole history of each node and subscription having no flagged event yet. This
+	 * concerns only the events registered before the materialization of the latest events, so the other targets are
+	 * left unchanged.
+	 *
+	 * @return The amount of flagged events.
+	 */
+	public int materializeLatest() {
+		final var ids = repository.findLatestIds();
+		ListUtils.partition(ids, IN_SIZE).forEach(repository::markLatest);
+		return ids.size();
 	}
 
 	/**
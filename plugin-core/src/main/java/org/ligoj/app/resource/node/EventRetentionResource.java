@@ -0,0 +1,296 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.app.model.Event;
+import org.ligoj.app.resource.plugin.AbstractToolPluginResource;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link Event} retention. The runs of identical values are compacted, and the events older than the retention
+ * horizon are deleted, optionally archived in a compressed file. The latest event of each node and subscription is
+ * never deleted. Each chunk is deleted in its own transaction, so the table is never locked for long.
+ */
+@Path("/node/event")
+@Service
+@Produces(MediaType.APPLICATION_JSON)
+@Slf4j
+public class EventRetentionResource {
+
+	/**
+	 * Configuration key of the retention in days of the events. <code>0</code> disables the expiration.
+	 */
+	public static final String CONF_RETENTION = "event.retention";
+
+	/**
+	 * Configuration key of the directory receiving the archives of the expired events. When blank, the expired events
+	 * are deleted without archive.
+	 */
+	public static final String CONF_ARCHIVE = "event.archive";
+
+	/**
+	 * Configuration key of the amount of events processed within a single transaction.
+	 */
+	public static final String CONF_CHUNK = "event.retention.chunk";
+
+	/**
+	 * Configuration key of the identifier of the last compacted event. The next compactions resume after this event.
+	 */
+	public static final String CONF_COMPACTED = "event.retention.compacted";
+
+	/**
+	 * Default amount of events processed within a single transaction.
+	 */
+	public static final int DEFAULT_CHUNK = 1000;
+
+	/**
+	 * Header of the archive files.
+	 */
+	private static final String HEADER = "id;type;value;date;subscription;node\n";
+
+	/**
+	 * Archive file name format.
+	 */
+	private static final DateTimeFormatter ARCHIVE_FORMAT = DateTimeFormatter.ofPattern("'events-'yyyyMMddHHmmss'.csv.gz'")
+			.withZone(ZoneOffset.UTC);
+
+	@Autowired
+	private EventRepository repository;
+
+	@Autowired
+	private EventResource eventResource;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	protected EventRetentionResource self;
+
+	/**
+	 * Daily, apply the retention policy.
+	 */
+	@Scheduled(cron = "${event.retention.cron:0 0 3 * * ?}")
+	public void purgeScheduler() {
+		final var result = purge();
+		log.info("Event retention: {} compacted, {} expired, archive {}", result.getCompacted(), result.getExpired(),
+				result.getArchive());
+	}
+
+	/**
+	 * Apply the retention policy: compact the runs of identical values, then delete and optionally archive the events
+	 * older than the retention horizon.
+	 *
+	 * @return The retention result.
+	 */
+	@POST
+	@Path("purge")
+	@PreAuthorize("hasAuthority('ADMIN')")
+	public EventRetentionVo purge() {
+		// The latest events must be known to be preserved
+		eventResource.materializeLatestOnce();
+
+		final var result = new EventRetentionVo();
+		result.setCompacted(compact());
+		final var days = configuration.get(CONF_RETENTION, 0);
+		if (days > 0) {
+			final var horizon = Instant.now().minus(days, ChronoUnit.DAYS);
+			final var directory = configuration.get(CONF_ARCHIVE, "");
+			if (StringUtils.isBlank(directory)) {
+				result.setExpired(forEachExpired(horizon, chunk -> self.delete(toIds(chunk))));
+			} else {
+				final var file = Paths.get(directory, ARCHIVE_FORMAT.format(Instant.now()));
+				try {
+					Files.createDirectories(file.getParent());
+					try (var out = Files.newOutputStream(file)) {
+						result.setExpired(archive(out, horizon, true));
+					}
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				result.setArchive(file.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Export as a compressed CSV file the events the retention would archive.
+	 *
+	 * @param before Optional upper bound (exclusive) of the event dates as epoch milliseconds. When not provided, the
+	 *               retention horizon is used, and is required when the expiration is disabled.
+	 * @return The streamed archive.
+	 */
+	@GET
+	@Path("archive")
+	@Produces(MediaType.APPLICATION_OCTET_STREAM)
+	@PreAuthorize("hasAuthority('ADMIN')")
+	public Response export(@QueryParam("before") final Long before) {
+		final Instant horizon;
+		if (before == null) {
+			final var days = configuration.get(CONF_RETENTION, 0);
+			if (days <= 0) {
+				// Without expiration, the whole table would be streamed
+				throw new ValidationJsonException("before", "NotNull");
+			}
+			horizon = Instant.now().minus(days, ChronoUnit.DAYS);
+		} else {
+			horizon = Instant.ofEpochMilli(before);
+		}
+		return AbstractToolPluginResource.download(out -> archive(out, horizon, false), "events.csv.gz").build();
+	}
+
+	/**
+	 * Delete the given events.
+	 *
+	 * @param ids The event identifiers.
+	 */
+	@Transactional
+	public void delete(final Collection<Integer> ids) {
+		if (!ids.isEmpty()) {
+			repository.deleteByIds(ids);
+		}
+	}
+
+	/**
+	 * Delete the events repeating the previous value of their node or subscription. The history is read by chunks of
+	 * identifiers, from the last compacted event of the previous run.
+	 */
+	private int compact() {
+		final var size = getChunkSize();
+		final var values = new HashMap<List<Object>, Object>();
+		final var mark = configuration.get(CONF_COMPACTED, 0);
+		var from = mark;
+		var compacted = 0;
+		List<Object[]> chunk;
+		do {
+			chunk = repository.findAllValues(from, PageRequest.of(0, size));
+			if (mark > 0) {
+				resume(values, mark, chunk);
+			}
+			final var duplicates = new ArrayList<Integer>();
+			for (final var event : chunk) {
+				final var target = Arrays.asList(event[1], event[2], event[3]);
+				if (values.containsKey(target) && Objects.equals(values.get(target), event[4])
+						&& !Boolean.TRUE.equals(event[5])) {
+					duplicates.add((Integer) event[0]);
+				}
+				values.put(target, event[4]);
+			}
+			self.delete(duplicates);
+			compacted += duplicates.size();
+			if (!chunk.isEmpty()) {
+				from = (Integer) chunk.getLast()[0];
+				configuration.put(CONF_COMPACTED, String.valueOf(from));
+			}
+		} while (chunk.size() == size);
+		return compacted;
+	}
+
+	/**
+	 * Load the last compacted value of the targets of a chunk not yet known.
+	 */
+	private void resume(final Map<List<Object>, Object> values, final int mark, final List<Object[]> chunk) {
+		final var nodes = new HashSet<String>();
+		final var subscriptions = new HashSet<Integer>();
+		for (final var event : chunk) {
+			if (!values.containsKey(Arrays.asList(event[1], event[2], event[3]))) {
+				if (event[1] == null) {
+					subscriptions.add((Integer) event[2]);
+				} else {
+					nodes.add((String) event[1]);
+				}
+			}
+		}
+		if (!nodes.isEmpty()) {
+			repository.findLastNodeValues(mark, nodes).forEach(v -> values.put(Arrays.asList(v[0], null, v[1]), v[2]));
+		}
+		if (!subscriptions.isEmpty()) {
+			repository.findLastSubscriptionValues(mark, subscriptions)
+					.forEach(v -> values.put(Arrays.asList(null, v[0], v[1]), v[2]));
+		}
+	}
+
+	/**
+	 * Write the expired events in a compressed CSV stream, and delete them once written when requested.
+	 */
+	private int archive(final OutputStream out, final Instant horizon, final boolean delete) throws IOException {
+		final var gzip = new GZIPOutputStream(out, true);
+		final var writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+		writer.write(HEADER);
+		final var count = forEachExpired(horizon, chunk -> {
+			write(writer, chunk);
+			if (delete) {
+				self.delete(toIds(chunk));
+			}
+		});
+		writer.flush();
+		gzip.finish();
+		return count;
+	}
+
+	/**
+	 * Consume by chunks the events older than the horizon, except the latest ones.
+	 */
+	private int forEachExpired(final Instant horizon, final Consumer<List<Object[]>> consumer) {
+		final var size = getChunkSize();
+		var from = 0;
+		var count = 0;
+		List<Object[]> chunk;
+		do {
+			chunk = repository.findAllExpired(horizon, from, PageRequest.of(0, size));
+			consumer.accept(chunk);
+			count += chunk.size();
+			from = chunk.isEmpty() ? from : (Integer) chunk.getLast()[0];
+		} while (chunk.size() == size);
+		return count;
+	}
+
+	/**
+	 * Write a chunk of events, and flush it to the underlying stream.
+	 */
+	private void write(final Writer writer, final List<Object[]> chunk) {
+		try {
+			for (final var event : chunk) {
+				writer.write(event[0] + ";" + event[1] + ";" + Objects.toString(event[2], "") + ";" + event[3] + ";"
+						+ Objects.toString(event[4], "") + ";" + Objects.toString(event[5], "") + "\n");
+			}
+			writer.flush();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private List<Integer> toIds(final List<Object[]> chunk) {
+		return chunk.stream().map(e -> (Integer) e[0]).toList();
+	}
+
+	private int getChunkSize() {
+		return Math.max(1, configuration.get(CONF_CHUNK, DEFAULT_CHUNK));
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Result of an event retention run.
+ */
+@Getter
+@Setter
+public class EventRetentionVo {
+
+	/**
+	 * Amount of deleted events repeating the previous value of their node or subscription.
+	 */
+	private int compacted;
+
+	/**
+	 * Amount of deleted events older than the retention horizon.
+	 */
+	private int expired;
+
+	/**
+	 * Optional archive file of the expired events.
+	 */
+	private String archive;
+
+}
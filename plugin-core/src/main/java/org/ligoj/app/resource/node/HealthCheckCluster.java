@@ -0,0 +1,141 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import com.hazelcast.cache.HazelcastCacheManager;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.ligoj.app.model.Node;
+import org.ligoj.bootstrap.resource.system.cache.CacheConfigurer;
+import org.ligoj.bootstrap.resource.system.cache.CacheManagerAware;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster sharding of the scheduled health checks. Each node instance is checked only by the cluster member owning
+ * the Hazelcast partition of its identifier, so the replicas share the work without duplicate checks nor duplicate
+ * events. When a member leaves the cluster, its partitions are migrated and the related nodes are checked by their
+ * new owner from the next run. Without cluster, all nodes are checked locally.<br>
+ * A Hazelcast client never owns a partition: in client mode, a single replica is elected as coordinator with a lease
+ * shared within the cluster, and checks all nodes. The election is evaluated again when the cluster membership
+ * changes.
+ */
+@Component
+@Slf4j
+public class HealthCheckCluster implements CacheManagerAware {
+
+	/**
+	 * Name of the map holding the lease of the coordinator in client mode.
+	 */
+	private static final String COORDINATOR = "health-coordinator";
+
+	/**
+	 * Duration in minutes of the lease of the coordinator, renewed by each run of the coordinator.
+	 */
+	private static final int LEASE = 60;
+
+	private HazelcastInstance hazelcast;
+
+	/**
+	 * Indicate the current client replica is the coordinator. <code>null</code> when not yet elected, or when the
+	 * membership has changed since the election.
+	 */
+	private volatile Boolean coordinator;
+
+	@Override
+	public void onCreate(final HazelcastCacheManager cacheManager, final CacheConfigurer configurer) {
+		hazelcast = cacheManager.getHazelcastInstance();
+		hazelcast.getCluster().addMembershipListener(new MembershipListener() {
+			@Override
+			public void memberAdded(final MembershipEvent event) {
+				onMembershipChange(event);
+			}
+
+			@Override
+			public void memberRemoved(final MembershipEvent event) {
+				onMembershipChange(event);
+			}
+		});
+	}
+
+	/**
+	 * Forget the election, so the ownership is evaluated again by the next check.
+	 */
+	private void onMembershipChange(final MembershipEvent event) {
+		log.info("Cluster membership changed ({} members), health check ownership evaluated again",
+				event.getMembers().size());
+		coordinator = null;
+	}
+
+	/**
+	 * Indicate whether the given node has to be checked by the current member.
+	 *
+	 * @param node The node identifier.
+	 * @return <code>true</code> when the current member owns this node.
+	 */
+	public boolean isLocal(final String node) {
+		if (hazelcast == null || !hazelcast.getLifecycleService().isRunning()) {
+			return true;
+		}
+		if (isClient()) {
+			return isCoordinator(false);
+		}
+		final var owner = hazelcast.getPartitionService().getPartition(node).getOwner();
+		if (owner == null) {
+			// Partition being migrated, the oldest member takes it
+			return hazelcast.getCluster().getMembers().iterator().next().localMember();
+		}
+		return owner.localMember();
+	}
+
+	/**
+	 * Return the nodes to be checked by the current member.
+	 *
+	 * @param nodes The candidate nodes.
+	 * @return The nodes owned by the current member.
+	 */
+	public List<Node> filter(final List<Node> nodes) {
+		if (hazelcast != null && hazelcast.getLifecycleService().isRunning() && isClient()) {
+			// Renew the lease once per run
+			isCoordinator(true);
+		}
+		final var result = nodes.stream().filter(n -> isLocal(n.getId())).toList();
+		log.info("Health check of {}/{} nodes owned by this member", result.size(), nodes.size());
+		return result;
+	}
+
+	/**
+	 * Indicate the current replica is connected as a Hazelcast client: it does not own any partition.
+	 */
+	private boolean isClient() {
+		return !(hazelcast.getLocalEndpoint() instanceof Member);
+	}
+
+	/**
+	 * Indicate the current client replica is the coordinator: it holds the lease, or takes it when free.
+	 */
+	private boolean isCoordinator(final boolean renew) {
+		var result = coordinator;
+		if (result == null || renew) {
+			final var local = hazelcast.getLocalEndpoint().getUuid();
+			final var leases = hazelcast.<String, UUID>getMap(COORDINATOR);
+			final var holder = leases.putIfAbsent(COORDINATOR, local, LEASE, TimeUnit.MINUTES);
+			result = holder == null || holder.equals(local);
+			if (holder != null && result) {
+				leases.put(COORDINATOR, local, LEASE, TimeUnit.MINUTES);
+			}
+			if (!result.equals(coordinator)) {
+				log.info("Health check coordinator {}", result ? "elected" : "held by another replica");
+			}
+			coordinator = result;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Bounded executor of health checks. Each check runs in its own virtual thread, within a global concurrency cap, a
+ * per-plugin concurrency cap and a per-call timeout. The results are consumed by the calling thread as soon as they are
+ * available, so persistence stays in the caller's transaction.
+ * <p>
+ * The permits are held by the thread waiting for the check, not by the check itself: they are released as soon as the
+ * check completes, times out or is cancelled. A timed out check is interrupted, but most blocking HTTP clients ignore
+ * the interruption, so the abandoned call may keep running until its own timeouts. The plug-ins must therefore set and
+ * honor their own connect and read timeouts.
+ * <p>
+ * A {@link Guard} lets the caller wait before each check is submitted, such as for a rate limit, without consuming the
+ * timeout of this check, and be notified of the timeouts.
+ */
+@Component
+@Slf4j
+public class HealthCheckExecutor {
+
+	/**
+	 * Configuration key of the maximal amount of concurrent checks of a sweep.
+	 */
+	public static final String CONF_CONCURRENCY = "health.concurrency";
+
+	/**
+	 * Configuration key of the maximal amount of concurrent checks targeting the same plug-in within a sweep.
+	 */
+	public static final String CONF_CONCURRENCY_PLUGIN = "health.concurrency.plugin";
+
+	/**
+	 * Configuration key of the timeout in seconds of a single check.
+	 */
+	public static final String CONF_TIMEOUT = "health.timeout";
+
+	/**
+	 * Default maximal amount of concurrent checks.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 10;
+
+	/**
+	 * Default maximal amount of concurrent checks per plug-in.
+	 */
+	public static final int DEFAULT_CONCURRENCY_PLUGIN = 2;
+
+	/**
+	 * Default timeout in seconds of a single check.
+	 */
+	public static final int DEFAULT_TIMEOUT = 60;
+
+	@Autowired
+	protected ConfigurationResource configuration;
+
+	/**
+	 * Hooks of the caller around the checks, called from the thread waiting for the check. The default hooks do
+	 * nothing.
+	 *
+	 * @param <K> The item type.
+	 */
+	public interface Guard<K> {
+
+		/**
+		 * Wait until the check of an item can be submitted. Called once the concurrency permits are acquired, and
+		 * before the timeout of this check starts.
+		 *
+		 * @param item The item to check.
+		 * @throws InterruptedException When the wait is interrupted, the check resolves to the fallback value.
+		 */
+		default void admit(final K item) throws InterruptedException {
+			// Immediately admitted
+		}
+
+		/**
+		 * Notify the check of an item timed out and has been abandoned.
+		 *
+		 * @param item The checked item.
+		 */
+		default void timeout(final K item) {
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * A completed check.
+	 */
+	private record Result<K, V>(K item, V value) {
+	}
+
+	/**
+	 * Run the given check for each item and return the results. A failed or timed out check resolves to the fallback
+	 * value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 * @return The results of each item. Never <code>null</code>.
+	 */
+	public <K, V> Map<K, V> execute(final Collection<K> items, final Function<K, String> scope,
+			final Function<K, V> check, final Function<K, V> fallback) {
+		return execute(items, scope, new Guard<>() {
+		}, check, fallback);
+	}
+
+	/**
+	 * Run the given check for each item within the given guard and return the results. A failed or timed out check
+	 * resolves to the fallback value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param guard    The hooks called around each check.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 * @return The results of each item. Never <code>null</code>.
+	 */
+	public <K, V> Map<K, V> execute(final Collection<K> items, final Function<K, String> scope, final Guard<K> guard,
+			final Function<K, V> check, final Function<K, V> fallback) {
+		final var results = new HashMap<K, V>();
+		execute(items, scope, guard, check, fallback, results::put);
+		return results;
+	}
+
+	/**
+	 * Run the given check for each item and notify the consumer as soon as a result is available. The consumer is
+	 * always called from the calling thread, in completion order. A failed or timed out check resolves to the fallback
+	 * value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param consumer The result consumer called from the calling thread.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 */
+	public <K, V> void execute(final Collection<K> items, final Function<K, String> scope,
+			final Function<K, V> check, final Function<K, V> fallback, final BiConsumer<K, V> consumer) {
+		execute(items, scope, new Guard<>() {
+		}, check, fallback, consumer);
+	}
+
+	/**
+	 * Run the given check for each item within the given guard and notify the consumer as soon as a result is
+	 * available. The consumer is always called from the calling thread, in completion order. A failed or timed out
+	 * check resolves to the fallback value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param guard    The hooks called around each check.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param consumer The result consumer called from the calling thread.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 */
+	public <K, V> void execute(final Collection<K> items, final Function<K, String> scope, final Guard<K> guard,
+			final Function<K, V> check, final Function<K, V> fallback, final BiConsumer<K, V> consumer) {
+		execute(items, scope, configuration.get(CONF_CONCURRENCY_PLUGIN, DEFAULT_CONCURRENCY_PLUGIN), guard, check,
+				fallback, consumer);
+	}
+
+	/**
+	 * Run the given check for each item with an explicit per-plug-in width and notify the consumer as soon as a result
+	 * is available. The consumer is always called from the calling thread, in completion order. A failed or timed out
+	 * check resolves to the fallback value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param width    The maximal amount of concurrent checks of a same scope.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param consumer The result consumer called from the calling thread.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 */
+	public <K, V> void execute(final Collection<K> items, final Function<K, String> scope, final int width,
+			final Function<K, V> check, final Function<K, V> fallback, final BiConsumer<K, V> consumer) {
+		execute(items, scope, width, new Guard<>() {
+		}, check, fallback, consumer);
+	}
+
+	/**
+	 * Run the given check for each item with an explicit per-plug-in width and within the given guard, and notify the
+	 * consumer as soon as a result is available. The consumer is always called from the calling thread, in completion
+	 * order. A failed or timed out check resolves to the fallback value.
+	 *
+	 * @param items    The items to check.
+	 * @param scope    The function returning the plug-in scope of an item, used for the per-plug-in cap.
+	 * @param width    The maximal amount of concurrent checks of a same scope.
+	 * @param guard    The hooks called around each check.
+	 * @param check    The check to run, executed in a worker thread. Must not rely on the caller's transaction.
+	 * @param fallback The function returning the value of a failed or timed out check.
+	 * @param consumer The result consumer called from the calling thread.
+	 * @param <K>      The item type.
+	 * @param <V>      The result type.
+	 */
+	public <K, V> void execute(final Collection<K> items, final Function<K, String> scope, final int width,
+			final Guard<K> guard, final Function<K, V> check, final Function<K, V> fallback,
+			final BiConsumer<K, V> consumer) {
+		final var global = new Semaphore(Math.max(1, configuration.get(CONF_CONCURRENCY, DEFAULT_CONCURRENCY)));
+		final var perPlugin = Math.max(1, width);
+		final var timeout = Math.max(1, configuration.get(CONF_TIMEOUT, DEFAULT_TIMEOUT));
+		final var scopes = new ConcurrentHashMap<String, Semaphore>();
+
+		// Shutdown is not awaited: a hung check must not block the sweep
+		final var executor = Executors.newVirtualThreadPerTaskExecutor();
+		try {
+			final var completion = new ExecutorCompletionService<Result<K, V>>(executor);
+			for (final var item : items) {
+				final var scoped = scopes.computeIfAbsent(scope.apply(item), _ -> new Semaphore(perPlugin));
+				completion.submit(() -> new Result<>(item,
+						guard(item, scoped, global, guard, check, fallback, timeout, executor)));
+			}
+			for (var i = 0; i < items.size(); i++) {
+				final var result = completion.take().get();
+				consumer.accept(result.item(), result.value());
+			}
+		} catch (final InterruptedException _) {
+			log.warn("Health checks interrupted");
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException e) {
+			// Guarded tasks only fail when the fallback itself fails
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Run a single check within the concurrency caps, the guard and the timeout. The permits are released on timeout
+	 * and on cancellation, so a hung call cannot starve the remaining checks.
+	 */
+	private <K, V> V guard(final K item, final Semaphore scoped, final Semaphore global, final Guard<K> guard,
+			final Function<K, V> check, final Function<K, V> fallback, final int timeout,
+			final ExecutorService executor) {
+		try {
+			scoped.acquire();
+			try {
+				global.acquire();
+				try {
+					guard.admit(item);
+					return call(item, guard, check, fallback, timeout, executor);
+				} finally {
+					global.release();
+				}
+			} finally {
+				scoped.release();
+			}
+		} catch (final InterruptedException _) {
+			Thread.currentThread().interrupt();
+			return fallback.apply(item);
+		}
+	}
+
+	private <K, V> V call(final K item, final Guard<K> guard, final Function<K, V> check,
+			final Function<K, V> fallback, final int timeout, final ExecutorService executor)
+			throws InterruptedException {
+		final var future = executor.submit(() -> check.apply(item));
+		try {
+			return future.get(timeout, TimeUnit.SECONDS);
+		} catch (final TimeoutException _) {
+			log.warn("Health check of {} timed out after {}s", item, timeout);
+			guard.timeout(item);
+		} catch (final ExecutionException e) {
+			log.warn("Health check of {} failed: {}", item, e.getCause().getMessage());
+		} finally {
+			// Abandon the call on timeout and when this thread is interrupted, no-op once completed
+			future.cancel(true);
+		}
+		return fallback.apply(item);
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.model.Event;
+import org.ligoj.app.model.EventType;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptive scheduling of the node health checks, derived from the status history of the nodes.
+ */
+@Component
+public class HealthCheckScheduler extends AbstractHealthCheckScheduler {
+
+	@Override
+	protected void loadHistory(final List<String> nodes, final Instant since, final Map<String, Event> latest,
+			final Map<String, Long> transitions) {
+		repository.findLastNodeEvents(EventType.STATUS, nodes).forEach(r -> latest.put((String) r[0], (Event) r[1]));
+		repository.countNodeEvents(EventType.STATUS, nodes, since)
+				.forEach(r -> transitions.put((String) r[0], (Long) r[1]));
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker and rate limiter of the remote calls of the health checks, keyed by node. After repeated failures,
+ * the circuit of a node is opened and the calls fail fast. Once the open delay is elapsed, a single call probes the
+ * node: the circuit is closed on success, and opened again on failure. The calls to a node are spaced to respect the
+ * configured rate.<br>
+ * Only the failures of the node itself open its circuit: any failure of a node level call, and only the connectivity
+ * failures of a subscription level call. An error of a single subscription proves the node answered.<br>
+ * Within a {@link HealthCheckExecutor}, the {@link #guard(Function)} waits for the rate slot before the call is
+ * submitted, so this wait does not consume the call timeout, and counts the timed out calls as failures.
+ */
+@Component
+@Slf4j
+public class HealthCircuitBreaker {
+
+	/**
+	 * Configuration key of the amount of consecutive failures opening the circuit of a node.
+	 */
+	public static final String CONF_FAILURES = "health.circuit.failures";
+
+	/**
+	 * Configuration key of the delay in seconds before probing an open circuit.
+	 */
+	public static final String CONF_OPEN = "health.circuit.open";
+
+	/**
+	 * Configuration key of the maximal amount of calls per second to a node. <code>0</code> disables the rate limit.
+	 */
+	public static final String CONF_RATE = "health.rate";
+
+	/**
+	 * Default amount of consecutive failures opening the circuit.
+	 */
+	public static final int DEFAULT_FAILURES = 3;
+
+	/**
+	 * Default delay in seconds before probing an open circuit.
+	 */
+	public static final int DEFAULT_OPEN = 300;
+
+	/**
+	 * Default maximal amount of calls per second to a node.
+	 */
+	public static final int DEFAULT_RATE = 10;
+
+	/**
+	 * Circuit state.
+	 */
+	public enum State {
+		/**
+		 * The calls are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * The calls fail fast.
+		 */
+		OPEN,
+
+		/**
+		 * A single call is probing the node, the other ones fail fast.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * A remote call.
+	 *
+	 * @param <T> The result type.
+	 */
+	@FunctionalInterface
+	public interface RemoteCall<T> {
+		/**
+		 * Execute the remote call.
+		 *
+		 * @return The call result.
+		 * @throws Exception When the call failed.
+		 */
+		T call() throws Exception; // NOSONAR
+	}
+
+	/**
+	 * The circuit of a node. Guarded by its own monitor.
+	 */
+	private static class Circuit {
+		private State state = State.CLOSED;
+		private int failures;
+		private Instant opened;
+		private Instant next = Instant.MIN;
+
+		/**
+		 * Amount of rate slots already waited by {@link HealthCircuitBreaker#admit(String)}.
+		 */
+		private int admitted;
+	}
+
+	@Autowired
+	protected ConfigurationResource configuration;
+
+	/**
+	 * The clock, replaced by the tests.
+	 */
+	protected Clock clock = Clock.systemUTC();
+
+	private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * Execute a remote call to a node within its circuit and its rate limit.
+	 *
+	 * @param node The node identifier.
+	 * @param call The remote call.
+	 * @param <T>  The result type.
+	 * @return The call result.
+	 * @throws Exception When the call failed, or fails fast with an {@link IllegalStateException} when the circuit is
+	 *                   open.
+	 */
+	public <T> T call(final String node, final RemoteCall<T> call) throws Exception { // NOSONAR
+		return call(node, call, _ -> true);
+	}
+
+	/**
+	 * Execute a remote call related to the subscriptions of a node within the circuit of this node and its rate
+	 * limit. Only the connectivity failures are counted by the circuit.
+	 *
+	 * @param node The node identifier.
+	 * @param call The remote call.
+	 * @param <T>  The result type.
+	 * @return The call result.
+	 * @throws Exception When the call failed, or fails fast with an {@link IllegalStateException} when the circuit is
+	 *                   open.
+	 * @see #isConnectivityFailure(Throwable)
+	 */
+	public <T> T callSubscription(final String node, final RemoteCall<T> call) throws Exception { // NOSONAR
+		return call(node, call, HealthCircuitBreaker::isConnectivityFailure);
+	}
+
+	private <T> T call(final String node, final RemoteCall<T> call, final Predicate<Exception> isFailure)
+			throws Exception { // NOSONAR
+		final var circuit = circuits.computeIfAbsent(node, _ -> new Circuit());
+		acquire(node, circuit);
+		try {
+			final var result = call.call();
+			succeed(node, circuit);
+			return result;
+		} catch (final Exception e) {
+			if (isInterrupted(e)) {
+				// Abandoned by the executor, already counted by the timeout
+				throw e;
+			}
+			if (isFailure.test(e)) {
+				fail(node, circuit);
+			} else {
+				// The node answered
+				succeed(node, circuit);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the guard of the checks of a {@link HealthCheckExecutor} targeting nodes: the rate slot is waited before
+	 * submitting the check, and a timed out check is counted as a failure of its node.
+	 *
+	 * @param node The function returning the node identifier of an item.
+	 * @param <K>  The item type.
+	 * @return The guard to give to the executor.
+	 */
+	public <K> HealthCheckExecutor.Guard<K> guard(final Function<K, String> node) {
+		return new HealthCheckExecutor.Guard<>() {
+			@Override
+			public void admit(final K item) throws InterruptedException {
+				HealthCircuitBreaker.this.admit(node.apply(item));
+			}
+
+			@Override
+			public void timeout(final K item) {
+				HealthCircuitBreaker.this.timeout(node.apply(item));
+			}
+		};
+	}
+
+	/**
+	 * Wait for the next rate slot of a node before submitting a call to this node. The next call to this node consumes
+	 * this slot instead of waiting. Nothing is waited while the circuit fails fast.
+	 *
+	 * @param node The node identifier.
+	 * @throws InterruptedException When the wait is interrupted.
+	 */
+	public void admit(final String node) throws InterruptedException {
+		final var circuit = circuits.computeIfAbsent(node, _ -> new Circuit());
+		final Duration wait;
+		final int rate;
+		synchronized (circuit) {
+			final var now = clock.instant();
+			rate = configuration.get(CONF_RATE, DEFAULT_RATE);
+			if (rate <= 0 || isOpen(circuit, now)) {
+				return;
+			}
+			wait = reserve(circuit, now, rate);
+		}
+		if (wait.isPositive()) {
+			Thread.sleep(wait);
+		}
+		synchronized (circuit) {
+			// At most one second of admitted slots, so the unused ones cannot make a burst
+			circuit.admitted = Math.min(circuit.admitted + 1, rate);
+		}
+	}
+
+	/**
+	 * Count a timed out call to a node as a failure.
+	 *
+	 * @param node The node identifier.
+	 */
+	public void timeout(final String node) {
+		log.info("Call to node {} timed out", node);
+		fail(node, circuits.computeIfAbsent(node, _ -> new Circuit()));
+	}
+
+	/**
+	 * Indicate the current call has been interrupted, typically when abandoned by the executor after its timeout.
+	 */
+	private static boolean isInterrupted(final Throwable e) {
+		if (Thread.currentThread().isInterrupted()) {
+			return true;
+		}
+		for (var cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof InterruptedException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Indicate the given error is a connectivity failure: an I/O error or a timeout, possibly wrapped.
+	 *
+	 * @param e The error to test.
+	 * @return <code>true</code> when the given error or one of its causes is an I/O error or a timeout.
+	 */
+	public static boolean isConnectivityFailure(final Throwable e) {
+		for (var cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException || cause instanceof UncheckedIOException
+					|| cause instanceof TimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the state of each known circuit.
+	 *
+	 * @return The circuit states by node identifier.
+	 */
+	public Map<String, State> getStates() {
+		final var result = new TreeMap<String, State>();
+		circuits.forEach((node, circuit) -> {
+			synchronized (circuit) {
+				result.put(node, circuit.state);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Forget the state of all circuits.
+	 */
+	public void reset() {
+		circuits.clear();
+	}
+
+	/**
+	 * Check the circuit is not open, and wait for the next rate slot unless already admitted.
+	 */
+	private void acquire(final String node, final Circuit circuit) throws InterruptedException {
+		final Duration wait;
+		synchronized (circuit) {
+			final var now = clock.instant();
+			if (isOpen(circuit, now)) {
+				throw new IllegalStateException("Circuit of node " + node + " is " + circuit.state);
+			}
+			if (circuit.state != State.CLOSED) {
+				// This call is the probe
+				log.info("Probe the circuit of node {}", node);
+				circuit.state = State.HALF_OPEN;
+				circuit.opened = now;
+			}
+
+			final var rate = configuration.get(CONF_RATE, DEFAULT_RATE);
+			if (rate <= 0) {
+				return;
+			}
+			if (circuit.admitted > 0) {
+				// The slot has already been waited before the submission
+				circuit.admitted--;
+				return;
+			}
+			wait = reserve(circuit, now, rate);
+		}
+		if (wait.isPositive()) {
+			Thread.sleep(wait);
+		}
+	}
+
+	/**
+	 * Indicate the circuit fails fast: not closed, and the open delay is not yet elapsed.
+	 */
+	private boolean isOpen(final Circuit circuit, final Instant now) {
+		return circuit.state != State.CLOSED
+				&& now.isBefore(circuit.opened.plusSeconds(configuration.get(CONF_OPEN, DEFAULT_OPEN)));
+	}
+
+	/**
+	 * Reserve the next rate slot of a circuit, and return the duration to wait for it.
+	 */
+	private Duration reserve(final Circuit circuit, final Instant now, final int rate) {
+		final var slot = now.isAfter(circuit.next) ? now : circuit.next;
+		circuit.next = slot.plusNanos(1_000_000_000L / rate);
+		return Duration.between(now, slot);
+	}
+
+	private void succeed(final String node, final Circuit circuit) {
+		synchronized (circuit) {
+			if (circuit.state != State.CLOSED) {
+				log.info("Close the circuit of node {}", node);
+			}
+			circuit.state = State.CLOSED;
+			circuit.failures = 0;
+		}
+	}
+
+	private void fail(final String node, final Circuit circuit) {
+		synchronized (circuit) {
+			circuit.failures++;
+			if (circuit.state == State.HALF_OPEN
+					|| circuit.failures >= configuration.get(CONF_FAILURES, DEFAULT_FAILURES)) {
+				if (circuit.state == State.CLOSED) {
+					log.warn("Open the circuit of node {} after {} failures", node, circuit.failures);
+				}
+				circuit.state = State.OPEN;
+				circuit.opened = clock.instant();
+			}
+		}
+	}
+}
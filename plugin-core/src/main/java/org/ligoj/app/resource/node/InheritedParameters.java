@@ -0,0 +1,148 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.api.NodeVo;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-only parameters of a node: its own parameters, and the ones of its parent resolved through the parent chain
+ * without copy. As for a copy, a parameter of the parent takes precedence over an own parameter with the same
+ * identifier.
+ */
+class InheritedParameters extends AbstractMap<String, Serializable> implements Serializable {
+
+	/**
+	 * SID, for Hazelcast
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Parameters attached directly to the node.
+	 */
+	private final Map<String, Serializable> own;
+
+	/**
+	 * The optional parent node providing the inherited parameters.
+	 */
+	private final NodeVo parent;
+
+	/**
+	 * Parameters view constructor.
+	 *
+	 * @param own    Parameters attached directly to the node. Must not be modified after this call.
+	 * @param parent The optional parent node providing the inherited parameters.
+	 */
+	InheritedParameters(final Map<String, Serializable> own, final NodeVo parent) {
+		this.own = own;
+		this.parent = parent;
+	}
+
+	/**
+	 * The amount of distinct parameters, computed once. <code>-1</code> while not computed.
+	 */
+	private volatile int size = -1;
+
+	private Optional<Map<String, Serializable>> getInherited() {
+		return Optional.ofNullable(parent).map(NodeVo::getParameters);
+	}
+
+	/**
+	 * Indicate the given own parameter is shadowed by an inherited one.
+	 */
+	private boolean isInherited(final Object key) {
+		return parent != null && parent.getParameters() != null && parent.getParameters().containsKey(key);
+	}
+
+	@Override
+	public Serializable get(final Object key) {
+		return getInherited().filter(p -> p.containsKey(key)).map(p -> p.get(key)).orElseGet(() -> own.get(key));
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return own.containsKey(key) || isInherited(key);
+	}
+
+	@Override
+	public int size() {
+		var result = size;
+		if (result < 0) {
+			result = getInherited().map(Map::size).orElse(0);
+			for (final var key : own.keySet()) {
+				if (!isInherited(key)) {
+					result++;
+				}
+			}
+			size = result;
+		}
+		return result;
+	}
+
+	@Override
+	public Set<Entry<String, Serializable>> entrySet() {
+		// Read-only view: the inherited entries, then the own entries not shadowed by an inherited one
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<String, Serializable>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return InheritedParameters.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Iterator over the inherited entries, then over the own entries not shadowed by an inherited one.
+	 */
+	private class EntryIterator implements Iterator<Entry<String, Serializable>> {
+		private final Iterator<Entry<String, Serializable>> inherited = getInherited()
+				.map(p -> p.entrySet().iterator()).orElseGet(Collections::emptyIterator);
+		private final Iterator<Entry<String, Serializable>> owns = own.entrySet().iterator();
+		private Entry<String, Serializable> next;
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				next = advance();
+			}
+			return next != null;
+		}
+
+		@Override
+		public Entry<String, Serializable> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final var result = next;
+			next = null;
+			return result;
+		}
+
+		private Entry<String, Serializable> advance() {
+			if (inherited.hasNext()) {
+				return inherited.next();
+			}
+			while (owns.hasNext()) {
+				final var entry = owns.next();
+				if (!isInherited(entry.getKey())) {
+					return entry;
+				}
+			}
+			return null;
+		}
+	}
+}
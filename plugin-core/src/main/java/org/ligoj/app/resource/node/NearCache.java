@@ -0,0 +1,263 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.cache.Cache;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded on-heap tier in front of the shared caches for the hot read-mostly lookups. Only the cache names listed in
+ * the <code>cache.near.names</code> property have a local tier. A local entry is invalidated when the shared entry is
+ * created, updated, removed or expired by any cluster member. The local tier serves only the lookups made through
+ * {@link #get(String, Object, Supplier)}.<br>
+ * Each invalidation increments the generation of the stripe of its key. A value read from the shared cache is kept
+ * locally only when the generation of its stripe has not changed during this read, so an invalidation received in
+ * the meantime is never lost.
+ */
+@Slf4j
+@Component
+public class NearCache {
+
+	/**
+	 * The cache names having a local tier.
+	 */
+	@Value("${cache.near.names:node-enablement,nodes,authorizations}")
+	private Set<String> names;
+
+	/**
+	 * The maximal amount of entries of each local tier.
+	 */
+	@Value("${cache.near.size:10000}")
+	private int size;
+
+	/**
+	 * Amount of generation stripes of each local tier.
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * The local tiers by cache name.
+	 */
+	private final Map<String, Tier> tiers = new ConcurrentHashMap<>();
+
+	/**
+	 * The hit and miss statistics of a local tier.
+	 *
+	 * @param size   The current amount of local entries.
+	 * @param hits   The amount of lookups served by the local tier.
+	 * @param misses The amount of lookups served by the shared cache or by the loader.
+	 */
+	public record Statistics(int size, long hits, long misses) {
+	}
+
+	/**
+	 * A local tier.
+	 */
+	private static class Tier {
+		private final Cache<Object, Object> shared;
+		private final Map<Object, Object> entries;
+		private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+
+		private Tier(final Cache<Object, Object> shared, final int size) {
+			this.shared = shared;
+			this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<Object, Object> eldest) {
+					return size() > size;
+				}
+			});
+		}
+
+		private int stripe(final Object key) {
+			return Math.floorMod(key.hashCode(), STRIPES);
+		}
+
+		private long generation(final Object key) {
+			return generations.get(stripe(key));
+		}
+
+		/**
+		 * Invalidate a local entry. The generation is incremented before the removal, so a concurrent read either
+		 * sees the new generation, or puts its value before this removal.
+		 */
+		private void invalidate(final Object key) {
+			generations.incrementAndGet(stripe(key));
+			entries.remove(key);
+		}
+
+		private void invalidateAll() {
+			for (var i = 0; i < STRIPES; i++) {
+				generations.incrementAndGet(i);
+			}
+			entries.clear();
+		}
+
+		/**
+		 * Keep a value read from the shared cache, only when its stripe has not been invalidated since this read.
+		 */
+		private void put(final Object key, final Object value, final long generation) {
+			synchronized (entries) {
+				if (generation(key) == generation) {
+					entries.put(key, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Local tier invalidation on cluster events.
+	 */
+	private static class Invalidation implements CacheEntryCreatedListener<Object, Object>,
+			CacheEntryUpdatedListener<Object, Object>, CacheEntryRemovedListener<Object, Object>,
+			CacheEntryExpiredListener<Object, Object>, Serializable {
+
+		/**
+		 * SID, for Hazelcast
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Local tier, not shared with the other members.
+		 */
+		private final transient Tier tier;
+
+		private Invalidation(final Tier tier) {
+			this.tier = tier;
+		}
+
+		private void invalidate(final Iterable<CacheEntryEvent<?, ?>> events) {
+			if (tier != null) {
+				events.forEach(e -> tier.invalidate(e.getKey()));
+			}
+		}
+
+		@Override
+		public void onCreated(final Iterable<CacheEntryEvent<?, ?>> events) throws CacheEntryListenerException {
+			// A stale local entry may remain when the expiration of the shared one has not been notified
+			invalidate(events);
+		}
+
+		@Override
+		public void onUpdated(final Iterable<CacheEntryEvent<?, ?>> events) throws CacheEntryListenerException {
+			invalidate(events);
+		}
+
+		@Override
+		public void onRemoved(final Iterable<CacheEntryEvent<?, ?>> events) throws CacheEntryListenerException {
+			invalidate(events);
+		}
+
+		@Override
+		public void onExpired(final Iterable<CacheEntryEvent<?, ?>> events) throws CacheEntryListenerException {
+			invalidate(events);
+		}
+	}
+
+	/**
+	 * Attach a local tier to the given shared cache when its name is enabled.
+	 *
+	 * @param shared The shared cache.
+	 */
+	@SuppressWarnings("unchecked")
+	public void register(final Cache<?, ?> shared) {
+		if (names.contains(shared.getName())) {
+			final var tier = new Tier((Cache<Object, Object>) shared, size);
+			tier.shared.registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<>(
+					FactoryBuilder.factoryOf(new Invalidation(tier)), null, false, true));
+			tiers.put(shared.getName(), tier);
+			log.info("Near cache enabled for {} with {} entries", shared.getName(), size);
+		}
+	}
+
+	/**
+	 * Return the value of the given key, from the local tier when present, then from the shared cache, then from the
+	 * loader.
+	 *
+	 * @param name   The cache name.
+	 * @param key    The entry key. When <code>null</code>, the loader is called.
+	 * @param loader The value loader. The <code>null</code> values are not cached. When a concurrent member has shared
+	 *               its value in the meantime, this shared value wins.
+	 * @param <V>    The value type.
+	 * @return The cached or loaded value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(final String name, final Object key, final Supplier<V> loader) {
+		final var tier = tiers.get(name);
+		if (tier == null || key == null) {
+			return loader.get();
+		}
+		var value = (V) tier.entries.get(key);
+		if (value != null) {
+			tier.hits.increment();
+			return value;
+		}
+		tier.misses.increment();
+		final var generation = tier.generation(key);
+		value = (V) tier.shared.get(key);
+		if (value == null) {
+			value = loader.get();
+			if (value == null) {
+				return null;
+			}
+			if (!tier.shared.putIfAbsent(key, value)) {
+				// Shared by a concurrent member in the meantime, its value wins
+				return Optional.ofNullable((V) tier.shared.get(key)).orElse(value);
+			}
+			// This creation invalidates the stripe, so this value is only kept by the next read
+			return value;
+		}
+		tier.put(key, value, generation);
+		return value;
+	}
+
+	/**
+	 * Invalidate all entries of the given cache: the shared ones and the local ones of all members. The shared entries
+	 * are removed one by one, so the removal events invalidate the local tiers of the other members.
+	 *
+	 * @param name The cache name.
+	 */
+	public void clear(final String name) {
+		final var tier = tiers.get(name);
+		if (tier != null) {
+			tier.shared.removeAll();
+			tier.invalidateAll();
+		}
+	}
+
+	/**
+	 * Return the statistics of the local tiers.
+	 *
+	 * @return The statistics by cache name.
+	 */
+	public Map<String, Statistics> getStatistics() {
+		final var result = new TreeMap<String, Statistics>();
+		tiers.forEach((name, tier) -> result.put(name,
+				new Statistics(tier.entries.size(), tier.hits.sum(), tier.misses.sum())));
+		return result;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.dao.DelegateNodeRepository;
+import org.ligoj.app.iam.model.ReceiverType;
+import org.ligoj.app.resource.AuthorizationListener;
+import org.ligoj.app.model.Node;
+import org.ligoj.app.resource.delegate.OrgAuthorization;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory resolution of the {@link org.ligoj.app.model.DelegateNode} granted to a user. The delegates are loaded
+ * once, and the node identifiers delegated to each user are resolved once by access. Since a delegate applies to a
+ * node and all its sub-nodes, a node is granted when one of its ancestors is within these identifiers.
+ * <p>
+ * The state is dropped when {@link #invalidate()} is called by any cluster member, and when the organizational rights
+ * resolving the group and company receivers change.
+ */
+@Component
+public class NodeAuthorization {
+
+	/**
+	 * Key of the version token within the <code>authorizations</code> cache.
+	 */
+	private static final String VERSION = "node-version";
+
+	/**
+	 * The granted access on a node.
+	 */
+	public enum Access {
+		/**
+		 * Any delegate.
+		 */
+		VISIBLE,
+
+		/**
+		 * Delegate with <code>canSubscribe</code>, <code>canWrite</code> or <code>canAdmin</code> flag.
+		 */
+		SUBSCRIBE,
+
+		/**
+		 * Delegate with <code>canWrite</code> or <code>canAdmin</code> flag.
+		 */
+		WRITE,
+
+		/**
+		 * Delegate with <code>canAdmin</code> flag.
+		 */
+		ADMIN
+	}
+
+	@Autowired
+	private DelegateNodeRepository repository;
+
+	@Autowired
+	private OrgAuthorization orgAuthorization;
+
+	@Autowired
+	private AuthorizationListener listener;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private NearCache nearCache;
+
+	/**
+	 * A delegate rule.
+	 *
+	 * @param node         The delegated node identifier.
+	 * @param receiver     The receiver identifier.
+	 * @param receiverType The receiver type.
+	 * @param access       The highest granted access.
+	 * @param canSubscribe The subscription flag.
+	 */
+	private record Rule(String node, String receiver, ReceiverType receiverType, Access access,
+			boolean canSubscribe) {
+	}
+
+	/**
+	 * The resolved delegates of a user.
+	 *
+	 * @param nodes      The delegated node identifiers, by access.
+	 * @param subscriber When <code>true</code>, the user receives at least one delegate with the
+	 *                   <code>canSubscribe</code> flag.
+	 */
+	private record Principal(Map<Access, Set<String>> nodes, boolean subscriber) {
+	}
+
+	/**
+	 * A consistent state.
+	 *
+	 * @param version    The version token this state has been built for.
+	 * @param orgVersion The version of the organizational rights this state has been built for.
+	 * @param rules      All delegate rules.
+	 * @param principals The delegated node identifiers by access, by user.
+	 */
+	private record Snapshot(Object version, Object orgVersion, List<Rule> rules,
+			Map<String, Principal> principals) {
+	}
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Return the identifiers of the nodes delegated to the given user. The sub-nodes of these nodes are granted too.
+	 *
+	 * @param user   The user identifier.
+	 * @param access The required access.
+	 * @return The delegated node identifiers. Never <code>null</code>.
+	 */
+	public Set<String> getNodes(final String user, final Access access) {
+		return getPrincipal(user).nodes().get(access);
+	}
+
+	/**
+	 * Indicate the given user receives at least one delegate with the <code>canSubscribe</code> flag, whatever the
+	 * node. This is the delegate required to manage the subscriptions of a project.
+	 *
+	 * @param user The user identifier.
+	 * @return <code>true</code> when the user can subscribe at least one node.
+	 */
+	public boolean isSubscriber(final String user) {
+		return getPrincipal(user).subscriber();
+	}
+
+	/**
+	 * Indicate the given node is granted to the given user: a delegate with the required access exists for this node
+	 * or one of its ancestors. The system administrators are not considered there.
+	 *
+	 * @param user   The user identifier.
+	 * @param node   The node identifier.
+	 * @param access The required access.
+	 * @return <code>true</code> when granted.
+	 */
+	public boolean isGranted(final String user, final String node, final Access access) {
+		final var nodes = getNodes(user, access);
+		return !nodes.isEmpty() && Node.toAncestors(node).stream().anyMatch(nodes::contains);
+	}
+
+	/**
+	 * Drop the current state on all cluster members. To be called when the node delegates have changed.
+	 */
+	public void invalidate() {
+		snapshot = null;
+		Optional.ofNullable(cacheManager.getCache("authorizations"))
+				.ifPresent(c -> c.put(VERSION, UUID.randomUUID().toString()));
+	}
+
+	private Principal getPrincipal(final String user) {
+		final var current = snapshot();
+		return current.principals().computeIfAbsent(user, u -> newPrincipal(current, u));
+	}
+
+	/**
+	 * Resolve the delegated nodes of the given user.
+	 */
+	private Principal newPrincipal(final Snapshot current, final String user) {
+		final var nodes = new EnumMap<Access, Set<String>>(Access.class);
+		for (final var access : Access.values()) {
+			nodes.put(access, new HashSet<>());
+		}
+		final var rules = current.rules().stream()
+				.filter(r -> orgAuthorization.isReceiver(user, r.receiverType(), r.receiver())).toList();
+		rules.forEach(r -> {
+			// A higher access includes the lower ones
+			for (final var access : Access.values()) {
+				if (access.compareTo(r.access()) <= 0) {
+					nodes.get(access).add(r.node());
+				}
+			}
+		});
+		nodes.replaceAll((_, v) -> Set.copyOf(v));
+		return new Principal(nodes, rules.stream().anyMatch(Rule::canSubscribe));
+	}
+
+	/**
+	 * Return the highest access of a delegate from its flags.
+	 */
+	private static Access toAccess(final boolean canSubscribe, final boolean canWrite, final boolean canAdmin) {
+		if (canAdmin) {
+			return Access.ADMIN;
+		}
+		if (canWrite) {
+			return Access.WRITE;
+		}
+		return canSubscribe ? Access.SUBSCRIBE : Access.VISIBLE;
+	}
+
+	/**
+	 * Return the current state, loaded again when missing or changed by another member. The pending changes of the
+	 * current transaction are read from a state built for this transaction only.
+	 */
+	private Snapshot snapshot() {
+		final Snapshot local = listener.getLocal(this, c -> c.isOrg() || c.isNode() ? newSnapshot(VERSION, VERSION) : null);
+		if (local != null) {
+			return local;
+		}
+		final var version = getVersion();
+		final var orgVersion = orgAuthorization.getVersion();
+		var current = snapshot;
+		if (current == null || !current.version().equals(version) || !current.orgVersion().equals(orgVersion)) {
+			current = load(version, orgVersion);
+		}
+		return current;
+	}
+
+	private synchronized Snapshot load(final Object version, final Object orgVersion) {
+		final var current = snapshot;
+		if (current != null && current.version().equals(version) && current.orgVersion().equals(orgVersion)) {
+			// Already loaded by a concurrent caller
+			return current;
+		}
+		snapshot = newSnapshot(version, orgVersion);
+		return snapshot;
+	}
+
+	private Snapshot newSnapshot(final Object version, final Object orgVersion) {
+		final var rules = repository.findAll().stream().map(d -> new Rule(d.getName(), d.getReceiver(),
+				d.getReceiverType(), toAccess(d.isCanSubscribe(), d.isCanWrite(), d.isCanAdmin()), d.isCanSubscribe()))
+				.toList();
+		return new Snapshot(version, orgVersion, rules, new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Return the shared version token, read from the local tier of the <code>authorizations</code> cache.
+	 */
+	private Object getVersion() {
+		final var cache = cacheManager.getCache("authorizations");
+		if (cache == null) {
+			// Local only state
+			return Optional.ofNullable(snapshot).map(Snapshot::version).orElse(VERSION);
+		}
+		return nearCache.get("authorizations", VERSION, () -> getVersion(cache));
+	}
+
+	/**
+	 * Return the shared version token, initialized only when missing.
+	 */
+	private Object getVersion(final Cache cache) {
+		return Optional.ofNullable(cache.get(VERSION)).map(Cache.ValueWrapper::get).orElseGet(() -> {
+			final var version = UUID.randomUUID().toString();
+			return Optional.ofNullable(cache.putIfAbsent(VERSION, version)).map(Cache.ValueWrapper::get)
+					.orElse(version);
+		});
+	}
+}
@@ -7,6 +7,7 @@ import com.hazelcast.cache.HazelcastCacheManager;
 import com.hazelcast.config.EvictionConfig;
 import org.ligoj.bootstrap.resource.system.cache.CacheConfigurer;
 import org.ligoj.bootstrap.resource.system.cache.CacheManagerAware;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Role;
 import org.springframework.stereotype.Component;
@@ -22,17 +23,23 @@ import static java.util.concurrent.TimeUnit.HOURS;
 @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
 public class NodeCache implements CacheManagerAware {
 
+	@Autowired
+	private NearCache nearCache;
+
 	@Override
 	public void onCreate(final HazelcastCacheManager cacheManager, final CacheConfigurer configurer) {
 		cacheManager.createCache("nodes", configurer.newCacheConfig("nodes"));
 		cacheManager.createCache("node-parameters", configurer.newCacheConfig("node-parameters"));
-		cacheManager.createCache("services", configurer.newCacheConfig("services"));
 		cacheManager.createCache("node-enablement", configurer.newCacheConfig("node-enablement"));
 		final var tokens = configurer.newCacheConfig("curl-tokens",new Duration(HOURS, 10));
 		tokens.setEvictionConfig(new EvictionConfig());
 		cacheManager.createCache("curl-tokens", tokens);
 		cacheManager.createCache("subscription-parameters", configurer.newCacheConfig("subscription-parameters"));
 		cacheManager.createCache("plugin-data", configurer.newCacheConfig("plugin-data"));
+
+		// Local tier of the caches read through the near cache
+		nearCache.register(cacheManager.getCache("node-enablement"));
+		nearCache.register(cacheManager.getCache("nodes"));
 	}
 
 }
@@ -0,0 +1,100 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.dao.NodeRepository;
+import org.ligoj.app.dao.SubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hierarchy aware eviction of the parameter caches. The parameters of a node are inherited by its sub-nodes and by the
+ * subscriptions to these nodes, so a change on a node evicts exactly these dependent entries. The dependencies are
+ * resolved from the node ancestry index, so the other entries are kept for the whole cache duration.<br>
+ * The dependencies are resolved within the current transaction, but the entries are evicted only once this transaction
+ * is committed: an eviction before would let a concurrent or an own read cache the uncommitted values.
+ */
+@Component
+public class NodeCacheEvictor {
+
+	/**
+	 * Cache of the parameters of a node, including the inherited ones.
+	 */
+	private static final String NODE_PARAMETERS = "node-parameters";
+
+	/**
+	 * Cache of the parameters of a subscription, including the inherited ones.
+	 */
+	private static final String SUBSCRIPTION_PARAMETERS = "subscription-parameters";
+
+	@Autowired
+	private NodeRepository repository;
+
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * Evict the parameters of the given node, of its sub-nodes and of the subscriptions to these nodes.
+	 *
+	 * @param node The updated node identifier.
+	 */
+	public void evictNode(final String node) {
+		final var nodes = repository.findAllSubNodes(node);
+		final var subscriptions = subscriptionRepository.findAllIdsBySubNodes(node);
+		afterCommit(() -> {
+			evict(NODE_PARAMETERS, nodes);
+			evict(SUBSCRIPTION_PARAMETERS, subscriptions);
+		});
+	}
+
+	/**
+	 * Evict the parameters of the given subscription.
+	 *
+	 * @param subscription The updated subscription identifier.
+	 */
+	public void evictSubscription(final int subscription) {
+		afterCommit(() -> evict(SUBSCRIPTION_PARAMETERS, List.of(subscription)));
+	}
+
+	/**
+	 * Run the given eviction once the current transaction is committed, or immediately without transaction.
+	 */
+	private void afterCommit(final Runnable eviction) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					eviction.run();
+				}
+			});
+		} else {
+			eviction.run();
+		}
+	}
+
+	/**
+	 * Remove the given keys from a specific cache, in a single call when the native cache supports it.
+	 */
+	@SuppressWarnings("unchecked")
+	private void evict(final String name, final Collection<?> keys) {
+		Optional.ofNullable(cacheManager.getCache(name)).ifPresent(c -> {
+			if (c.getNativeCache() instanceof javax.cache.Cache<?, ?> cache) {
+				((javax.cache.Cache<Object, ?>) cache).removeAll(new HashSet<>(keys));
+			} else {
+				keys.forEach(c::evict);
+			}
+		});
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.resource.ServicePluginLocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+/**
+ * Warm-up of the node caches once the context and the plug-ins are ready: the plug-in index, the node tree, the
+ * plug-in activations of each node, and the parameters of each node instance. The warm-up runs in background, and the
+ * readiness is exposed so that the traffic is routed to this member only once the caches are warm.
+ */
+@Path("/node/warm-up")
+@Service
+@Produces(MediaType.APPLICATION_JSON)
+@Slf4j
+public class NodeCacheWarmUp {
+
+	@Autowired
+	private ServicePluginLocator locator;
+
+	@Autowired
+	private NodeTree nodeTree;
+
+	@Autowired
+	private ParameterValueResource pvResource;
+
+	@Autowired
+	private HealthCheckExecutor healthExecutor;
+
+	/**
+	 * When <code>false</code>, the warm-up is skipped and this member is immediately ready.
+	 */
+	@Value("${cache.warm-up:true}")
+	private boolean enabled;
+
+	private volatile WarmUpVo state = new WarmUpVo();
+
+	/**
+	 * Start the warm-up in background, after the other listeners of the context refresh.
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	@Order(Ordered.LOWEST_PRECEDENCE)
+	public void start() {
+		if (enabled) {
+			Thread.ofVirtual().name("node-cache-warm-up").start(this::warmUp);
+		} else {
+			final var skipped = new WarmUpVo();
+			skipped.setReady(true);
+			state = skipped;
+		}
+	}
+
+	/**
+	 * Populate the node caches. The parameters of the node instances are loaded concurrently, bounded by
+	 * {@link HealthCheckExecutor}.
+	 *
+	 * @return The completed warm-up state.
+	 */
+	public WarmUpVo warmUp() {
+		final var start = System.currentTimeMillis();
+		final var result = new WarmUpVo();
+		try {
+			locator.refresh();
+			final var nodes = nodeTree.getNodes();
+			nodes.keySet().forEach(locator::isEnabled);
+			result.setNodes(nodes.size());
+
+			// Only the instances are checked and subscribed
+			final var instances = nodes.keySet().stream().filter(id -> StringUtils.countMatches(id, ':') >= 3).toList();
+			final var loaded = healthExecutor.execute(instances, id -> StringUtils.substringBeforeLast(id, ":"), id -> {
+				pvResource.getNodeParameters(id);
+				return true;
+			}, _ -> false);
+			result.setParameters((int) loaded.values().stream().filter(Boolean::booleanValue).count());
+		} catch (final RuntimeException e) {
+			// The caches will be populated on demand
+			log.warn("Cache warm-up failed", e);
+		}
+		result.setDuration(System.currentTimeMillis() - start);
+		result.setReady(true);
+		state = result;
+		log.info("Cache warm-up completed in {}ms: {} nodes, {} node parameters", result.getDuration(),
+				result.getNodes(), result.getParameters());
+		return result;
+	}
+
+	/**
+	 * Return the warm-up state. The response status is <code>503</code> while the warm-up is running, so this
+	 * resource can be used as readiness probe.
+	 *
+	 * @return The warm-up state.
+	 */
+	@GET
+	public Response getState() {
+		final var current = state;
+		return Response.status(current.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+				.entity(current).build();
+	}
+}
@@ -117,7 +117,7 @@ public class NodeHelper {
 	 * @param entity  Source entity.
 	 * @return The corresponding VO object with resources and without recursive parent reference.
 	 */
-	private static NodeVo toVoParameter(final Node entity, final ServicePluginLocator locator) {
+	static NodeVo toVoParameter(final Node entity, final ServicePluginLocator locator) {
 		final var vo = toVoParameter(entity);
 		vo.setEnabled(locator.isEnabled(entity.getId()));
 		return vo;
@@ -188,16 +188,16 @@ public class NodeHelper {
 
 			// Copy the parameter value if present
 			Optional.ofNullable((ParameterValue) resultSet[1]).ifPresent(v -> vo.getParameters()
-					.put(v.getParameter().getId(), NodeHelper.parseValue(v, new ParameterValueVo())));
+					.put(v.getParameter().getId(), NodeHelper.parseValue(v)));
 		}
 
-		// Complete the hierarchy
+		// Complete the hierarchy, the parameters of the parent are resolved without copy
 		entities.entrySet().stream().filter(entry -> entry.getValue().isRefining()).forEach(entry -> {
 			// Complete the hierarchy for this node
 			final var node = nodes.get(entry.getKey());
 			final var parent = nodes.get(entry.getValue().getRefined().getId());
 			node.setRefined(parent);
-			node.getParameters().putAll(parent.getParameters());
+			node.setParameters(new InheritedParameters(node.getParameters(), parent));
 		});
 		return nodes;
 	}
@@ -313,6 +313,18 @@ public class NodeHelper {
 		return parsedValue;
 	}
 
+	/**
+	 * Parse the raw data to the target type and return this value, without intermediate value object.
+	 *
+	 * @param entity {@link ParameterValue} to be parsed.
+	 * @param <T>    The object type resolved during the parsing.
+	 * @return the parsed and typed value.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T parseValue(final ParameterValue entity) {
+		return ((ParameterValueMapper<T>) TO_VALUE.get(entity.getParameter().getType())).toValue.apply(entity.getData());
+	}
+
 	/**
 	 * Transform {@link List} to {@link Map} where K is the item's identifier, and VALUE is the original item.
 	 *
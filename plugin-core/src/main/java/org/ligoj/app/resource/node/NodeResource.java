@@ -8,6 +8,7 @@ import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
@@ -21,6 +22,7 @@ import org.ligoj.app.dao.ParameterRepository;
 import org.ligoj.app.dao.SubscriptionRepository;
 import org.ligoj.app.dao.task.LongTaskRepository;
 import org.ligoj.app.model.*;
+import org.ligoj.app.resource.node.NodeAuthorization.Access;
 import org.ligoj.app.resource.plugin.LongTaskRunner;
 import org.ligoj.bootstrap.core.NamedBean;
 import org.ligoj.bootstrap.core.dao.RestRepository;
@@ -31,14 +33,22 @@ import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.resource.OnNullReturn404;
 import org.ligoj.bootstrap.core.security.SecurityHelper;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
-import javax.cache.annotation.CacheRemoveAll;
-import javax.cache.annotation.CacheResult;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 /**
  * {@link Node} resource.
@@ -74,9 +84,64 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@Autowired
 	private PaginationJson paginationJson;
 
+	@Autowired
+	private HealthCheckExecutor healthExecutor;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private HealthCheckScheduler healthScheduler;
+
+	@Autowired
+	private SubscriptionHealthCheckScheduler subscriptionScheduler;
+
+	@Autowired
+	private HealthCircuitBreaker circuitBreaker;
+
+	@Autowired
+	private NearCache nearCache;
+
+	@Autowired
+	private HealthCheckCluster healthCluster;
+
+	@Autowired
+	private ParameterSchemaCache schemaCache;
+
+	@Autowired
+	private NodeTree nodeTree;
+
+	@Autowired
+	private NodeAuthorization authorization;
+
 	@Autowired
 	protected NodeResource self;
 
+	/**
+	 * Configuration key of the maximal amount of concurrent subscription checks of a single node.
+	 */
+	public static final String CONF_SUBSCRIPTION_CONCURRENCY = "health.subscription.concurrency";
+
+	/**
+	 * Default maximal amount of concurrent subscription checks of a single node.
+	 */
+	public static final int DEFAULT_SUBSCRIPTION_CONCURRENCY = 4;
+
+	/**
+	 * Configuration key of the maximal amount of subscriptions checked by a single batch plug-in call.
+	 */
+	public static final String CONF_SUBSCRIPTION_BATCH = "health.subscription.batch";
+
+	/**
+	 * Default maximal amount of subscriptions checked by a single batch plug-in call.
+	 */
+	public static final int DEFAULT_SUBSCRIPTION_BATCH = 200;
+
+	/**
+	 * Maximal amount of pending subscription events before a bulk registration.
+	 */
+	private static final int EVENT_BATCH = 100;
+
 	/**
 	 * Mapped columns.
 	 */
@@ -87,11 +152,37 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	}
 
 	/**
-	 * Daily, Check status of each node instance.
+	 * Daily, Check status of each node instance owned by this cluster member.
 	 */
 	@Scheduled(cron = "${health.node}")
 	public void checkNodesStatusScheduler() {
-		checkNodesStatus(repository.findAllInstance());
+		checkNodesStatus(healthCluster.filter(repository.findAllInstance()));
+	}
+
+	/**
+	 * Adaptive, check status of the node instances due according to their history. Disabled by default, and
+	 * complementary to the daily {@link #checkNodesStatusScheduler()}.
+	 *
+	 * @see HealthCheckScheduler
+	 */
+	@Scheduled(cron = "${health.adaptive:-}")
+	public void checkNodesStatusAdaptive() {
+		final var nodes = healthScheduler.poll(healthCluster.filter(repository.findAllInstance()), Instant.now());
+		try {
+			checkNodesStatus(nodes);
+		} finally {
+			healthScheduler.reschedule(nodes.stream().map(Node::getId).toList(), Instant.now());
+		}
+	}
+
+	/**
+	 * Materialize the ancestry index of the nodes created before this index, once the context is ready. New nodes
+	 * materialize their own ancestry on creation.
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void materializeAncestors() {
+		repository.findAllNoAncestors().forEach(n -> n.getAncestors().addAll(Node.toAncestors(n.getId())));
 	}
 
 	/**
@@ -100,7 +191,6 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @param vo The new node definition.
 	 */
 	@POST
-	@CacheRemoveAll(cacheName = "nodes")
 	public void create(final NodeEditionVo vo) {
 		final var entity = new Node();
 
@@ -113,6 +203,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 
 		// Create and the new parameters
 		pvResource.create(vo.getParameters(), entity);
+		nodeTree.patch(entity.getId());
 	}
 
 	/**
@@ -121,7 +212,6 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @param vo The new node definition to replace.
 	 */
 	@PUT
-	@CacheRemoveAll(cacheName = "nodes")
 	public void update(final NodeEditionVo vo) {
 		final var entity = saveOrUpdate(vo, checkWritableNode(vo.getId()));
 
@@ -130,6 +220,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 			// Create/update/delete the parameters
 			pvResource.update(vo.getParameters(), entity);
 		}
+		nodeTree.patch(entity.getId());
 	}
 
 	private Node saveOrUpdate(final NodeEditionVo vo, final Node entity) {
@@ -206,7 +297,6 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 */
 	@DELETE
 	@Path("{id:service:.+:.+:.*}")
-	@CacheRemoveAll(cacheName = "nodes")
 	public void delete(@PathParam("id") final String id) throws Exception {
 		checkAdministrable(id);
 		final var nbSubscriptions = subscriptionRepository.countByNode(id);
@@ -219,8 +309,10 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 
 		pvResource.deleteByNode(id);
 		parameterRepository.deleteByNode(id);
+		schemaCache.clear();
 		eventRepository.deleteByNode(id);
 		repository.deleteById(id);
+		nodeTree.remove(id);
 	}
 
 	@Override
@@ -235,16 +327,30 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@POST
 	@Path("status/refresh")
 	public void checkNodesStatus() {
-		checkNodesStatus(repository.findAllInstance(securityHelper.getLogin()));
+		checkNodesStatus(findAllInstance(securityHelper.getLogin()));
 	}
 
 	/**
-	 * Check status of each node.
+	 * Check status of each node. The remote checks run concurrently, bounded by {@link HealthCheckExecutor}, while the
+	 * events are registered from the calling thread.
 	 *
 	 * @param nodes The nodes to check.
 	 */
 	private void checkNodesStatus(final List<Node> nodes) {
-		nodes.forEach(this::checkNodeStatus);
+		// Resolve the parameters within the current transaction
+		final var parameters = new HashMap<String, Map<String, String>>();
+		nodes.forEach(n -> parameters.put(n.getId(), pvResource.getNodeParameters(n.getId())));
+
+		// Not proxied call: a remote check must not hold a transaction
+		final var statuses = healthExecutor.execute(nodes, n -> n.getRefined().getId(),
+				circuitBreaker.guard(Node::getId), n -> checkNodeStatus(n.getId(), parameters.get(n.getId())),
+				_ -> NodeStatus.DOWN);
+
+		// Register the events in bulk, then check the subscriptions of the changed nodes
+		final var values = new HashMap<Node, String>();
+		statuses.forEach((n, status) -> values.put(n, status.name()));
+		final var changed = eventResource.registerNodeEvents(EventType.STATUS, values);
+		nodes.stream().filter(changed::contains).forEach(n -> checkSubscriptionStatus(n, statuses.get(n)));
 	}
 
 	/**
@@ -257,8 +363,8 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@Path("status/refresh/{id:.+:.*}")
 	@OnNullReturn404
 	public NodeStatus checkNodeStatus(@PathParam("id") final String id) {
-		return Optional.ofNullable(repository.findOneVisible(id, securityHelper.getLogin())).map(this::checkNodeStatus)
-				.orElse(null);
+		return Optional.ofNullable(findOneGranted(id, securityHelper.getLogin(), Access.VISIBLE))
+				.map(this::checkNodeStatus).orElse(null);
 	}
 
 	/**
@@ -283,12 +389,14 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @param parameters Node parameters used to check the status.
 	 * @return The node status.
 	 */
+	@Transactional(Transactional.TxType.SUPPORTS)
 	public NodeStatus checkNodeStatus(final String node, final Map<String, String> parameters) {
 		var isUp = false;
 		log.info("Check status of node {}", node);
 		try {
 			// Find the plug-in associated to the requested node
-			isUp = locator.getResourceExpected(node, ToolPlugin.class).checkStatus(node, parameters);
+			final var plugin = locator.getResourceExpected(node, ToolPlugin.class);
+			isUp = circuitBreaker.call(node, () -> plugin.checkStatus(node, parameters));
 		} catch (final Exception e) { // NOSONAR
 			// Do not pollute logs with this failures
 			// Service is down when an exception is thrown.
@@ -298,11 +406,28 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	}
 
 	/**
-	 * Daily, check status of each subscription.
+	 * Daily, check status of each subscription of the node instances owned by this cluster member.
 	 */
 	@Scheduled(cron = "${health.subscription}")
 	public void checkSubscriptionsStatusScheduler() {
-		checkSubscriptionsStatus(repository.findAllInstance());
+		checkSubscriptionsStatus(healthCluster.filter(repository.findAllInstance()));
+	}
+
+	/**
+	 * Adaptive, check status of the subscriptions of the node instances due according to the history of their
+	 * subscriptions. Disabled by default, and complementary to the daily {@link #checkSubscriptionsStatusScheduler()}.
+	 *
+	 * @see SubscriptionHealthCheckScheduler
+	 */
+	@Scheduled(cron = "${health.subscription.adaptive:-}")
+	public void checkSubscriptionsStatusAdaptive() {
+		final var nodes = subscriptionScheduler.poll(healthCluster.filter(repository.findAllInstance()),
+				Instant.now());
+		try {
+			checkSubscriptionsStatus(nodes);
+		} finally {
+			subscriptionScheduler.reschedule(nodes.stream().map(Node::getId).toList(), Instant.now());
+		}
 	}
 
 	/**
@@ -311,7 +436,48 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@POST
 	@Path("status/subscription/refresh")
 	public void checkSubscriptionsStatus() {
-		checkSubscriptionsStatus(repository.findAllInstance(securityHelper.getLogin()));
+		checkSubscriptionsStatus(findAllInstance(securityHelper.getLogin()));
+	}
+
+	/**
+	 * Check status of each subscription, and stream as Server-Sent Events the status of each node once its
+	 * subscriptions are checked. The nodes are checked concurrently. Only visible nodes from the current user are
+	 * checked. The remaining checks are cancelled when the client disconnects.
+	 *
+	 * @return The event stream: a <code>node</code> event per node, then a <code>done</code> event.
+	 */
+	@GET
+	@Path("status/subscription/refresh/stream")
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	public StreamingOutput checkSubscriptionsStatusStream() {
+		// Resolve the nodes and their parameters within the current transaction
+		final var instances = findAllInstance(securityHelper.getLogin());
+		final var parameters = new HashMap<String, Map<String, String>>();
+		final var tools = new HashMap<String, String>();
+		instances.forEach(n -> {
+			parameters.put(n.getId(), pvResource.getNodeParameters(n.getId()));
+			tools.put(n.getId(), n.getRefined().getId());
+		});
+
+		// The stream is written once this transaction is completed: only the registrations run within their own short
+		// transaction, never the remote checks
+		return output -> {
+			final var stream = new SseStream(output);
+			try {
+				healthExecutor.execute(instances, n -> tools.get(n.getId()), circuitBreaker.guard(Node::getId),
+						n -> self.checkNodeStatus(n.getId(), parameters.get(n.getId())), _ -> NodeStatus.DOWN,
+						(n, status) -> {
+							// As the POST sweep, only the subscriptions of the changed nodes are checked
+							if (self.registerNodeStatus(n.getId(), status)) {
+								checkSubscriptionStatus(n, status);
+							}
+							stream.send("node", Map.of("node", n.getId(), "status", status));
+						});
+				stream.send("done", Map.of("nodes", instances.size()));
+			} catch (final UncheckedIOException e) {
+				log.info("Check all subscriptions of {} nodes : Cancelled by the client", instances.size());
+			}
+		};
 	}
 
 	/**
@@ -347,7 +513,21 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	}
 
 	/**
-	 * Check status subscription.
+	 * Register the status of a node within a short transaction. This method need to be public for the CGLIB proxying:
+	 * it is called out of the request transaction.
+	 *
+	 * @param node   The node identifier.
+	 * @param status The checked node status.
+	 * @return <code>true</code> when the status of this node has changed.
+	 */
+	public boolean registerNodeStatus(final String node, final NodeStatus status) {
+		return eventResource.registerEvent(repository.findOneExpected(node), EventType.STATUS, status.name());
+	}
+
+	/**
+	 * Check status subscription. When called out of a transaction with a known node status, the parameters are read
+	 * and the events are registered within their own short transactions, and no transaction is held during the remote
+	 * checks.
 	 *
 	 * @param node   node where we must check subscriptions
 	 * @param status node status
@@ -375,7 +555,9 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 		} else {
 			// All subscription of this are marked as DOWN
 			log.info("Node {} is DOWN, as well for {} related subscriptions", node.getId(), subscriptions.size());
-			subscriptions.forEach((s, ignored) -> eventResource.registerEvent(s, EventType.STATUS, NodeStatus.DOWN.name()));
+			final var values = new HashMap<Subscription, String>();
+			subscriptions.keySet().forEach(s -> values.put(s, NodeStatus.DOWN.name()));
+			eventResource.registerSubscriptionEvents(EventType.STATUS, values);
 		}
 	}
 
@@ -386,6 +568,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @param parameters   Parameters of a subscription.
 	 * @return status of given subscription.
 	 */
+	@Transactional(Transactional.TxType.SUPPORTS)
 	public SubscriptionStatusWithData checkSubscriptionStatus(final Subscription subscription,
 			final Map<String, String> parameters) {
 		final var node = subscription.getNode().getId();
@@ -396,7 +579,8 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 			final var toolPlugin = locator.getResourceExpected(node, ToolPlugin.class);
 
 			// Call service which check status
-			final var status = toolPlugin.checkSubscriptionStatus(subscription.getId(), node, parameters);
+			final var status = circuitBreaker.callSubscription(node,
+					() -> toolPlugin.checkSubscriptionStatus(subscription.getId(), node, parameters));
 			status.setNode(node);
 			log.info("Check status of subscription {}#{} succeed", node, subscription.getId());
 			return status;
@@ -410,20 +594,108 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	}
 
 	/**
-	 * Check the subscriptions of each subscription related to given node.
+	 * Check the subscriptions of each subscription related to given node. When the plug-in implements the batch status
+	 * check, the subscriptions are checked by chunks, each chunk being a single plug-in call. Otherwise, each
+	 * subscription is checked individually.
 	 */
 	private void checkNodeSubscriptions(final Node node, final Map<String, String> nodeParameters,
 			final Map<Subscription, Map<String, String>> subscriptions) {
-		var counter = 0;
-		for (final var subscription : subscriptions.entrySet()) {
-			// For each subscription, check status
-			log.info("Check all subscriptions of node {} : {}/{} ...", node.getId(), counter + 1, subscriptions.size());
-			final var parameters = new HashMap<>(nodeParameters);
-			parameters.putAll(subscription.getValue());
-			final var subscriptionStatus = self.checkSubscriptionStatus(subscription.getKey(), parameters).getStatus();
-			eventResource.registerEvent(subscription.getKey(), EventType.STATUS, subscriptionStatus.name());
-			counter++;
+		final var plugin = locator.getResource(node.getId(), ToolPlugin.class);
+		if (plugin != null && plugin.supportsBatchStatus()) {
+			checkNodeSubscriptionsBatch(node, plugin, nodeParameters, subscriptions);
+		} else {
+			checkNodeSubscriptionsSingle(node, nodeParameters, subscriptions);
+		}
+	}
+
+	/**
+	 * Check the subscriptions of given node one by one. The remote checks run concurrently with a bounded width, while
+	 * the events are registered in bulk from the calling thread as the checks complete. A hung check is resolved as
+	 * {@link NodeStatus#DOWN} after the timeout, so its event is never lost.
+	 */
+	private void checkNodeSubscriptionsSingle(final Node node, final Map<String, String> nodeParameters,
+			final Map<Subscription, Map<String, String>> subscriptions) {
+		final var counter = new AtomicInteger();
+		final var width = configuration.get(CONF_SUBSCRIPTION_CONCURRENCY, DEFAULT_SUBSCRIPTION_CONCURRENCY);
+		log.info("Check all subscriptions of node {} : {} subscriptions, width {}", node.getId(), subscriptions.size(),
+				width);
+
+		// Not proxied call: a remote check must not hold a transaction
+		final var pending = new HashMap<Subscription, String>();
+		healthExecutor.execute(subscriptions.keySet(), _ -> node.getId(), width,
+				circuitBreaker.<Subscription>guard(_ -> node.getId()),
+				s -> checkSubscriptionStatus(s, toParameters(nodeParameters, subscriptions.get(s))).getStatus(),
+				_ -> NodeStatus.DOWN, (s, status) -> {
+					pending.put(s, status.name());
+					if (pending.size() >= EVENT_BATCH) {
+						registerSubscriptionEvents(pending);
+					}
+					log.info("Check all subscriptions of node {} : {}/{} processed", node.getId(),
+							counter.incrementAndGet(), subscriptions.size());
+				});
+		registerSubscriptionEvents(pending);
+	}
+
+	/**
+	 * Check the subscriptions of given node by chunks with the batch status check of the plug-in. A failed or hung
+	 * chunk marks all its subscriptions as {@link NodeStatus#DOWN}.
+	 */
+	private void checkNodeSubscriptionsBatch(final Node node, final ToolPlugin plugin,
+			final Map<String, String> nodeParameters, final Map<Subscription, Map<String, String>> subscriptions) {
+		final var counter = new AtomicInteger();
+		final var width = configuration.get(CONF_SUBSCRIPTION_CONCURRENCY, DEFAULT_SUBSCRIPTION_CONCURRENCY);
+		final var size = Math.max(1, configuration.get(CONF_SUBSCRIPTION_BATCH, DEFAULT_SUBSCRIPTION_BATCH));
+		final var chunks = ListUtils.partition(new ArrayList<>(subscriptions.keySet()), size);
+		log.info("Check all subscriptions of node {} : {} subscriptions, {} batches", node.getId(),
+				subscriptions.size(), chunks.size());
+
+		healthExecutor.execute(chunks, _ -> node.getId(), width,
+				circuitBreaker.<List<Subscription>>guard(_ -> node.getId()),
+				chunk -> checkSubscriptionStatuses(node.getId(), plugin, chunk, nodeParameters, subscriptions),
+				_ -> Map.of(), (chunk, statuses) -> {
+					final var pending = new HashMap<Subscription, String>();
+					chunk.forEach(s -> pending.put(s, Optional.ofNullable(statuses.get(s.getId()))
+							.map(SubscriptionStatusWithData::getStatus).orElse(NodeStatus.DOWN).name()));
+					registerSubscriptionEvents(pending);
+					log.info("Check all subscriptions of node {} : {}/{} processed", node.getId(),
+							counter.addAndGet(chunk.size()), subscriptions.size());
+				});
+	}
+
+	/**
+	 * Register in bulk the pending subscription statuses, then clear them.
+	 */
+	private void registerSubscriptionEvents(final Map<Subscription, String> pending) {
+		eventResource.registerSubscriptionEvents(EventType.STATUS, pending);
+		pending.clear();
+	}
+
+	/**
+	 * Check the status of a chunk of subscriptions of the same node with a single plug-in call.
+	 */
+	private Map<Integer, SubscriptionStatusWithData> checkSubscriptionStatuses(final String node,
+			final ToolPlugin plugin, final List<Subscription> chunk, final Map<String, String> nodeParameters,
+			final Map<Subscription, Map<String, String>> subscriptions) {
+		final var parameters = new HashMap<Integer, Map<String, String>>();
+		chunk.forEach(s -> parameters.put(s.getId(), toParameters(nodeParameters, subscriptions.get(s))));
+		try {
+			log.info("Check status of {} subscriptions of node {}...", chunk.size(), node);
+			return circuitBreaker.callSubscription(node, () -> plugin.checkSubscriptionStatuses(node, parameters));
+		} catch (final Exception e) { // NOSONAR
+			// Service is down when an exception is thrown, log the error without trace
+			log.warn("Check status of {} subscriptions of node {} failed : {}", chunk.size(), node, e.getMessage());
 		}
+		return Map.of();
+	}
+
+	/**
+	 * Return the parameters of a subscription merged with the ones of its node.
+	 */
+	private Map<String, String> toParameters(final Map<String, String> nodeParameters,
+			final Map<String, String> subscriptionParameters) {
+		final var parameters = new HashMap<>(nodeParameters);
+		parameters.putAll(subscriptionParameters);
+		return parameters;
 	}
 
 	/**
@@ -461,8 +733,10 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@Path("status/subscription")
 	public List<NodeStatisticsVo> getNodeStatistics() {
 		final var results = new HashMap<String, NodeStatisticsVo>();
-		final var subscriptionsSpecificEvents = eventRepository.countSubscriptionsEvents(securityHelper.getLogin());
-		final var totalSubscriptions = repository.countNodeSubscriptions(securityHelper.getLogin());
+		final var user = securityHelper.getLogin();
+		final var subscriptionsSpecificEvents = eventRepository.countSubscriptionsEvents(user);
+		final var totalSubscriptions = repository.countNodeSubscriptions(user,
+				authorization.getNodes(user, Access.VISIBLE));
 
 		// Map node and amount of subscriptions
 		for (final var totalSubscription : totalSubscriptions) {
@@ -480,6 +754,35 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 		return new ArrayList<>(results.values());
 	}
 
+	/**
+	 * Retrieve the health-check circuit state of the visible node instances having been checked.
+	 *
+	 * @return The circuit state by node identifier.
+	 * @see HealthCircuitBreaker
+	 */
+	@GET
+	@Path("status/circuit")
+	public Map<String, HealthCircuitBreaker.State> getCircuitStates() {
+		final var visible = findAllInstance(securityHelper.getLogin()).stream().map(Node::getId)
+				.collect(Collectors.toSet());
+		final var states = circuitBreaker.getStates();
+		states.keySet().retainAll(visible);
+		return states;
+	}
+
+	/**
+	 * Return the hit and miss statistics of the local tiers of the near cache of this member.
+	 *
+	 * @return The statistics by cache name.
+	 * @see NearCache
+	 */
+	@GET
+	@Path("cache/near")
+	@PreAuthorize("hasAuthority('ADMIN')")
+	public Map<String, NearCache.Statistics> getNearCacheStatistics() {
+		return nearCache.getStatistics();
+	}
+
 	/**
 	 * Return a specific node visible for current user. The visibility is checked.
 	 *
@@ -490,7 +793,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	@Path("{id:.+:.*}")
 	@org.springframework.transaction.annotation.Transactional(readOnly = true)
 	public NodeVo findById(@PathParam("id") final String id) {
-		return Optional.ofNullable(repository.findOneVisible(id, securityHelper.getLogin()))
+		return Optional.ofNullable(findOneGranted(id, securityHelper.getLogin(), Access.VISIBLE))
 				.map(n -> NodeHelper.toVoLight(n, locator)).orElseThrow(() -> new ValidationJsonException("id",
 						BusinessException.KEY_UNKNOWN_ID, "0", "node", "1", id));
 	}
@@ -528,8 +831,9 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 			@QueryParam("mode") final SubscriptionMode mode, @QueryParam("depth") @DefaultValue("-1") final int depth,
 			@QueryParam("status") @DefaultValue("false") final boolean status) {
 		final var login = securityHelper.getLogin();
-		final var findAll = repository.findAllVisible(login, StringUtils.trimToEmpty(criteria),
-				refined, mode, depth, paginationJson.getPageRequest(uriInfo, ORM_MAPPING));
+		final var findAll = repository.findAllVisible(login, authorization.getNodes(login, Access.VISIBLE),
+				StringUtils.trimToEmpty(criteria), refined, mode, depth,
+				paginationJson.getPageRequest(uriInfo, ORM_MAPPING));
 
 		// Optionally surface the last known status from the most recent STATUS event,
 		// fetched in a SINGLE bulk query for the whole page (avoids an N+1).
@@ -587,14 +891,14 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	}
 
 	/**
-	 * Return all nodes with the hierarchy. Key is the identifier of the nodes.
+	 * Return all nodes with the hierarchy. Key is the identifier of the nodes. The returned nodes are shared and must
+	 * not be modified.
 	 *
 	 * @return all nodes without UI data.
 	 */
-	@CacheResult(cacheName = "nodes")
 	@org.springframework.transaction.annotation.Transactional(readOnly = true)
 	public Map<String, NodeVo> findAll() {
-		return NodeHelper.toVoParameters(repository.findAllWithValuesSecure(), locator);
+		return nodeTree.getNodes();
 	}
 
 	/**
@@ -629,6 +933,28 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 		}
 	}
 
+	/**
+	 * Return the instance nodes granted to the given user.
+	 *
+	 * @param user The user requesting the nodes.
+	 * @return The visible instance nodes.
+	 */
+	private List<Node> findAllInstance(final String user) {
+		return repository.findAllInstance(user, authorization.getNodes(user, Access.VISIBLE));
+	}
+
+	/**
+	 * Return a {@link Node} by its identifier if it is granted to the given user.
+	 *
+	 * @param id     The identifier to find.
+	 * @param user   The user requesting the node.
+	 * @param access The required access.
+	 * @return The granted node or <code>null</code>.
+	 */
+	public Node findOneGranted(final String id, final String user, final Access access) {
+		return repository.findOneGranted(id, user, authorization.getNodes(user, access));
+	}
+
 	/**
 	 * Check the related node can be updated by the current principal.
 	 *
@@ -653,7 +979,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @return The node the principal can write.
 	 */
 	public Node checkWritableNode(final String id) {
-		return checkNode(id, repository::findOneWritable);
+		return checkNode(id, (i, u) -> findOneGranted(i, u, Access.WRITE));
 	}
 
 	/**
@@ -663,7 +989,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 	 * @return The node the principal can administer.
 	 */
 	public Node checkAdministrable(final String id) {
-		return checkNode(id, repository::findOneAdministrable);
+		return checkNode(id, (i, u) -> findOneGranted(i, u, Access.ADMIN));
 	}
 
 	@SuppressWarnings({"unchecked", "rawtypes"})
@@ -679,7 +1005,7 @@ public class NodeResource extends AbstractLockedResource<Node, String> {
 
 	@Override
 	public Node checkVisible(String id) {
-		final var entity = repository.findOneVisible(id, securityHelper.getLogin());
+		final var entity = findOneGranted(id, securityHelper.getLogin(), Access.VISIBLE);
 		if (entity == null) {
 			// Associated node is not visible
 			throw new EntityNotFoundException(id);
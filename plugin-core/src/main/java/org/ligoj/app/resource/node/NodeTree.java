@@ -0,0 +1,321 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.api.NodeVo;
+import org.ligoj.app.dao.NodeRepository;
+import org.ligoj.app.model.Node;
+import org.ligoj.app.model.ParameterValue;
+import org.ligoj.app.resource.ServicePluginLocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * In-process tree of all nodes with their parameters. The tree is loaded once, then patched on each node mutation: only
+ * the changed node and its sub-nodes are read again. The other cluster members are notified with a version token
+ * stored in the <code>nodes</code> cache, and reload their own tree when this token differs from the one of their
+ * tree. Clearing this cache forces a reload. This token is read through the {@link NearCache}, so a read of the tree
+ * is local until the token is replaced.<br>
+ * Within a transaction, the patches are applied to a copy of the tree visible only by this transaction. The shared
+ * tree is patched and the version token is replaced only once this transaction is committed, so the uncommitted
+ * changes are never visible to the other transactions.
+ */
+@Component
+public class NodeTree {
+
+	/**
+	 * Key of the version token within the <code>nodes</code> cache.
+	 */
+	private static final String VERSION = "version";
+
+	@Autowired
+	private NodeRepository repository;
+
+	@Autowired
+	private ServicePluginLocator locator;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private NearCache nearCache;
+
+	/**
+	 * A consistent state of the tree.
+	 *
+	 * @param version The version token this state has been built for.
+	 * @param owns    The nodes with their own parameters only, and without refined reference.
+	 * @param nodes   The nodes with their inherited parameters and their refined reference.
+	 */
+	private record Snapshot(Object version, Map<String, NodeVo> owns, Map<String, NodeVo> nodes) {
+	}
+
+	/**
+	 * The tree of a transaction having changed some nodes, bound to this transaction.
+	 */
+	private static class Local {
+		private Snapshot snapshot;
+		private final Set<String> changed = new LinkedHashSet<>();
+	}
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Return all nodes with the hierarchy. Key is the identifier of the nodes. The returned nodes are shared and must
+	 * not be modified.
+	 *
+	 * @return All nodes. Never <code>null</code>.
+	 */
+	public Map<String, NodeVo> getNodes() {
+		final var local = (Local) TransactionSynchronizationManager.getResource(this);
+		if (local != null) {
+			// Changed by the current transaction
+			return local.snapshot.nodes();
+		}
+		final var version = getVersion();
+		var current = snapshot;
+		if (current == null || !current.version().equals(version)) {
+			// Not yet loaded, or changed by another member
+			current = load(version);
+		}
+		return current.nodes();
+	}
+
+	/**
+	 * Read again the given node and its sub-nodes, and replace them in the tree.
+	 *
+	 * @param node The created or updated node identifier.
+	 */
+	public void patch(final String node) {
+		change(node, true);
+	}
+
+	/**
+	 * Remove the given node and its sub-nodes from the tree.
+	 *
+	 * @param node The deleted node identifier.
+	 */
+	public void remove(final String node) {
+		change(node, false);
+	}
+
+	/**
+	 * Apply a change to the tree of the current transaction, and to the shared tree once committed. Without
+	 * transaction, the change is applied to the shared tree immediately.
+	 */
+	private void change(final String node, final boolean read) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			publish(node, read);
+			return;
+		}
+		var local = (Local) TransactionSynchronizationManager.getResource(this);
+		if (local == null) {
+			local = new Local();
+			local.snapshot = getLocalBase();
+			bind(local);
+		}
+		local.changed.add(node);
+		local.snapshot = apply(local.snapshot, node, read, null);
+	}
+
+	/**
+	 * Return the tree a transaction starts its changes from: the shared tree when up-to-date, or else a whole tree
+	 * read within this transaction and kept out of the shared tree.
+	 */
+	private Snapshot getLocalBase() {
+		final var current = snapshot;
+		if (current != null && current.version().equals(getVersion())) {
+			return current;
+		}
+		return read(null);
+	}
+
+	/**
+	 * Bind the tree to the current transaction. Once committed, the changed nodes are read again and published.
+	 */
+	private void bind(final Local local) {
+		TransactionSynchronizationManager.bindResource(this, local);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				local.changed.forEach(n -> publish(n, true));
+			}
+
+			@Override
+			public void afterCompletion(final int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(NodeTree.this);
+			}
+		});
+	}
+
+	/**
+	 * Apply a change to the shared tree, then share the new version. When another member has changed the tree in the
+	 * meantime, the local tree is dropped and loaded again on the next read.
+	 */
+	private synchronized void publish(final String node, final boolean read) {
+		final var current = snapshot;
+		if (current == null) {
+			// Nothing to patch, the next read loads the whole tree
+			return;
+		}
+		final var version = UUID.randomUUID().toString();
+		final var patched = apply(current, node, read, version);
+		snapshot = replaceVersion(current.version(), version) ? patched : null;
+	}
+
+	/**
+	 * Return a new tree where the given node and its sub-nodes are removed, then read again when requested.
+	 */
+	private Snapshot apply(final Snapshot current, final String node, final boolean read, final Object version) {
+		final var owns = new HashMap<>(current.owns());
+		removeSubTree(owns, node);
+		if (read) {
+			owns.putAll(toOwns(repository.findAllWithValuesSecure(node)));
+		}
+		final var nodes = new HashMap<>(current.nodes());
+		removeSubTree(nodes, node);
+		compose(owns, nodes, owns.keySet().stream().filter(id -> isSubTree(id, node)).toList());
+		return new Snapshot(version, owns, Collections.unmodifiableMap(nodes));
+	}
+
+	/**
+	 * Load the whole tree. The concurrent callers waiting for this load reuse its result.
+	 */
+	private synchronized Snapshot load(final Object version) {
+		final var current = snapshot;
+		if (current != null && current.version().equals(version)) {
+			// Already loaded by a concurrent caller
+			return current;
+		}
+		snapshot = read(version);
+		return snapshot;
+	}
+
+	/**
+	 * Read the whole tree.
+	 */
+	private Snapshot read(final Object version) {
+		final var owns = toOwns(repository.findAllWithValuesSecure());
+		final var nodes = new HashMap<String, NodeVo>();
+		compose(owns, nodes, owns.keySet());
+		return new Snapshot(version, owns, Collections.unmodifiableMap(nodes));
+	}
+
+	/**
+	 * Build the nodes with their own parameters from the nodes and values result set. The parameter identifiers are
+	 * interned, and the equal values are shared and read-only.
+	 */
+	private Map<String, NodeVo> toOwns(final List<Object[]> nodesAndValues) {
+		final var owns = new HashMap<String, NodeVo>();
+		final var values = new HashMap<Serializable, Serializable>();
+		for (final var resultSet : nodesAndValues) {
+			final var node = (Node) resultSet[0];
+			final var vo = owns.computeIfAbsent(node.getId(), _ -> NodeHelper.toVoParameter(node, locator));
+			Optional.ofNullable((ParameterValue) resultSet[1]).ifPresent(v -> vo.getParameters().put(
+					v.getParameter().getId().intern(),
+					values.computeIfAbsent(toReadOnly(NodeHelper.parseValue(v)), Function.identity())));
+		}
+		owns.values().forEach(vo -> vo.setParameters(Collections.unmodifiableMap(vo.getParameters())));
+		return owns;
+	}
+
+	/**
+	 * Return a read-only form of a parsed value.
+	 */
+	private Serializable toReadOnly(final Serializable value) {
+		if (value instanceof List<?> list) {
+			return (Serializable) Collections.unmodifiableList(list);
+		}
+		return value;
+	}
+
+	/**
+	 * Build the given nodes with their refined reference and their inherited parameters. The parents are built
+	 * before their children, and a parent outside the given nodes is taken from the already built nodes.
+	 */
+	private void compose(final Map<String, NodeVo> owns, final Map<String, NodeVo> nodes, final Collection<String> ids) {
+		ids.stream().sorted(Comparator.comparingInt(id -> StringUtils.countMatches(id, ':'))).forEach(id -> {
+			final var own = owns.get(id);
+			final var vo = copy(own);
+			final var parent = nodes.get(StringUtils.substringBeforeLast(id, ":"));
+			vo.setRefined(parent);
+			vo.setParameters(parent == null ? own.getParameters() : new InheritedParameters(own.getParameters(), parent));
+			nodes.put(id, vo);
+		});
+	}
+
+	/**
+	 * Return a copy of the given node, without parameters.
+	 */
+	private NodeVo copy(final NodeVo own) {
+		final var vo = new NodeVo();
+		vo.setId(own.getId());
+		vo.setName(own.getName());
+		vo.setMode(own.getMode());
+		vo.setUiClasses(own.getUiClasses());
+		vo.setUiColor(own.getUiColor());
+		vo.setTag(own.getTag());
+		vo.setTagUiClasses(own.getTagUiClasses());
+		vo.setEnabled(own.getEnabled());
+		return vo;
+	}
+
+	private void removeSubTree(final Map<String, NodeVo> nodes, final String node) {
+		nodes.keySet().removeIf(id -> isSubTree(id, node));
+	}
+
+	private boolean isSubTree(final String id, final String node) {
+		return id.equals(node) || id.startsWith(node + ":");
+	}
+
+	/**
+	 * Return the shared version token, from the local tier of the near cache when present.
+	 */
+	private Object getVersion() {
+		final var cache = cacheManager.getCache("nodes");
+		if (cache == null) {
+			// Local only tree
+			return Optional.ofNullable(snapshot).map(Snapshot::version).orElse(VERSION);
+		}
+		return nearCache.get("nodes", VERSION, () -> getVersion(cache));
+	}
+
+	/**
+	 * Return the shared version token. The token is only written when missing.
+	 */
+	private Object getVersion(final Cache cache) {
+		return Optional.ofNullable(cache.get(VERSION)).map(Cache.ValueWrapper::get).orElseGet(() -> {
+			final var version = UUID.randomUUID().toString();
+			return Optional.ofNullable(cache.putIfAbsent(VERSION, version)).map(Cache.ValueWrapper::get)
+					.orElse(version);
+		});
+	}
+
+	/**
+	 * Replace the shared version token only when it is still the expected one.
+	 *
+	 * @return <code>true</code> when the token has been replaced.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean replaceVersion(final Object expected, final String version) {
+		final var cache = cacheManager.getCache("nodes");
+		if (cache == null) {
+			return true;
+		}
+		if (cache.getNativeCache() instanceof javax.cache.Cache<?, ?> nativeCache) {
+			return ((javax.cache.Cache<Object, Object>) nativeCache).replace(VERSION, expected, version);
+		}
+		cache.put(VERSION, version);
+		return true;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.model.Parameter;
+import org.ligoj.app.model.ParameterType;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled constraints of a {@link Parameter}: the JSON data is parsed once, and the pattern is compiled once. Only
+ * the constraints of the parameter type are compiled.
+ */
+@Getter
+public class ParameterSchema {
+
+	/**
+	 * The parameter type this schema has been compiled for.
+	 */
+	private final ParameterType type;
+
+	/**
+	 * The JSON data this schema has been compiled from.
+	 */
+	private final String data;
+
+	/**
+	 * Optional minimal value of an integer.
+	 */
+	private final Integer min;
+
+	/**
+	 * Optional maximal value of an integer.
+	 */
+	private final Integer max;
+
+	/**
+	 * Available values of a selection. Empty for the other types.
+	 */
+	private final List<String> options;
+
+	/**
+	 * Optional pattern of a text.
+	 */
+	private final Pattern pattern;
+
+	private ParameterSchema(final Parameter parameter, final Integer min, final Integer max, final List<String> options,
+			final Pattern pattern) {
+		this.type = parameter.getType();
+		this.data = parameter.getData();
+		this.min = min;
+		this.max = max;
+		this.options = options;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Compile the constraints of a parameter.
+	 *
+	 * @param parameter The parameter definition.
+	 * @return The compiled schema.
+	 */
+	public static ParameterSchema compile(final Parameter parameter) {
+		return switch (parameter.getType()) {
+			case INTEGER -> {
+				final var minMax = NodeHelper.toMapInteger(parameter.getData());
+				yield new ParameterSchema(parameter, minMax.get("min"), minMax.get("max"), List.of(), null);
+			}
+			case SELECT, MULTIPLE -> new ParameterSchema(parameter, null, null,
+					NodeHelper.toListString(parameter.getData()), null);
+			case TEXT -> {
+				final var patternString = StringUtils.isBlank(parameter.getData()) ? null
+						: NodeHelper.toMapString(parameter.getData()).get("pattern");
+				yield new ParameterSchema(parameter, null, null, List.of(),
+						StringUtils.isBlank(patternString) ? null : Pattern.compile(patternString));
+			}
+			default -> new ParameterSchema(parameter, null, null, List.of(), null);
+		};
+	}
+
+	/**
+	 * Indicate whether this schema is still up-to-date with the given parameter definition.
+	 *
+	 * @param parameter The parameter definition.
+	 * @return <code>true</code> when this schema has been compiled from the same type and data.
+	 */
+	public boolean isCompiledFrom(final Parameter parameter) {
+		return type == parameter.getType() && Objects.equals(data, parameter.getData());
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.model.Parameter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local cache of the compiled {@link ParameterSchema}, keyed by parameter identifier. A cached schema is compiled again
+ * as soon as the type or the data of its parameter changes, whatever the way the parameter has been updated. This cache
+ * is not distributed since the compiled patterns are not worth serializing.
+ */
+@Component
+public class ParameterSchemaCache {
+
+	private final Map<String, ParameterSchema> schemas = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the compiled schema of a parameter.
+	 *
+	 * @param parameter The parameter definition.
+	 * @return The compiled schema, up-to-date with the given definition.
+	 */
+	public ParameterSchema get(final Parameter parameter) {
+		final var schema = schemas.get(parameter.getId());
+		if (schema != null && schema.isCompiledFrom(parameter)) {
+			return schema;
+		}
+		final var compiled = ParameterSchema.compile(parameter);
+		schemas.put(parameter.getId(), compiled);
+		return compiled;
+	}
+
+	/**
+	 * Evict all compiled schemas.
+	 */
+	public void clear() {
+		schemas.clear();
+	}
+}
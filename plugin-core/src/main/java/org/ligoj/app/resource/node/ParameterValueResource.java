@@ -28,21 +28,18 @@ import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.security.SecurityHelper;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Persistable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
 import javax.cache.annotation.CacheKey;
 import javax.cache.annotation.CacheRemove;
-import javax.cache.annotation.CacheResult;
 import java.io.Serializable;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -82,7 +79,16 @@ public class ParameterValueResource {
 	private IamProvider[] iamProvider;
 
 	@Autowired
-	private CacheManager cacheManager;
+	private NodeCacheEvictor cacheEvictor;
+
+	@Autowired
+	private NodeTree nodeTree;
+
+	@Autowired
+	private SingleFlightLoader loader;
+
+	@Autowired
+	private ParameterSchemaCache schemaCache;
 
 	/**
 	 * A checker configuration to check a value against the contract of the parameter.
@@ -176,13 +182,8 @@ public class ParameterValueResource {
 
 		// Deletion can be performed
 		repository.deleteById(id);
-	}
-
-	/**
-	 * Remove an entity from a specific cache.
-	 */
-	private void evict(final String cache, final Persistable<?> entity) {
-		Optional.ofNullable(cacheManager.getCache(cache)).ifPresent(c -> c.evict(entity.getId()));
+		cacheEvictor.evictNode(value.getNode().getId());
+		nodeTree.patch(value.getNode().getId());
 	}
 
 	/**
@@ -194,8 +195,11 @@ public class ParameterValueResource {
 	public void update(final List<ParameterValueCreateVo> values, final Node node) {
 		// Reject values targeting parameters that the parameter owner has
 		// flagged as not available for node configuration. Untouched values
-		// re-use the existing entity, so the constraint doesn't apply to them.
-		checkAvailability(values.stream().filter(v -> !v.isUntouched()).toList(), false);
+		// re-use the existing entity, so neither the resolution nor the
+		// constraint apply to them.
+		final var touched = values.stream().filter(v -> !v.isUntouched()).toList();
+		final var parameters = findParameters(touched);
+		checkAvailability(touched, parameters, false);
 
 		// Build the old parameter values
 		final var oldList = repository.getParameterValues(node.getId());
@@ -203,17 +207,20 @@ public class ParameterValueResource {
 				.collect(Collectors.toMap(v -> v.getParameter().getId(), Function.identity()));
 
 		// Build the target parameter values
-		final var newParam = values.stream().map(v -> saveOrUpdate(oldMap, v))
-				.filter(Objects::nonNull)
-				.map(v -> {
-					v.setNode(node);
-					repository.saveAndFlush(v);
-					return v.getParameter().getId();
-				}).collect(Collectors.toSet());
+		final var entities = values.stream().map(v -> saveOrUpdate(oldMap, parameters, v)).filter(Objects::nonNull)
+				.toList();
+		entities.forEach(v -> v.setNode(node));
+		repository.saveAll(entities);
+		repository.flush();
 
 		// Delete the existing but not provided values
-		CollectionUtils.removeAll(oldMap.keySet(), newParam).stream().map(oldMap::get).forEach(repository::delete);
-		evict("node-parameters", node);
+		final var newParam = entities.stream().map(v -> v.getParameter().getId()).collect(Collectors.toSet());
+		final var deleted = CollectionUtils.removeAll(oldMap.keySet(), newParam).stream().map(oldMap::get)
+				.map(ParameterValue::getId).toList();
+		if (!deleted.isEmpty()) {
+			repository.deleteAllByIdInBatch(deleted);
+		}
+		cacheEvictor.evictNode(node.getId());
 	}
 
 	/**
@@ -223,9 +230,10 @@ public class ParameterValueResource {
 	 * @param subscription The related subscription.
 	 */
 	public void create(final List<ParameterValueCreateVo> values, final Subscription subscription) {
-		checkAvailability(values, true);
-		create(values, v -> v.setSubscription(subscription));
-		evict("subscription-parameters", subscription);
+		final var parameters = findParameters(values);
+		checkAvailability(values, parameters, true);
+		create(values, parameters, v -> v.setSubscription(subscription));
+		cacheEvictor.evictSubscription(subscription.getId());
 	}
 
 	/**
@@ -235,9 +243,30 @@ public class ParameterValueResource {
 	 * @param node   The related node.
 	 */
 	public void create(final List<ParameterValueCreateVo> values, final Node node) {
-		checkAvailability(values, false);
-		create(values, v -> v.setNode(node));
-		evict("node-parameters", node);
+		final var parameters = findParameters(values);
+		checkAvailability(values, parameters, false);
+		create(values, parameters, v -> v.setNode(node));
+		cacheEvictor.evictNode(node.getId());
+	}
+
+	/**
+	 * Resolve the parameter definitions of the given values with a single query.
+	 *
+	 * @param values The values to resolve.
+	 * @return The resolved parameters, where key is the parameter identifier.
+	 */
+	private Map<String, Parameter> findParameters(final List<ParameterValueCreateVo> values) {
+		final var ids = values.stream().map(ParameterValueCreateVo::getParameter).collect(Collectors.toSet());
+		final var parameters = parameterRepository.findAllById(ids).stream()
+				.collect(Collectors.toMap(Parameter::getId, Function.identity()));
+
+		// Report the unknown parameters as a single lookup does
+		final var missing = ids.stream().filter(id -> !parameters.containsKey(id)).sorted()
+				.collect(Collectors.joining(","));
+		if (!missing.isEmpty()) {
+			throw new EntityNotFoundException(missing);
+		}
+		return parameters;
 	}
 
 	/**
@@ -251,12 +280,14 @@ public class ParameterValueResource {
 	 *
 	 * @param values          The values to validate. Already-resolved as create/update inputs; pass an empty list for
 	 *                        a no-op.
+	 * @param parameters      The resolved parameters, where key is the parameter identifier.
 	 * @param forSubscription {@code true} to test {@code availableForSubscription}; {@code false} to test
 	 *                        {@code availableForNode}.
 	 */
-	private void checkAvailability(final List<ParameterValueCreateVo> values, final boolean forSubscription) {
+	private void checkAvailability(final List<ParameterValueCreateVo> values, final Map<String, Parameter> parameters,
+			final boolean forSubscription) {
 		for (final var vo : values) {
-			final var parameter = parameterRepository.findOneExpected(vo.getParameter());
+			final var parameter = parameters.get(vo.getParameter());
 			final var disabled = BooleanUtils.isFalse(forSubscription ? parameter.getAvailableForSubscription() : parameter.getAvailableForNode());
 			if (disabled) {
 				throw new ValidationJsonException(parameter.getId(),
@@ -265,13 +296,16 @@ public class ParameterValueResource {
 		}
 	}
 
-	private void create(final List<ParameterValueCreateVo> values, final Consumer<ParameterValue> preSave) {
-		// Persist each not blank parameter
-		values.stream().map(this::createInternal).filter(Objects::nonNull).forEach(v -> {
-			// Link this value to the subscription
-			preSave.accept(v);
-			repository.saveAndFlush(v);
-		});
+	private void create(final List<ParameterValueCreateVo> values, final Map<String, Parameter> parameters,
+			final Consumer<ParameterValue> preSave) {
+		// Validate all values before persisting the not blank ones in a single batch
+		final var entities = values.stream().map(v -> createInternal(v, parameters.get(v.getParameter())))
+				.filter(Objects::nonNull).toList();
+
+		// Link these values to the subscription or the node
+		entities.forEach(preSave);
+		repository.saveAll(entities);
+		repository.flush();
 	}
 
 	/**
@@ -390,9 +424,9 @@ public class ParameterValueResource {
 	 * @return all associated parameters values. Key of returned map is the identifier of
 	 * {@link org.ligoj.app.model.Parameter}
 	 */
-	@CacheResult(cacheName = "subscription-parameters")
-	public Map<String, String> getSubscriptionParameters(@CacheKey final int subscription) {
-		return toMapValues(repository.findAllBySubscription(subscription));
+	public Map<String, String> getSubscriptionParameters(final int subscription) {
+		return loader.get("subscription-parameters", subscription,
+				() -> toMapValues(repository.findAllBySubscription(subscription)));
 	}
 
 	/**
@@ -423,7 +457,7 @@ public class ParameterValueResource {
 	}
 
 	private ParameterValue saveOrUpdate(final Map<String, ParameterValue> existing,
-			final ParameterValueCreateVo value) {
+			final Map<String, Parameter> parameters, final ParameterValueCreateVo value) {
 		if (value.isUntouched()) {
 			// Untouched value, keep the previous value but must exist
 			return Optional.ofNullable(existing.get(value.getParameter())).orElseThrow(
@@ -434,7 +468,7 @@ public class ParameterValueResource {
 		final var entity = existing.get(value.getParameter());
 		if (entity == null) {
 			// Need to parse and recreate the value
-			return createInternal(value);
+			return createInternal(value, parameters.get(value.getParameter()));
 		}
 
 		// Update mode
@@ -458,21 +492,21 @@ public class ParameterValueResource {
 	 */
 	@CacheRemove(cacheName = "node-parameters")
 	public void deleteByNode(@CacheKey final String node) {
+		cacheEvictor.evictNode(node);
 		repository.deleteByNode(node);
 	}
 
 	/**
 	 * Return the parameter values associated to the given node. Not exposed as web-service, contains secured data. The
-	 * result is cached.
+	 * result is cached, and loaded once for the concurrent callers.
 	 *
 	 * @param node the node identifier.
 	 * @return the parameters of given node as {@link Map}.
 	 */
 	@org.springframework.transaction.annotation.Transactional(readOnly = true)
-	@CacheResult(cacheName = "node-parameters")
-	public Map<String, String> getNodeParameters(@CacheKey final String node) {
+	public Map<String, String> getNodeParameters(final String node) {
 		// Get parameters of given node
-		return toMapValues(repository.getParameterValues(node));
+		return loader.get("node-parameters", node, () -> toMapValues(repository.getParameterValues(node)));
 	}
 
 	/**
@@ -580,7 +614,7 @@ public class ParameterValueResource {
 	}
 
 	/**
-	 * Check the data constraints and return the associated parameter definition.
+	 * Check the data constraints against the compiled schema of the parameter definition.
 	 */
 	void checkConstraints(final BasicParameterValueVo vo, final Parameter parameter) {
 		typeToChecker.get(parameter.getType()).accept(vo, parameter);
@@ -599,7 +633,7 @@ public class ParameterValueResource {
 	 */
 	private void checkMultiple(final BasicParameterValueVo vo, final Parameter parameter) {
 		assertNotnull(vo.getSelections(), parameter.getId());
-		final var multiple = NodeHelper.toListString(parameter.getData());
+		final var multiple = schemaCache.get(parameter).getOptions();
 
 		// Check each index
 		vo.getSelections().forEach(i -> checkArrayBound(i, multiple.size(), parameter));
@@ -610,7 +644,7 @@ public class ParameterValueResource {
 	 */
 	private void checkSelect(final BasicParameterValueVo vo, final Parameter parameter) {
 		assertNotnull(vo.getIndex(), parameter.getId());
-		final var single = NodeHelper.toListString(parameter.getData());
+		final var single = schemaCache.get(parameter).getOptions();
 
 		// Check the index
 		checkArrayBound(vo.getIndex(), single.size(), parameter);
@@ -643,12 +677,12 @@ public class ParameterValueResource {
 	 */
 	private void checkInteger(final BasicParameterValueVo vo, final Parameter parameter) {
 		assertNotnull(vo.getInteger(), parameter.getId());
-		final var minMax = NodeHelper.toMapInteger(parameter.getData());
+		final var schema = schemaCache.get(parameter);
 		// Check minimal value
-		Optional.ofNullable(minMax.get("max")).ifPresent(m -> checkMax(vo.getInteger(), m, parameter));
+		Optional.ofNullable(schema.getMax()).ifPresent(m -> checkMax(vo.getInteger(), m, parameter));
 
 		// Check maximal value
-		Optional.ofNullable(minMax.get("min")).ifPresent(m -> checkMin(vo.getInteger(), m, parameter));
+		Optional.ofNullable(schema.getMin()).ifPresent(m -> checkMin(vo.getInteger(), m, parameter));
 	}
 
 	/**
@@ -658,11 +692,9 @@ public class ParameterValueResource {
 		// Check the value if not empty
 		if (StringUtils.isNotBlank(vo.getText()) && StringUtils.isNotBlank(parameter.getData())) {
 			// Check the pattern if present
-			final var stringProperties = NodeHelper.toMapString(parameter.getData());
-			final var patternString = stringProperties.get("pattern");
-			if (StringUtils.isNotBlank(patternString)) {
+			final var pattern = schemaCache.get(parameter).getPattern();
+			if (pattern != null) {
 				// Pattern is provided, check the string
-				final var pattern = Pattern.compile(patternString);
 				assertTrue(pattern.matcher(vo.getText()).matches(),
 						jakarta.validation.constraints.Pattern.class.getSimpleName(), parameter.getId(), "regexp",
 						pattern.pattern());
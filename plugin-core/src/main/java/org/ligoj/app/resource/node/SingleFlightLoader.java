@@ -0,0 +1,88 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read through cache loading with request coalescing: on a miss, only one caller per cache key runs the loader, and
+ * the concurrent callers of the same key wait for its result instead of running the same loader.
+ */
+@Component
+public class SingleFlightLoader {
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * A running load.
+	 *
+	 * @param name The cache name.
+	 * @param key  The entry key.
+	 */
+	private record Flight(String name, Object key) {
+	}
+
+	/**
+	 * The running loads of this member.
+	 */
+	private final Map<Flight, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the cached value of the given key, or load and cache it.
+	 *
+	 * @param name   The cache name.
+	 * @param key    The entry key.
+	 * @param loader The value loader, called at most once at the same time for the same key.
+	 * @param <V>    The value type.
+	 * @return The cached or loaded value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(final String name, final Object key, final Supplier<V> loader) {
+		final var cache = cacheManager.getCache(name);
+		if (cache == null) {
+			return loader.get();
+		}
+		final var cached = cache.get(key);
+		if (cached != null) {
+			return (V) cached.get();
+		}
+
+		final var flight = new Flight(name, key);
+		final var future = new CompletableFuture<>();
+		final var running = flights.putIfAbsent(flight, future);
+		if (running != null) {
+			// Wait for the running load
+			try {
+				return (V) running.join();
+			} catch (final CompletionException e) {
+				throw e.getCause() instanceof RuntimeException re ? re : e;
+			}
+		}
+		try {
+			// Loaded by another member in the meantime?
+			final var value = Optional.ofNullable(cache.get(key)).map(w -> (V) w.get()).orElseGet(() -> {
+				final var loaded = loader.get();
+				cache.put(key, loaded);
+				return loaded;
+			});
+			future.complete(value);
+			return value;
+		} catch (final RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			flights.remove(flight);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-Sent Events writer over a streamed response. Each event is flushed as soon as it is sent. A failed write
+ * means the client has disconnected: it is raised as an {@link UncheckedIOException} so the producer stops its
+ * remaining work.
+ */
+public class SseStream {
+
+	private final Writer writer;
+
+	/**
+	 * Build a stream over the response.
+	 *
+	 * @param output The response output.
+	 */
+	public SseStream(final OutputStream output) {
+		this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Send an event with JSON data.
+	 *
+	 * @param name The event name.
+	 * @param data The event data, serialized as JSON.
+	 */
+	public synchronized void send(final String name, final Object data) {
+		try {
+			writer.write("event: " + name + "\ndata: " + NodeHelper.toJSon(data) + "\n\n");
+			writer.flush();
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Client disconnected", e);
+		}
+	}
+}
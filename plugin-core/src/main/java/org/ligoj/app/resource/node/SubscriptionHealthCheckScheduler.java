@@ -0,0 +1,58 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.model.Event;
+import org.ligoj.app.model.EventType;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Adaptive scheduling of the subscription health checks. The subscriptions are checked by node, so the history of a
+ * node is aggregated from the ones of its subscriptions. A share of the subscriptions is tolerated: a node is down
+ * when more than this share of its subscriptions are down, and its stability starts from the transition exceeding
+ * this share. So a single unstable subscription does not pin a node having many subscriptions to the minimal
+ * interval.
+ */
+@Component
+public class SubscriptionHealthCheckScheduler extends AbstractHealthCheckScheduler {
+
+	/**
+	 * Percentage of the subscriptions of a node that can be down or recently changed without affecting the interval of
+	 * this node.
+	 */
+	private static final int TOLERATED = 10;
+
+	@Override
+	protected void loadHistory(final List<String> nodes, final Instant since, final Map<String, Event> latest,
+			final Map<String, Long> transitions) {
+		final var values = new HashMap<String, List<Object[]>>();
+		repository.findLastSubscriptionNodeValues(EventType.STATUS, nodes)
+				.forEach(r -> values.computeIfAbsent((String) r[0], _ -> new ArrayList<>()).add(r));
+		final var tolerated = new HashMap<String, Integer>();
+		values.forEach((node, subscriptions) -> {
+			tolerated.put(node, subscriptions.size() * TOLERATED / 100);
+			latest.put(node, aggregate(subscriptions, tolerated.get(node)));
+		});
+		repository.countSubscriptionNodeEvents(EventType.STATUS, nodes, since).forEach(
+				r -> transitions.put((String) r[0], (Long) r[1] / (tolerated.getOrDefault((String) r[0], 0) + 1)));
+	}
+
+	/**
+	 * Return the status of a node from the latest events of its subscriptions: down when more than the tolerated
+	 * subscriptions are down, and dated by the most recent transition once the tolerated ones are ignored.
+	 */
+	private static Event aggregate(final List<Object[]> subscriptions, final int tolerated) {
+		final var down = subscriptions.stream().filter(r -> NodeStatus.DOWN.name().equals(r[1])).count();
+		final var dates = subscriptions.stream().map(r -> (Instant) r[2]).filter(Objects::nonNull)
+				.sorted(Comparator.reverseOrder()).toList();
+		final var event = new Event();
+		event.setValue(down > tolerated ? NodeStatus.DOWN.name() : NodeStatus.UP.name());
+		event.setDate(dates.size() > tolerated ? dates.get(tolerated) : null);
+		return event;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * State of the cache warm-up.
+ */
+@Getter
+@Setter
+public class WarmUpVo {
+
+	/**
+	 * When <code>true</code>, the warm-up is completed and the traffic can be routed to this member.
+	 */
+	private boolean ready;
+
+	/**
+	 * Amount of nodes loaded in the node tree.
+	 */
+	private int nodes;
+
+	/**
+	 * Amount of node instances with cached parameters.
+	 */
+	private int parameters;
+
+	/**
+	 * Duration of the warm-up in milliseconds.
+	 */
+	private long duration;
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.project;
+
+import org.ligoj.app.dao.ProjectRepository;
+import org.ligoj.app.resource.AuthorizationListener;
+import org.ligoj.app.resource.delegate.OrgAuthorization;
+import org.ligoj.app.resource.node.NearCache;
+import org.ligoj.app.resource.node.NodeAuthorization;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the projects visible by each user, equivalent to the <code>visibleProject</code> SQL function.
+ * The team leader and the groups of all projects are loaded once, and the visible and the writable projects of each
+ * user are resolved once into bit sets indexed by the project identifier.
+ * <p>
+ * The state is dropped when the organizational rights change, and when {@link #invalidate()} is called by any cluster
+ * member. A transaction having changed some projects reads a state built for itself, where only these projects are
+ * reloaded.
+ */
+@Component
+public class ProjectAuthorization {
+
+	/**
+	 * Key of the version token within the <code>authorizations</code> cache.
+	 */
+	private static final String VERSION = "project-version";
+
+	@Autowired
+	private ProjectRepository repository;
+
+	@Autowired
+	private OrgAuthorization orgAuthorization;
+
+	@Autowired
+	private NodeAuthorization nodeAuthorization;
+
+	@Autowired
+	private AuthorizationListener listener;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private NearCache nearCache;
+
+	/**
+	 * The rights of a project.
+	 *
+	 * @param teamLeader The optional team leader.
+	 * @param groups     The identifiers of the linked groups.
+	 */
+	private record Team(String teamLeader, Set<String> groups) {
+	}
+
+	/**
+	 * The resolved projects of a user. The bit sets are guarded by this object.
+	 *
+	 * @param visible  The visible project identifiers.
+	 * @param writable The project identifiers linked to a group writable by this user, or having this user as team
+	 *                 leader.
+	 */
+	private record Principal(BitSet visible, BitSet writable) {
+	}
+
+	/**
+	 * A consistent state.
+	 *
+	 * @param version    The version token this state has been built for.
+	 * @param orgVersion The version of the organizational rights this state has been built for.
+	 * @param projects   The rights of all projects, by project identifier.
+	 * @param principals The resolved projects, by user.
+	 */
+	private record Snapshot(Object version, Object orgVersion, Map<Integer, Team> projects,
+			Map<String, Principal> principals) {
+	}
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Indicate the given project is visible by the given user: team leader, or a linked group is visible. The system
+	 * administrators are not considered there.
+	 *
+	 * @param user    The user identifier.
+	 * @param project The project identifier.
+	 * @return <code>true</code> when visible.
+	 */
+	public boolean isVisible(final String user, final int project) {
+		final var principal = getPrincipal(user);
+		synchronized (principal) {
+			return project >= 0 && principal.visible().get(project);
+		}
+	}
+
+	/**
+	 * Return the identifiers of the projects visible by the given user. The system administrators are not considered
+	 * there.
+	 *
+	 * @param user The user identifier.
+	 * @return The visible project identifiers. Never <code>null</code>.
+	 */
+	public List<Integer> getVisible(final String user) {
+		final var principal = getPrincipal(user);
+		synchronized (principal) {
+			return principal.visible().stream().boxed().toList();
+		}
+	}
+
+	/**
+	 * Indicate the given user can manage the subscriptions of the given project: the user receives a node delegate
+	 * with the <code>canSubscribe</code> flag, and is either the team leader, either receiving a write delegate on a
+	 * linked group. The system administrators are not considered there.
+	 *
+	 * @param user    The user identifier.
+	 * @param project The project identifier.
+	 * @return <code>true</code> when the subscriptions can be managed.
+	 */
+	public boolean isManageSubscription(final String user, final int project) {
+		final var principal = getPrincipal(user);
+		synchronized (principal) {
+			if (project < 0 || !principal.writable().get(project)) {
+				return false;
+			}
+		}
+		return nodeAuthorization.isSubscriber(user);
+	}
+
+	/**
+	 * Drop the current state on all cluster members. To be called once the changes of the team leader or the groups
+	 * of a project are committed.
+	 */
+	public void invalidate() {
+		snapshot = null;
+		Optional.ofNullable(cacheManager.getCache("authorizations"))
+				.ifPresent(c -> c.put(VERSION, UUID.randomUUID().toString()));
+	}
+
+	/**
+	 * Return the resolved projects of the given user.
+	 */
+	private Principal getPrincipal(final String user) {
+		final var current = snapshot();
+		return current.principals().computeIfAbsent(user, u -> newPrincipal(current, u));
+	}
+
+	/**
+	 * Resolve the projects of the given user. The groups granted to this user are resolved once for all projects.
+	 */
+	private Principal newPrincipal(final Snapshot current, final String user) {
+		final var principal = new Principal(new BitSet(), new BitSet());
+		final var groups = orgAuthorization.getProjectGroups(user);
+		current.projects().forEach((id, team) -> index(principal, groups, user, id, team));
+		return principal;
+	}
+
+	/**
+	 * Update the bits of the given project for the given user.
+	 */
+	private void index(final Principal principal, final OrgAuthorization.ProjectGroups groups, final String user,
+			final int project, final Team team) {
+		if (project < 0) {
+			// Not an indexable identifier
+			return;
+		}
+		final var leader = team != null && user.equals(team.teamLeader());
+		final var visible = leader || team != null && team.groups().stream().anyMatch(groups.visible()::contains);
+		final var writable = leader || team != null && team.groups().stream().anyMatch(groups.writable()::contains);
+		synchronized (principal) {
+			principal.visible().set(project, visible);
+			principal.writable().set(project, writable);
+		}
+	}
+
+	/**
+	 * Return the current state, loaded again when missing or changed by another member. The pending changes of the
+	 * current transaction are read from a state built for this transaction only.
+	 */
+	private Snapshot snapshot() {
+		final Snapshot local = listener.getLocal(this, this::newLocal);
+		return local == null ? shared() : local;
+	}
+
+	/**
+	 * Return the state shared by all transactions of this member.
+	 */
+	private Snapshot shared() {
+		final var version = getVersion();
+		final var orgVersion = orgAuthorization.getVersion();
+		final var current = snapshot;
+		if (isCurrent(current, version, orgVersion)) {
+			return current;
+		}
+		return load(version, orgVersion);
+	}
+
+	private static boolean isCurrent(final Snapshot current, final Object version, final Object orgVersion) {
+		return current != null && current.version().equals(version) && current.orgVersion().equals(orgVersion);
+	}
+
+	private synchronized Snapshot load(final Object version, final Object orgVersion) {
+		final var current = snapshot;
+		if (isCurrent(current, version, orgVersion)) {
+			// Already loaded by a concurrent caller
+			return current;
+		}
+		snapshot = new Snapshot(version, orgVersion, toTeams(repository.findAllAuthorizations(null)),
+				new ConcurrentHashMap<>());
+		return snapshot;
+	}
+
+	/**
+	 * Build the state of a transaction from its pending changes. Only the changed projects are reloaded over a current
+	 * shared state, otherwise the whole state is loaded: the shared state is never loaded from uncommitted changes.
+	 */
+	private Snapshot newLocal(final AuthorizationListener.Changes changes) {
+		if (!changes.isOrg() && !changes.isAllProjects() && changes.getProjects().isEmpty()) {
+			return null;
+		}
+		final var current = snapshot;
+		if (changes.isOrg() || changes.isAllProjects()
+				|| !isCurrent(current, getVersion(), orgAuthorization.getVersion())) {
+			return new Snapshot(VERSION, VERSION, toTeams(repository.findAllAuthorizations(null)),
+					new ConcurrentHashMap<>());
+		}
+		final var projects = new HashMap<>(current.projects());
+		// A copy, since the reading of a project flushes its pending changes, and may record some new ones
+		List.copyOf(changes.getProjects()).forEach(project -> {
+			final var team = toTeams(repository.findAllAuthorizations(project)).get(project);
+			if (team == null) {
+				projects.remove(project);
+			} else {
+				projects.put(project, team);
+			}
+		});
+		return new Snapshot(VERSION, VERSION, projects, new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Group the rows by project.
+	 */
+	private static Map<Integer, Team> toTeams(final List<Object[]> rows) {
+		final var result = new HashMap<Integer, Team>();
+		rows.forEach(r -> {
+			final var team = result.computeIfAbsent((Integer) r[0], _ -> new Team((String) r[1], new HashSet<>()));
+			if (r[2] != null) {
+				team.groups().add((String) r[2]);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Return the shared version token, read from the local tier of the <code>authorizations</code> cache.
+	 */
+	private Object getVersion() {
+		final var cache = cacheManager.getCache("authorizations");
+		if (cache == null) {
+			// Local only state
+			return Optional.ofNullable(snapshot).map(Snapshot::version).orElse(VERSION);
+		}
+		return nearCache.get("authorizations", VERSION, () -> getVersion(cache));
+	}
+
+	/**
+	 * Return the shared version token, initialized only when missing.
+	 */
+	private Object getVersion(final Cache cache) {
+		return Optional.ofNullable(cache.get(VERSION)).map(Cache.ValueWrapper::get).orElseGet(() -> {
+			final var version = UUID.randomUUID().toString();
+			return Optional.ofNullable(cache.putIfAbsent(VERSION, version)).map(Cache.ValueWrapper::get)
+					.orElse(version);
+		});
+	}
+}
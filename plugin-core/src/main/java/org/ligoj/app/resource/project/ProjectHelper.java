@@ -33,6 +33,9 @@ public class ProjectHelper {
 	@Autowired
 	private ProjectRepository repository;
 
+	@Autowired
+	private ProjectAuthorization authorization;
+
 	@Autowired
 	private EventRepository eventRepository;
 
@@ -64,7 +67,9 @@ public class ProjectHelper {
 		// Convert users, project and subscriptions
 		final var projectVo = new ToVoConverter(locator, toUser(), subscriptionsResultSet, subscriptionStatus)
 				.apply(project);
-		projectVo.setManageSubscriptions(repository.isManageSubscription(project.getId(), securityHelper.getLogin()));
+		final var user = securityHelper.getLogin();
+		projectVo.setManageSubscriptions(repository.isManageSubscription(project.getId(), user,
+				authorization.isManageSubscription(user, project.getId())));
 		return projectVo;
 	}
 
@@ -132,8 +137,12 @@ public class ProjectHelper {
 	 * @return Found element. Never <code>null</code>.
 	 */
 	public ProjectLightVo findByPKey(final String pkey) {
-		return Optional.ofNullable(repository.findByPKeyNoFetch(pkey, securityHelper.getLogin())).map(this::toVoLight)
-				.orElseThrow(() -> new EntityNotFoundException(pkey));
+		final var user = securityHelper.getLogin();
+		final var visible = authorization.getVisible(user);
+		return Optional.ofNullable(visible.size() > ProjectRepository.MAX_GRANTED_PROJECTS
+						? repository.findByPKeyNoFetch(pkey, user)
+						: repository.findByPKeyNoFetch(pkey, user, visible))
+				.map(this::toVoLight).orElseThrow(() -> new EntityNotFoundException(pkey));
 	}
 
 	/**
@@ -143,7 +152,8 @@ public class ProjectHelper {
 	 * @return the loaded project.
 	 */
 	public Project checkVisibleProject(final int id) {
-		final var project = repository.findOneVisible(id, securityHelper.getLogin());
+		final var user = securityHelper.getLogin();
+		final var project = repository.findOneVisible(id, user, authorization.isVisible(user, id));
 		if (project == null) {
 			// Associated project is not visible
 			throw new EntityNotFoundException(String.valueOf(id));
@@ -41,6 +41,9 @@ public class ProjectResource {
 	@Autowired
 	private ProjectRepository repository;
 
+	@Autowired
+	private ProjectAuthorization authorization;
+
 	@Autowired
 	private SecurityHelper securityHelper;
 
@@ -86,8 +89,13 @@ public class ProjectResource {
 	@GET
 	public TableItem<ProjectLightVo> findAll(@Context final UriInfo uriInfo,
 			@QueryParam(DataTableAttributes.SEARCH) final String criteria) {
-		final var findAll = repository.findAllLight(securityHelper.getLogin(), StringUtils.trimToEmpty(criteria),
-				paginationJson.getPageRequest(uriInfo, ORDERED_COLUMNS));
+		final var user = securityHelper.getLogin();
+		final var visible = authorization.getVisible(user);
+		final var search = StringUtils.trimToEmpty(criteria);
+		final var page = paginationJson.getPageRequest(uriInfo, ORDERED_COLUMNS);
+		final var findAll = visible.size() > ProjectRepository.MAX_GRANTED_PROJECTS
+				? repository.findAllLight(user, search, page)
+				: repository.findAllLight(user, visible, search, page);
 
 		// apply pagination and prevent lazy initialization issue
 		return paginationJson.applyPagination(uriInfo, findAll, helper::toVoLightCount);
@@ -102,7 +110,7 @@ public class ProjectResource {
 	@GET
 	@Path("{id:\\d+}")
 	public ProjectVo findById(@PathParam("id") final int id) {
-		return findOneVisible(repository::findOneVisible, id, helper::toVo);
+		return findOneVisible(this::findVisible, id, helper::toVo);
 	}
 
 	/**
@@ -114,7 +122,7 @@ public class ProjectResource {
 	@GET
 	@Path("{pkey:" + Project.PKEY_PATTERN + "}")
 	public ProjectVo findByPKeyFull(@PathParam("pkey") final String pkey) {
-		return findOneVisible(repository::findByPKey, pkey, helper::toVo);
+		return findOneVisible(this::findVisibleByPKey, pkey, helper::toVo);
 	}
 
 	/**
@@ -157,7 +165,7 @@ public class ProjectResource {
 	@DELETE
 	@Path("{id:\\d+}")
 	public void delete(@PathParam("id") final int id, @QueryParam("deleteRemoteData") @DefaultValue("false") final boolean deleteRemoteData) throws Exception {
-		final var project = findOneVisible(repository::findOneVisible, id, Function.identity());
+		final var project = findOneVisible(this::findVisible, id, Function.identity());
 		for (final var subscription : project.getSubscriptions()) {
 			subscriptionResource.delete(subscription.getId(), deleteRemoteData);
 		}
@@ -165,6 +173,18 @@ public class ProjectResource {
 		repository.delete(project);
 	}
 
+	private Project findVisible(final int id, final String user) {
+		return repository.findOneVisible(id, user, authorization.isVisible(user, id));
+	}
+
+	private Project findVisibleByPKey(final String pkey, final String user) {
+		final var visible = authorization.getVisible(user);
+		if (visible.size() > ProjectRepository.MAX_GRANTED_PROJECTS) {
+			return repository.findByPKey(pkey, user);
+		}
+		return repository.findByPKey(pkey, user, visible);
+	}
+
 	private <T, K> T findOneVisible(final BiFunction<K, String, Project> finder, final K key,
 			final Function<Project, T> mapper) {
 		return Optional.ofNullable(finder.apply(key, securityHelper.getLogin())).map(mapper)
@@ -8,17 +8,19 @@ import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
 import org.ligoj.app.api.*;
 import org.ligoj.app.dao.EventRepository;
-import org.ligoj.app.dao.NodeRepository;
 import org.ligoj.app.dao.ProjectRepository;
 import org.ligoj.app.dao.SubscriptionRepository;
 import org.ligoj.app.dao.task.LongTaskRepository;
 import org.ligoj.app.model.*;
 import org.ligoj.app.resource.node.*;
+import org.ligoj.app.resource.node.NodeAuthorization.Access;
 import org.ligoj.app.resource.plugin.LongTaskRunner;
+import org.ligoj.app.resource.project.ProjectAuthorization;
 import org.ligoj.app.resource.project.ProjectHelper;
 import org.ligoj.bootstrap.core.DescribedBean;
 import org.ligoj.bootstrap.core.NamedBean;
@@ -30,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Persistable;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -51,10 +54,10 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	private ProjectRepository projectRepository;
 
 	@Autowired
-	private ProjectHelper projectHelper;
+	private ProjectAuthorization projectAuthorization;
 
 	@Autowired
-	private NodeRepository nodeRepository;
+	private ProjectHelper projectHelper;
 
 	@Autowired
 	private EventRepository eventRepository;
@@ -71,6 +74,15 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	@Autowired
 	private NodeResource nodeResource;
 
+	@Autowired
+	private HealthCheckExecutor healthExecutor;
+
+	@Autowired
+	private HealthCircuitBreaker circuitBreaker;
+
+	@Autowired
+	protected SubscriptionResource self;
+
 	/**
 	 * {@link SubscriptionEditionVo} to JPA entity transformer.
 	 *
@@ -236,7 +248,7 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	 */
 	private Node checkManagedNodeForSubscription(final String node) {
 		// Check the node can be subscribed by the principal user
-		final var entity = Optional.ofNullable(nodeRepository.findOneForSubscription(node, securityHelper.getLogin())).orElseThrow(() -> new ValidationJsonException("node", BusinessException.KEY_UNKNOWN_ID, "0", node));
+		final var entity = Optional.ofNullable(nodeResource.findOneGranted(node, securityHelper.getLogin(), Access.SUBSCRIBE)).orElseThrow(() -> new ValidationJsonException("node", BusinessException.KEY_UNKNOWN_ID, "0", node));
 
 		// Check the node accept subscription
 		if (entity.getMode() == SubscriptionMode.NONE) {
@@ -314,7 +326,8 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	 * subscription can be managed.
 	 */
 	private void checkManagedProject(final int project) {
-		if (!projectRepository.isManageSubscription(project, securityHelper.getLogin())) {
+		final var user = securityHelper.getLogin();
+		if (!projectRepository.isManageSubscription(project, user, projectAuthorization.isManageSubscription(user, project))) {
 			// Not managed associated project
 			log.warn("Attempt to manage a project '{}' out of scope", project);
 			throw new ForbiddenException();
@@ -324,7 +337,9 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	@Override
 	public Subscription checkVisible(final Integer id) {
 		final var entity = repository.findOneExpected(id);
-		if (projectRepository.findOneVisible(entity.getProject().getId(), securityHelper.getLogin()) == null) {
+		final var user = securityHelper.getLogin();
+		final var project = entity.getProject().getId();
+		if (projectRepository.findOneVisible(project, user, projectAuthorization.isVisible(user, project)) == null) {
 			// Associated project is not visible, reject the subscription access
 			throw new EntityNotFoundException(String.valueOf(id));
 		}
@@ -343,7 +358,11 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 		final var result = new SubscriptionListVo();
 
 		// First, list visible projects having at least one subscription
-		final var projects = projectRepository.findAllHavingSubscription(securityHelper.getLogin());
+		final var user = securityHelper.getLogin();
+		final var visible = projectAuthorization.getVisible(user);
+		final var projects = visible.size() > ProjectRepository.MAX_GRANTED_PROJECTS
+				? projectRepository.findAllHavingSubscription(user)
+				: projectRepository.findAllHavingSubscription(user, visible);
 
 		// Fill the projects
 		final var projectsMap = toProjects(projects);
@@ -454,11 +473,17 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	@Path("status/{id:\\d+}/refresh")
 	@GET
 	public SubscriptionStatusWithData refreshStatus(@PathParam("id") final int id) {
-		return refreshSubscription(checkVisible(id));
+		final var subscription = checkVisible(id);
+		final var statusWithData = refreshSubscription(subscription);
+
+		// Update the last event with fresh data
+		eventResource.registerEvent(subscription, EventType.STATUS, statusWithData.getStatus().name());
+		return statusWithData;
 	}
 
 	/**
-	 * Get fresh status of a set of subscriptions. This a loop shortcut of the per-subscription call.
+	 * Get fresh status of a set of subscriptions. This a loop shortcut of the per-subscription call, with a single bulk
+	 * registration of the changed statuses.
 	 *
 	 * @param ids Node identifiers
 	 * @return Status of each subscription of given project. Order is not guaranteed.
@@ -467,26 +492,89 @@ public class SubscriptionResource extends AbstractLockedResource<Subscription, I
 	@Path("status/refresh")
 	@GET
 	public Map<Integer, SubscriptionStatusWithData> refreshStatuses(@QueryParam("id") final Set<Integer> ids) {
-		return ids.stream().map(this::refreshStatus).collect(Collectors.toMap(SubscriptionStatusWithData::getId, Function.identity()));
+		final var values = new HashMap<Subscription, String>();
+		final var statuses = ids.stream().map(this::checkVisible).map(s -> {
+			final var statusWithData = refreshSubscription(s);
+			values.put(s, statusWithData.getStatus().name());
+			return statusWithData;
+		}).collect(Collectors.toMap(SubscriptionStatusWithData::getId, Function.identity()));
+
+		// Update the last events with fresh data
+		eventResource.registerSubscriptionEvents(EventType.STATUS, values);
+		return statuses;
 	}
 
 	/**
-	 * Refresh given subscriptions and return their status.
+	 * Get fresh status of a set of subscriptions, and stream as Server-Sent Events each status as soon as it is
+	 * available. The subscriptions are checked concurrently, and each fresh status is also stored in the database. The
+	 * remaining checks are cancelled when the client disconnects.
+	 *
+	 * @param ids Subscription identifiers.
+	 * @return The event stream: a <code>subscription</code> event per subscription, then a <code>done</code> event.
+	 * @see #refreshStatuses(Set)
+	 */
+	@Path("status/refresh/stream")
+	@GET
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	public StreamingOutput refreshStatusesStream(@QueryParam("id") final Set<Integer> ids) {
+		// Resolve the subscriptions and their parameters within the current transaction
+		final var subscriptions = ids.stream().map(this::checkVisible).toList();
+		final var parameters = new HashMap<Integer, Map<String, String>>();
+		subscriptions.forEach(s -> parameters.put(s.getId(), getParametersNoCheck(s.getId())));
+
+		// The stream is written once this transaction is completed: each step runs within its own transaction
+		return output -> {
+			final var stream = new SseStream(output);
+			try {
+				healthExecutor.execute(subscriptions, s -> s.getNode().getId(),
+						circuitBreaker.guard(s -> s.getNode().getId()), s -> nodeResource.checkSubscriptionStatus(s, parameters.get(s.getId())),
+						_ -> new SubscriptionStatusWithData(false), (s, status) -> {
+							self.registerStatus(s.getId(), status);
+							stream.send("subscription", status);
+						});
+				stream.send("done", Map.of("subscriptions", subscriptions.size()));
+			} catch (final UncheckedIOException e) {
+				log.info("Refresh of {} subscriptions : Cancelled by the client", subscriptions.size());
+			}
+		};
+	}
+
+	/**
+	 * Complete a fresh status with the subscription data, and register it. This method need to be public for the CGLIB
+	 * proxying: it is called out of the request transaction.
+	 *
+	 * @param id     The subscription identifier.
+	 * @param status The fresh status to complete and register.
+	 */
+	public void registerStatus(final int id, final SubscriptionStatusWithData status) {
+		final var subscription = repository.findOneExpected(id);
+		complete(subscription, status, parameterValueResource.getNonSecuredSubscriptionParameters(id));
+		eventResource.registerEvent(subscription, EventType.STATUS, status.getStatus().name());
+	}
+
+	/**
+	 * Refresh given subscriptions and return their status. The status is not registered.
 	 */
 	private SubscriptionStatusWithData refreshSubscription(final Subscription subscription) {
 		final var parameters = this.getParameters(subscription.getId());
 		final var statusWithData = nodeResource.checkSubscriptionStatus(subscription, parameters);
-		statusWithData.setId(subscription.getId());
-		statusWithData.setProject(subscription.getProject().getId());
-		statusWithData.setParameters(parameterValueResource.getNonSecuredSubscriptionParameters(subscription.getId()));
-
-		// Update the last event with fresh data
-		eventResource.registerEvent(subscription, EventType.STATUS, statusWithData.getStatus().name());
+		complete(subscription, statusWithData,
+				parameterValueResource.getNonSecuredSubscriptionParameters(subscription.getId()));
 
 		// Return the fresh statuses
 		return statusWithData;
 	}
 
+	/**
+	 * Complete a fresh status with the subscription data.
+	 */
+	private void complete(final Subscription subscription, final SubscriptionStatusWithData statusWithData,
+			final Map<String, String> nonSecured) {
+		statusWithData.setId(subscription.getId());
+		statusWithData.setProject(subscription.getProject().getId());
+		statusWithData.setParameters(nonSecured);
+	}
+
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	@Override
 	protected <
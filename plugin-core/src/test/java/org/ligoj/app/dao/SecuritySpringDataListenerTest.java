@@ -98,6 +98,12 @@ class SecuritySpringDataListenerTest {
 		assertFunction("visibleProject", 5, "_p__.team_leader=?user__", "_p__.team_leader", ALIAS, Q_USER);
 	}
 
+	@Test
+	void visibleProjectCompiled() {
+		final var query = assertFunction("visibleProject", 5, "ligoj_cache_membership", "_p__.team_leader", ALIAS, Q_USER);
+		Assertions.assertFalse(query.contains("$"), query);
+	}
+
 	@Test
 	void visibleGroup() {
 		assertFunction("visibleGroup", 4, "WHERE _arg__=s_d5.dn", ALIAS, Q_USER);
@@ -0,0 +1,31 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test class of {@link Node}
+ */
+class NodeTest {
+
+	@Test
+	void toAncestors() {
+		Assertions.assertEquals(List.of("service", "service:bt", "service:bt:jira", "service:bt:jira:6"),
+				Node.toAncestors("service:bt:jira:6"));
+		Assertions.assertEquals(List.of("service", "service:bt"), Node.toAncestors("service:bt"));
+	}
+
+	@Test
+	void materializeAncestors() {
+		final var node = new Node();
+		node.setId("service:bt:jira");
+		node.materializeAncestors();
+		Assertions.assertEquals(Set.of("service", "service:bt", "service:bt:jira"), node.getAncestors());
+	}
+}
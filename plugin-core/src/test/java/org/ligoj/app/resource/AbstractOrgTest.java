@@ -20,8 +20,6 @@ import org.ligoj.app.iam.CompanyOrg;
 import org.ligoj.app.iam.GroupOrg;
 import org.ligoj.app.iam.IamConfiguration;
 import org.ligoj.app.iam.UserOrg;
-import org.ligoj.app.iam.dao.CacheCompanyRepository;
-import org.ligoj.app.iam.dao.CacheGroupRepository;
 import org.ligoj.app.iam.empty.EmptyCompanyRepository;
 import org.ligoj.app.iam.empty.EmptyGroupRepository;
 import org.ligoj.app.iam.empty.EmptyIamProvider;
@@ -38,6 +36,7 @@ import org.ligoj.app.model.Parameter;
 import org.ligoj.app.model.ParameterValue;
 import org.ligoj.app.model.Project;
 import org.ligoj.app.model.Subscription;
+import org.ligoj.app.resource.delegate.OrgAuthorization;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -46,10 +45,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 public abstract class AbstractOrgTest extends AbstractAppTest {
 
 	@Autowired
-	private CacheCompanyRepository cacheCompanyRepository;
+	private OrgAuthorization orgAuthorization;
 
 	@Autowired
-	private CacheGroupRepository cacheGroupRepository;
+	private AuthorizationListener authorizationListener;
 
 	@BeforeEach
 	protected void setUpEntities() throws IOException {
@@ -62,8 +61,10 @@ public abstract class AbstractOrgTest extends AbstractAppTest {
 				StandardCharsets.UTF_8);
 
 		// Add the IAM data
-		csvForJpa.cleanup(CacheCompany.class, CacheUser.class, CacheGroup.class, CacheMembership.class,
-				CacheProjectGroup.class);
+		final Class<?>[] caches = { CacheCompany.class, CacheUser.class, CacheGroup.class, CacheMembership.class,
+				CacheProjectGroup.class };
+		csvForJpa.cleanup(caches);
+		authorizationListener.onBulkChange(caches);
 		final var companies = csvForJpa.insert("csv", CacheCompany.class, StandardCharsets.UTF_8.name()).stream()
 				.map(c -> new CompanyOrg(c.getDescription(), c.getName()))
 				.collect(Collectors.toMap(CompanyOrg::getId, Function.identity()));
@@ -117,7 +118,7 @@ public abstract class AbstractOrgTest extends AbstractAppTest {
 			@Override
 			public CompanyOrg findById(final String user, final String id) {
 				// Check the container exists and return the in memory object.
-				return Optional.ofNullable(cacheCompanyRepository.findById(user, Normalizer.normalize(id)))
+				return Optional.ofNullable(orgAuthorization.findCompany(user, Normalizer.normalize(id)))
 						.map(CacheContainer::getId).map(this::findById).orElse(null);
 			}
 		});
@@ -130,7 +131,7 @@ public abstract class AbstractOrgTest extends AbstractAppTest {
 			@Override
 			public GroupOrg findById(final String user, final String id) {
 				// Check the container exists and return the in memory object.
-				return Optional.ofNullable(cacheGroupRepository.findById(user, Normalizer.normalize(id)))
+				return Optional.ofNullable(orgAuthorization.findGroup(user, Normalizer.normalize(id)))
 						.map(CacheContainer::getId).map(this::findById).orElse(null);
 			}
 		});
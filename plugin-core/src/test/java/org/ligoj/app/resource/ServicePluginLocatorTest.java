@@ -12,10 +12,12 @@ import org.ligoj.app.AbstractAppTest;
 import org.ligoj.app.api.ConfigurablePlugin;
 import org.ligoj.app.api.PluginNotFoundException;
 import org.ligoj.app.api.ServicePlugin;
+import org.ligoj.app.resource.node.TaskSampleNodeResource;
 import org.ligoj.app.resource.node.sample.BugTrackerResource;
 import org.ligoj.app.resource.node.sample.ConfluencePluginResource;
 import org.ligoj.app.resource.node.sample.JiraBaseResource;
 import org.ligoj.app.resource.plugin.AbstractServicePlugin;
+import org.ligoj.app.resource.plugin.LongTaskRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
@@ -84,6 +86,28 @@ class ServicePluginLocatorTest extends AbstractAppTest {
 				component.getResource(BugTrackerResource.SERVICE_KEY + ":any").getKey());
 	}
 
+	@Test
+	void getResourceName() {
+		final var name = component.getResourceName(JiraBaseResource.KEY + ":any");
+		Assertions.assertEquals(JiraBaseResource.KEY, applicationContext.getBean(name, ServicePlugin.class).getKey());
+		Assertions.assertNull(component.getResourceName("any"));
+	}
+
+	@Test
+	void getResourceRegistered() {
+		final var sampleResource = registerSingleton("taskSampleResource",
+				applicationContext.getAutowireCapableBeanFactory().createBean(TaskSampleNodeResource.class));
+		component.refresh();
+		try {
+			Assertions.assertSame(sampleResource, component.getResource("any"));
+			Assertions.assertTrue(component.getTaskRunners(sampleResource, LongTaskRunner.class).contains(sampleResource));
+		} finally {
+			destroySingleton("taskSampleResource");
+			component.refresh();
+		}
+		Assertions.assertNull(component.getResource("any"));
+	}
+
 	@Test
 	void isEnabledTool() {
 		Assertions.assertTrue(component.isEnabled(JiraBaseResource.KEY));
@@ -0,0 +1,157 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.delegate;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.iam.model.DelegateOrg;
+import org.ligoj.app.iam.model.DelegateType;
+import org.ligoj.app.iam.model.ReceiverType;
+import org.ligoj.app.resource.AbstractOrgTest;
+import org.ligoj.app.resource.delegate.OrgAuthorization.Access;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Test class of {@link OrgAuthorization}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class OrgAuthorizationTest extends AbstractOrgTest {
+
+	private static final String DIG_RHA = "cn=dig rha,cn=dig as,cn=dig,ou=fonction,ou=groups,dc=sample,dc=com";
+	private static final String ING = "ou=ing,ou=external,ou=people,dc=sample,dc=com";
+
+	@Autowired
+	private OrgAuthorization authorization;
+
+	@BeforeEach
+	void invalidate() {
+		authorization.invalidate();
+	}
+
+	@Test
+	void isVisibleGroupMember() {
+		Assertions.assertTrue(authorization.isVisibleGroup("jdoe4", DIG_RHA));
+		Assertions.assertTrue(authorization.isVisibleGroup("jdoe4", "cn=sub," + DIG_RHA));
+		Assertions.assertFalse(authorization.isVisibleGroup("jdoe4", "cn=dig as,cn=dig,ou=fonction,ou=groups,dc=sample,dc=com"));
+		Assertions.assertFalse(authorization.isVisibleGroup("jdoe4", null));
+	}
+
+	@Test
+	void isVisibleGroupCompanyDelegate() {
+		// The company of "jdoe4" receives a delegate on this group
+		Assertions.assertTrue(authorization.isVisibleGroup("jdoe4", "cn=business solution,ou=groups,dc=sample,dc=com"));
+		Assertions.assertFalse(authorization.isDelegated("jdoe4", "cn=business solution,ou=groups,dc=sample,dc=com", Access.WRITE));
+	}
+
+	@Test
+	void isVisibleCompany() {
+		Assertions.assertTrue(authorization.isVisibleCompany("jdoe4", ING));
+		Assertions.assertFalse(authorization.isVisibleCompany("jdoe4", "ou=external,ou=people,dc=sample,dc=com"));
+		Assertions.assertFalse(authorization.isVisibleCompany("any", ING));
+
+		// A group of "admin-test" receives a delegate on this company
+		Assertions.assertTrue(authorization.isVisibleCompany("admin-test", ING));
+	}
+
+	@Test
+	void isDelegated() {
+		Assertions.assertTrue(authorization.isDelegated("someone", ING, Access.WRITE));
+		Assertions.assertFalse(authorization.isDelegated("someone", ING, Access.ADMIN));
+		Assertions.assertTrue(authorization.isDelegated("someone", "cn=any,ou=groups,dc=sample,dc=com", Access.ADMIN));
+		Assertions.assertFalse(authorization.isDelegated("mlavoine", "cn=biz agency manager,cn=biz agency,ou=tools,dc=sample,dc=com", Access.WRITE));
+		Assertions.assertTrue(authorization.isDelegated("mlavoine", "cn=biz agency manager,cn=biz agency,ou=tools,dc=sample,dc=com", Access.VISIBLE));
+	}
+
+	@Test
+	void getGroups() {
+		final var groups = authorization.getGroups("fdaugan", Access.WRITE);
+		Assertions.assertTrue(groups.contains("biz agency manager"));
+		Assertions.assertTrue(groups.contains("dig rha"));
+		Assertions.assertFalse(groups.contains("production"));
+		Assertions.assertSame(groups, authorization.getGroups("fdaugan", Access.WRITE));
+		Assertions.assertTrue(authorization.getGroups("jdoe4", Access.VISIBLE).contains("dig rha"));
+	}
+
+	@Test
+	void getCompanies() {
+		Assertions.assertTrue(authorization.getCompanies("someone", Access.WRITE).contains("ing"));
+		Assertions.assertFalse(authorization.getCompanies("someone", Access.ADMIN).contains("ing"));
+		Assertions.assertTrue(authorization.getCompanies("jdoe4", Access.VISIBLE).contains("ing"));
+	}
+
+	@Test
+	void getProjectGroups() {
+		final var groups = authorization.getProjectGroups("fdaugan");
+		Assertions.assertTrue(groups.writable().contains("dig rha"));
+		Assertions.assertTrue(groups.writable().contains("biz agency manager"));
+		Assertions.assertFalse(groups.writable().contains("production"));
+		Assertions.assertTrue(groups.visible().containsAll(groups.writable()));
+		Assertions.assertTrue(authorization.getProjectGroups("jdoe4").visible().contains("dig rha"));
+		Assertions.assertTrue(authorization.getProjectGroups("jdoe4").writable().isEmpty());
+	}
+
+	@Test
+	void getDelegates() {
+		final var all = em.createQuery("SELECT id FROM DelegateOrg", Integer.class).getResultList();
+		Assertions.assertFalse(authorization.getDelegates("fdaugan").isEmpty());
+		Assertions.assertTrue(all.containsAll(authorization.getDelegates("fdaugan")));
+		Assertions.assertTrue(authorization.getDelegates("any").isEmpty());
+	}
+
+	@Test
+	void findAllGroups() {
+		final var page = PageRequest.of(0, 100);
+		Assertions.assertEquals(authorization.getGroups("fdaugan", Access.WRITE).size(),
+				authorization.findAllGroups("fdaugan", "", page, Access.WRITE).getTotalElements());
+		Assertions.assertEquals(0, authorization.findAllGroups("any", "", page, Access.VISIBLE).getTotalElements());
+	}
+
+	@Test
+	void findAllCompanies() {
+		final var page = PageRequest.of(0, 100);
+		Assertions.assertTrue(authorization.findAllCompanies("jdoe4", "in", page, Access.VISIBLE).getContent().stream()
+				.anyMatch(c -> c.getId().equals("ing")));
+		Assertions.assertEquals(0, authorization.findAllCompanies("someone", "ing", page, Access.ADMIN).getTotalElements());
+	}
+
+	@Test
+	void findGroup() {
+		Assertions.assertEquals("dig rha", authorization.findGroup("jdoe4", "dig rha").getId());
+		Assertions.assertNull(authorization.findGroup("any", "dig rha"));
+		Assertions.assertNull(authorization.findGroup("jdoe4", "not-exist"));
+	}
+
+	@Test
+	void findCompany() {
+		Assertions.assertEquals("ing", authorization.findCompany("jdoe4", "ing").getId());
+		Assertions.assertNull(authorization.findCompany("any", "ing"));
+	}
+
+	@Test
+	void updateDelegate() {
+		final var dn = "cn=production,ou=branche,ou=groups,dc=sample,dc=com";
+		Assertions.assertFalse(authorization.isVisibleGroup("jdoe4", dn));
+
+		final var delegate = new DelegateOrg();
+		delegate.setName("-");
+		delegate.setType(DelegateType.TREE);
+		delegate.setDn("ou=branche,ou=groups,dc=sample,dc=com");
+		delegate.setReceiver("jdoe4");
+		delegate.setReceiverType(ReceiverType.USER);
+		em.persist(delegate);
+
+		// The pending change is considered
+		Assertions.assertTrue(authorization.isVisibleGroup("jdoe4", dn));
+	}
+}
@@ -14,6 +14,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.ligoj.app.dao.DelegateNodeRepository;
 import org.ligoj.app.iam.model.ReceiverType;
 import org.ligoj.app.model.*;
+import org.ligoj.app.resource.node.NodeAuthorization.Access;
 import org.ligoj.bootstrap.AbstractJpaTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.Rollback;
@@ -41,6 +42,9 @@ class DelegateNodeResourceTest extends AbstractJpaTest {
 	@Autowired
 	private DelegateNodeResource resource;
 
+	@Autowired
+	private NodeAuthorization authorization;
+
 	@BeforeEach
 	void prepare() throws IOException {
 		persistEntities("csv", new Class<?>[] { Node.class, Parameter.class, Project.class, Subscription.class,
@@ -88,6 +92,17 @@ class DelegateNodeResourceTest extends AbstractJpaTest {
 		Assertions.assertTrue(resource.create(delegate) > 0);
 	}
 
+	@Test
+	void createInvalidate() {
+		initSpringSecurityContext("user1");
+		Assertions.assertFalse(authorization.isGranted("user2", "service:build:jenkins:bpr", Access.VISIBLE));
+		final var delegate = new DelegateNode();
+		delegate.setNode("service:build:jenkins");
+		delegate.setReceiver("user2");
+		resource.create(delegate);
+		Assertions.assertTrue(authorization.isGranted("user2", "service:build:jenkins:bpr", Access.VISIBLE));
+	}
+
 	@Test
 	void createSubNodeMaxiRight() {
 		initSpringSecurityContext("user1");
@@ -191,8 +206,11 @@ class DelegateNodeResourceTest extends AbstractJpaTest {
 	@Test
 	void deleteSubNode() {
 		final int user1Delegate = repository.findBy("receiver", "user1").getId();
+		authorization.invalidate();
+		Assertions.assertTrue(authorization.isGranted("user1", "service:build:jenkins", Access.VISIBLE));
 		resource.delete(user1Delegate);
 		Assertions.assertFalse(repository.existsById(user1Delegate));
+		Assertions.assertFalse(authorization.isGranted("user1", "service:build:jenkins", Access.VISIBLE));
 	}
 
 	@Test
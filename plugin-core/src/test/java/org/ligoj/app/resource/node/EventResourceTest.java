@@ -13,6 +13,7 @@ import org.ligoj.app.api.NodeStatus;
 import org.ligoj.app.dao.EventRepository;
 import org.ligoj.app.dao.ProjectRepository;
 import org.ligoj.app.model.*;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
@@ -21,6 +22,8 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * {@link NodeResource} test cases.
@@ -40,6 +43,9 @@ class EventResourceTest extends AbstractAppTest {
 	@Autowired
 	private ProjectRepository projectRepository;
 
+	@Autowired
+	private ConfigurationResource configuration;
+
 	@BeforeEach
 	void prepare() throws IOException {
 		persistEntities("csv", new Class<?>[] { Node.class, Parameter.class, Project.class, Subscription.class,
@@ -63,6 +69,7 @@ class EventResourceTest extends AbstractAppTest {
 		Assertions.assertFalse(resource.registerEvent(node, EventType.STATUS, NodeStatus.DOWN.name()));
 		Assertions.assertEquals(count, repository.count());
 		Assertions.assertEquals(lastEvent, repository.findFirstByNodeAndTypeOrderByIdDesc(node, EventType.STATUS));
+		Assertions.assertEquals(lastEvent, repository.findFirstByNodeAndTypeAndLatestTrue(node, EventType.STATUS));
 	}
 
 	@Test
@@ -83,4 +90,116 @@ class EventResourceTest extends AbstractAppTest {
 		Assertions.assertEquals(lastEvent,
 				repository.findFirstBySubscriptionAndTypeOrderByIdDesc(subscription, EventType.STATUS));
 	}
+
+	@Test
+	void registerNodeEvents() {
+		final var node1 = new Node();
+		node1.setId("junit1");
+		node1.setName("junit1");
+		em.persist(node1);
+		final var node2 = new Node();
+		node2.setId("junit2");
+		node2.setName("junit2");
+		em.persist(node2);
+
+		var count = repository.count();
+		Assertions.assertEquals(Set.of(node1, node2), resource.registerNodeEvents(EventType.STATUS,
+				Map.of(node1, NodeStatus.UP.name(), node2, NodeStatus.UP.name())));
+		Assertions.assertEquals(count += 2, repository.count());
+
+		// Only the transitions are registered
+		Assertions.assertEquals(Set.of(node2), resource.registerNodeEvents(EventType.STATUS,
+				Map.of(node1, NodeStatus.UP.name(), node2, NodeStatus.DOWN.name())));
+		Assertions.assertEquals(++count, repository.count());
+		Assertions.assertEquals(NodeStatus.DOWN.name(),
+				repository.findFirstByNodeAndTypeOrderByIdDesc(node2, EventType.STATUS).getValue());
+		Assertions.assertTrue(resource.registerNodeEvents(EventType.STATUS, Map.of()).isEmpty());
+		Assertions.assertEquals(count, repository.count());
+	}
+
+	@Test
+	void registerSubscriptionEvents() {
+		final var subscription = new Subscription();
+		subscription.setProject(projectRepository.findByName("MDA"));
+		subscription.setNode(em.find(Node.class, "service:build:jenkins:bpr"));
+		em.persist(subscription);
+		var count = repository.count();
+		Assertions.assertEquals(Set.of(subscription),
+				resource.registerSubscriptionEvents(EventType.STATUS, Map.of(subscription, NodeStatus.UP.name())));
+		Assertions.assertEquals(++count, repository.count());
+		Assertions.assertTrue(
+				resource.registerSubscriptionEvents(EventType.STATUS, Map.of(subscription, NodeStatus.UP.name()))
+						.isEmpty());
+		Assertions.assertEquals(count, repository.count());
+		Assertions.assertEquals(Set.of(subscription),
+				resource.registerSubscriptionEvents(EventType.STATUS, Map.of(subscription, NodeStatus.DOWN.name())));
+		Assertions.assertEquals(++count, repository.count());
+	}
+
+	@Test
+	void materializeLatest() {
+		// Already materialized
+		Assertions.assertEquals(0, resource.materializeLatest());
+
+		// Events registered before the materialization
+		repository.findAll().forEach(e -> e.setLatest(null));
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(5, resource.materializeLatest());
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(NodeStatus.DOWN.name(), repository
+				.findFirstByNodeAndTypeAndLatestTrue(em.find(Node.class, "service:bt:jira:6"), EventType.STATUS)
+				.getValue());
+		Assertions.assertEquals(0, resource.materializeLatest());
+	}
+
+	@Test
+	void materializeLatestOnce() {
+		// Not yet migrated
+		configuration.put(EventResource.CONF_LATEST, "0");
+		repository.findAll().forEach(e -> e.setLatest(null));
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(5, resource.materializeLatestOnce());
+		Assertions.assertEquals(1, configuration.get(EventResource.CONF_LATEST, 0));
+
+		// Already migrated, the history is no more scanned
+		repository.findAll().forEach(e -> e.setLatest(null));
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(0, resource.materializeLatestOnce());
+		Assertions.assertEquals(5, resource.materializeLatest());
+	}
+
+	@Test
+	void materializeLatestPartial() {
+		// Only the events of a node registered before the materialization
+		final var node = em.find(Node.class, "service:bt:jira:6");
+		repository.findFirstByNodeAndTypeAndLatestTrue(node, EventType.STATUS).setLatest(null);
+		em.flush();
+		em.clear();
+		Assertions.assertNull(repository.findFirstByNodeAndTypeAndLatestTrue(node, EventType.STATUS));
+		Assertions.assertEquals(1, resource.materializeLatest());
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(NodeStatus.DOWN.name(),
+				repository.findFirstByNodeAndTypeAndLatestTrue(node, EventType.STATUS).getValue());
+		Assertions.assertEquals(0, resource.materializeLatest());
+	}
+
+	@Test
+	void registerEventSingleLatest() {
+		final var node = em.find(Node.class, "service:bt:jira:6");
+		Assertions.assertTrue(resource.registerEvent(node, EventType.STATUS, NodeStatus.UP.name()));
+		Assertions.assertTrue(resource.registerNodeEvents(EventType.STATUS, Map.of(node, NodeStatus.DOWN.name()))
+				.contains(node));
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(1, em.createQuery(
+				"SELECT COUNT(e) FROM Event e WHERE e.latest = true AND e.type = :type AND e.node.id = :node", Long.class)
+				.setParameter("type", EventType.STATUS).setParameter("node", node.getId()).getSingleResult());
+		Assertions.assertEquals(NodeStatus.DOWN.name(),
+				repository.findFirstByNodeAndTypeAndLatestTrue(node, EventType.STATUS).getValue());
+	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.ligoj.app.AbstractAppTest;
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.app.model.*;
+import org.ligoj.bootstrap.MatcherUtil;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link EventRetentionResource} test cases.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class EventRetentionResourceTest extends AbstractAppTest {
+
+	@Autowired
+	private EventRetentionResource resource;
+
+	@Autowired
+	private EventResource eventResource;
+
+	@Autowired
+	private EventRepository repository;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@BeforeEach
+	void prepare() throws IOException {
+		persistEntities("csv", new Class<?>[] { Node.class, Parameter.class, Project.class, Subscription.class,
+				ParameterValue.class, Event.class }, StandardCharsets.UTF_8);
+		configuration.put(EventRetentionResource.CONF_CHUNK, "2");
+		configuration.put(EventRetentionResource.CONF_COMPACTED, "0");
+	}
+
+	private void newEvent(final String node, final String value) {
+		final var event = new Event();
+		event.setNode(em.find(Node.class, node));
+		event.setType(EventType.STATUS);
+		event.setValue(value);
+		event.setDate(Instant.now());
+		event.setLatest(false);
+		em.persist(event);
+	}
+
+	@Test
+	void purgeNothing() {
+		final var count = repository.count();
+		final var result = resource.purge();
+		Assertions.assertEquals(0, result.getCompacted());
+		Assertions.assertEquals(0, result.getExpired());
+		Assertions.assertNull(result.getArchive());
+		Assertions.assertEquals(count, repository.count());
+	}
+
+	@Test
+	void purgeCompact() {
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		newEvent("service:bt:jira:4", NodeStatus.DOWN.name());
+		em.flush();
+		final var count = repository.count();
+		Assertions.assertEquals(2, resource.purge().getCompacted());
+		Assertions.assertEquals(count - 2, repository.count());
+	}
+
+	@Test
+	void purgeCompactResume() {
+		resource.purge();
+		final var mark = configuration.get(EventRetentionResource.CONF_COMPACTED, 0);
+		Assertions.assertTrue(mark > 0);
+
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		em.flush();
+		Assertions.assertEquals(1, resource.purge().getCompacted());
+		Assertions.assertTrue(configuration.get(EventRetentionResource.CONF_COMPACTED, 0) > mark);
+
+		// The value before the mark is still compared
+		newEvent("service:bt:jira:6", NodeStatus.UP.name());
+		em.flush();
+		Assertions.assertEquals(1, resource.purge().getCompacted());
+	}
+
+	@Test
+	void purgeExpired() {
+		// The former latest event of this node, dated 2013, is no more the latest one
+		Assertions.assertTrue(eventResource.registerEvent(em.find(Node.class, "service:bt:jira:4"), EventType.STATUS,
+				NodeStatus.DOWN.name()));
+		em.flush();
+		final var count = repository.count();
+		configuration.put(EventRetentionResource.CONF_RETENTION, "30");
+		final var result = resource.purge();
+		Assertions.assertEquals(1, result.getExpired());
+		Assertions.assertNull(result.getArchive());
+		Assertions.assertEquals(count - 1, repository.count());
+		Assertions.assertEquals(NodeStatus.DOWN.name(), repository.findFirstByNodeAndTypeAndLatestTrue(
+				em.find(Node.class, "service:bt:jira:4"), EventType.STATUS).getValue());
+	}
+
+	@Test
+	void purgeArchive(@TempDir final Path directory) throws IOException {
+		Assertions.assertTrue(eventResource.registerEvent(em.find(Node.class, "service:bt:jira:4"), EventType.STATUS,
+				NodeStatus.DOWN.name()));
+		em.flush();
+		configuration.put(EventRetentionResource.CONF_RETENTION, "30");
+		configuration.put(EventRetentionResource.CONF_ARCHIVE, directory.toString());
+		final var result = resource.purge();
+		Assertions.assertEquals(1, result.getExpired());
+		final var lines = gunzip(Files.readAllBytes(Path.of(result.getArchive()))).split("\n");
+		Assertions.assertEquals(2, lines.length);
+		Assertions.assertEquals("id;type;value;date;subscription;node", lines[0]);
+		Assertions.assertTrue(lines[1].contains(";STATUS;UP;"));
+		Assertions.assertTrue(lines[1].endsWith(";;service:bt:jira:4"));
+	}
+
+	@Test
+	void export() throws IOException {
+		Assertions.assertTrue(eventResource.registerEvent(em.find(Node.class, "service:bt:jira:4"), EventType.STATUS,
+				NodeStatus.DOWN.name()));
+		em.flush();
+		configuration.put(EventRetentionResource.CONF_RETENTION, "30");
+		final var count = repository.count();
+		final var output = new ByteArrayOutputStream();
+		((StreamingOutput) resource.export(null).getEntity()).write(output);
+		final var lines = gunzip(output.toByteArray()).split("\n");
+		Assertions.assertEquals(2, lines.length);
+		Assertions.assertTrue(lines[1].endsWith(";service:bt:jira:4"));
+
+		// Export does not delete
+		Assertions.assertEquals(count, repository.count());
+	}
+
+	@Test
+	void exportNoHorizon() {
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class, () -> resource.export(null)),
+				"before", "NotNull");
+	}
+
+	@Test
+	void exportBefore() throws IOException {
+		final var output = new ByteArrayOutputStream();
+		((StreamingOutput) resource.export(Instant.parse("2014-01-01T00:00:00Z").toEpochMilli()).getEntity())
+				.write(output);
+		Assertions.assertTrue(gunzip(output.toByteArray()).startsWith("id;type;value;date;subscription;node"));
+	}
+
+	private String gunzip(final byte[] content) throws IOException {
+		try (var input = new GZIPInputStream(new ByteArrayInputStream(content))) {
+			return IOUtils.toString(input, StandardCharsets.UTF_8);
+		}
+	}
+}
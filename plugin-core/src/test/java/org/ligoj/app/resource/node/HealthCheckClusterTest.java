@@ -0,0 +1,162 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import com.hazelcast.cache.HazelcastCacheManager;
+import com.hazelcast.cluster.Cluster;
+import com.hazelcast.cluster.Endpoint;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.LifecycleService;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.model.Node;
+import org.mockito.ArgumentCaptor;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class of {@link HealthCheckCluster}
+ */
+class HealthCheckClusterTest {
+
+	private static final UUID LOCAL = UUID.randomUUID();
+
+	private HealthCheckCluster health;
+
+	private Cluster cluster;
+
+	private HazelcastInstance hazelcast;
+
+	private Member local;
+
+	private Member remote;
+
+	@BeforeEach
+	void prepareMock() {
+		health = new HealthCheckCluster();
+		hazelcast = mock(HazelcastInstance.class);
+		final var lifecycle = mock(LifecycleService.class);
+		when(lifecycle.isRunning()).thenReturn(true);
+		when(hazelcast.getLifecycleService()).thenReturn(lifecycle);
+		local = mock(Member.class);
+		when(local.localMember()).thenReturn(true);
+		when(hazelcast.getLocalEndpoint()).thenReturn(local);
+		remote = mock(Member.class);
+		final var partitions = mock(PartitionService.class);
+		when(hazelcast.getPartitionService()).thenReturn(partitions);
+		mockOwner(partitions, "service:bt:jira:4", local);
+		mockOwner(partitions, "service:bt:jira:6", remote);
+		mockOwner(partitions, "service:build:jenkins:bpr", null);
+		cluster = mock(Cluster.class);
+		final var members = new LinkedHashSet<Member>();
+		members.add(remote);
+		members.add(local);
+		when(cluster.getMembers()).thenReturn(members);
+		when(hazelcast.getCluster()).thenReturn(cluster);
+		final var cacheManager = mock(HazelcastCacheManager.class);
+		when(cacheManager.getHazelcastInstance()).thenReturn(hazelcast);
+		health.onCreate(cacheManager, null);
+	}
+
+	private void mockOwner(final PartitionService partitions, final String node, final Member owner) {
+		final var partition = mock(Partition.class);
+		when(partition.getOwner()).thenReturn(owner);
+		when(partitions.getPartition(node)).thenReturn(partition);
+	}
+
+	private Node newNode(final String id) {
+		final var node = new Node();
+		node.setId(id);
+		return node;
+	}
+
+	@Test
+	void isLocal() {
+		Assertions.assertTrue(health.isLocal("service:bt:jira:4"));
+		Assertions.assertFalse(health.isLocal("service:bt:jira:6"));
+
+		// Migrating partition is taken by the oldest member
+		Assertions.assertFalse(health.isLocal("service:build:jenkins:bpr"));
+	}
+
+	@Test
+	void isLocalNoCluster() {
+		Assertions.assertTrue(new HealthCheckCluster().isLocal("service:bt:jira:6"));
+	}
+
+	@Test
+	void isLocalStopped() {
+		when(hazelcast.getLifecycleService().isRunning()).thenReturn(false);
+		Assertions.assertTrue(health.isLocal("service:bt:jira:6"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private IMap<String, UUID> mockClient(final UUID holder) {
+		final var client = mock(Endpoint.class);
+		when(client.getUuid()).thenReturn(LOCAL);
+		when(hazelcast.getLocalEndpoint()).thenReturn(client);
+		final IMap<String, UUID> leases = mock(IMap.class);
+		when(leases.putIfAbsent(anyString(), any(), anyLong(), any())).thenReturn(holder);
+		when(hazelcast.<String, UUID>getMap(anyString())).thenReturn(leases);
+		return leases;
+	}
+
+	@Test
+	void isLocalClientCoordinator() {
+		mockClient(null);
+		// The coordinator checks all nodes
+		Assertions.assertTrue(health.isLocal("service:bt:jira:4"));
+		Assertions.assertTrue(health.isLocal("service:bt:jira:6"));
+		Assertions.assertEquals(2, health.filter(List.of(newNode("service:bt:jira:4"), newNode("service:bt:jira:6")))
+				.size());
+	}
+
+	@Test
+	void isLocalClientRenew() {
+		final var leases = mockClient(LOCAL);
+		Assertions.assertTrue(health.isLocal("service:bt:jira:6"));
+		verify(leases).put(anyString(), eq(LOCAL), anyLong(), any());
+	}
+
+	@Test
+	void isLocalClientNotCoordinator() {
+		final var leases = mockClient(UUID.randomUUID());
+		Assertions.assertFalse(health.isLocal("service:bt:jira:4"));
+		Assertions.assertTrue(health.filter(List.of(newNode("service:bt:jira:4"))).isEmpty());
+
+		// The lease is released, evaluated again on membership change
+		when(leases.putIfAbsent(anyString(), any(), anyLong(), any())).thenReturn(null);
+		Assertions.assertFalse(health.isLocal("service:bt:jira:4"));
+		final var listener = ArgumentCaptor.forClass(MembershipListener.class);
+		verify(cluster).addMembershipListener(listener.capture());
+		listener.getValue().memberRemoved(new MembershipEvent(cluster, remote, MembershipEvent.MEMBER_REMOVED,
+				Set.of(local)));
+		Assertions.assertTrue(health.isLocal("service:bt:jira:4"));
+	}
+
+	@Test
+	void filter() {
+		final var nodes = health.filter(List.of(newNode("service:bt:jira:4"), newNode("service:bt:jira:6")));
+		Assertions.assertEquals(1, nodes.size());
+		Assertions.assertEquals("service:bt:jira:4", nodes.getFirst().getId());
+	}
+}
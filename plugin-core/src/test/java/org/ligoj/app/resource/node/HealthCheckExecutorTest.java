@@ -0,0 +1,167 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class of {@link HealthCheckExecutor}
+ */
+class HealthCheckExecutorTest {
+
+	private HealthCheckExecutor executor;
+
+	@BeforeEach
+	void prepareMock() {
+		executor = new HealthCheckExecutor();
+		executor.configuration = mock(ConfigurationResource.class);
+		when(executor.configuration.get(eq(HealthCheckExecutor.CONF_CONCURRENCY), anyInt())).thenReturn(4);
+		when(executor.configuration.get(eq(HealthCheckExecutor.CONF_CONCURRENCY_PLUGIN), anyInt())).thenReturn(2);
+		when(executor.configuration.get(eq(HealthCheckExecutor.CONF_TIMEOUT), anyInt())).thenReturn(1);
+	}
+
+	@Test
+	void execute() {
+		final var results = executor.execute(List.of(1, 2, 3), _ -> "scope", i -> i * 2, _ -> -1);
+		Assertions.assertEquals(3, results.size());
+		Assertions.assertEquals(2, results.get(1));
+		Assertions.assertEquals(6, results.get(3));
+	}
+
+	@Test
+	void executeFailure() {
+		final var results = executor.execute(List.of(1, 2), _ -> "scope", i -> {
+			if (i == 2) {
+				throw new IllegalStateException("junit");
+			}
+			return i;
+		}, _ -> -1);
+		Assertions.assertEquals(1, results.get(1));
+		Assertions.assertEquals(-1, results.get(2));
+	}
+
+	@Test
+	void executeTimeout() {
+		final var start = System.currentTimeMillis();
+		final var results = executor.execute(List.of(1, 2), _ -> "scope", i -> {
+			if (i == 2) {
+				sleep(10000);
+			}
+			return i;
+		}, _ -> -1);
+		Assertions.assertEquals(1, results.get(1));
+		Assertions.assertEquals(-1, results.get(2));
+		Assertions.assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	void executeTimeoutReleasePermits() {
+		when(executor.configuration.get(eq(HealthCheckExecutor.CONF_CONCURRENCY), anyInt())).thenReturn(1);
+		final var start = System.currentTimeMillis();
+		final var results = executor.execute(List.of(1, 2, 3), _ -> "scope", i -> {
+			if (i == 1) {
+				// A blocking call ignoring the interruption
+				final var end = System.currentTimeMillis() + 4000;
+				while (System.currentTimeMillis() < end) {
+					sleep(100);
+				}
+			}
+			return i;
+		}, _ -> -1);
+
+		// The remaining checks do not wait for the abandoned call
+		Assertions.assertEquals(-1, results.get(1));
+		Assertions.assertEquals(2, results.get(2));
+		Assertions.assertEquals(3, results.get(3));
+		Assertions.assertTrue(System.currentTimeMillis() - start < 3500);
+	}
+
+	@Test
+	void executeConcurrencyPerPlugin() {
+		final var running = new AtomicInteger();
+		final var max = new AtomicInteger();
+		final var items = new ArrayList<Integer>();
+		for (var i = 0; i < 10; i++) {
+			items.add(i);
+		}
+		executor.execute(items, _ -> "scope", i -> {
+			max.accumulateAndGet(running.incrementAndGet(), Math::max);
+			sleep(20);
+			running.decrementAndGet();
+			return i;
+		}, _ -> -1);
+		Assertions.assertTrue(max.get() <= 2);
+	}
+
+	@Test
+	void executeConcurrencyGlobal() {
+		final var running = new AtomicInteger();
+		final var max = new AtomicInteger();
+		final var items = new ArrayList<Integer>();
+		for (var i = 0; i < 20; i++) {
+			items.add(i);
+		}
+		executor.execute(items, i -> "scope" + i, i -> {
+			max.accumulateAndGet(running.incrementAndGet(), Math::max);
+			sleep(20);
+			running.decrementAndGet();
+			return i;
+		}, _ -> -1);
+		Assertions.assertTrue(max.get() <= 4);
+	}
+
+	@Test
+	void executeConsumerInCallingThread() {
+		final var caller = Thread.currentThread();
+		final var threads = new ArrayList<Thread>();
+		executor.execute(List.of(1, 2, 3), _ -> "scope", i -> i, _ -> -1, (_, _) -> threads.add(Thread.currentThread()));
+		Assertions.assertEquals(3, threads.size());
+		threads.forEach(t -> Assertions.assertSame(caller, t));
+	}
+
+	@Test
+	void executeGuard() {
+		final var timeouts = new ArrayList<Integer>();
+		final var results = executor.execute(List.of(1, 2), _ -> "scope", new HealthCheckExecutor.Guard<>() {
+			@Override
+			public void admit(final Integer item) throws InterruptedException {
+				// The admission is not part of the timeout
+				Thread.sleep(1500);
+			}
+
+			@Override
+			public void timeout(final Integer item) {
+				timeouts.add(item);
+			}
+		}, i -> {
+			if (i == 2) {
+				sleep(10000);
+			}
+			return i;
+		}, _ -> -1);
+		Assertions.assertEquals(1, results.get(1));
+		Assertions.assertEquals(-1, results.get(2));
+		Assertions.assertEquals(List.of(2), timeouts);
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (final InterruptedException _) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
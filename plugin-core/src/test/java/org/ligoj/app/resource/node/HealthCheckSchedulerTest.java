@@ -0,0 +1,124 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.app.model.Event;
+import org.ligoj.app.model.Node;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.mockito.ArgumentMatchers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class of {@link HealthCheckScheduler}
+ */
+class HealthCheckSchedulerTest {
+
+	private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+	private HealthCheckScheduler scheduler;
+
+	private final List<Object[]> latest = new ArrayList<>();
+
+	private final List<Object[]> counts = new ArrayList<>();
+
+	@BeforeEach
+	void prepareMock() {
+		scheduler = new HealthCheckScheduler();
+		scheduler.configuration = mock(ConfigurationResource.class);
+		when(scheduler.configuration.get(eq(HealthCheckScheduler.CONF_MIN), anyInt())).thenReturn(5);
+		when(scheduler.configuration.get(eq(HealthCheckScheduler.CONF_MAX), anyInt())).thenReturn(1440);
+		scheduler.repository = mock(EventRepository.class);
+		when(scheduler.repository.findLastNodeEvents(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(latest);
+		when(scheduler.repository.countNodeEvents(ArgumentMatchers.any(), ArgumentMatchers.any(),
+				ArgumentMatchers.any())).thenReturn(counts);
+	}
+
+	private Node newNode(final String id) {
+		final var node = new Node();
+		node.setId(id);
+		return node;
+	}
+
+	private void addEvent(final String node, final NodeStatus status, final Instant date, final long count) {
+		final var event = new Event();
+		event.setValue(status.name());
+		event.setDate(date);
+		latest.add(new Object[] { node, event });
+		counts.add(new Object[] { node, count });
+	}
+
+	private Duration getDelay(final String node) {
+		return Duration.between(NOW, scheduler.getNextDue(node));
+	}
+
+	@Test
+	void pollSpread() {
+		final var nodes = new ArrayList<Node>();
+		for (var i = 0; i < 20; i++) {
+			nodes.add(newNode("service:n:" + i));
+		}
+
+		// Unknown nodes are due within the minimal interval, not all at once
+		Assertions.assertTrue(scheduler.poll(nodes, NOW).size() < 20);
+		nodes.forEach(n -> Assertions.assertTrue(getDelay(n.getId()).compareTo(Duration.ofMinutes(6)) < 0));
+		Assertions.assertEquals(20, scheduler.poll(nodes, NOW.plus(Duration.ofMinutes(6))).size());
+	}
+
+	@Test
+	void pollRemoved() {
+		scheduler.poll(List.of(newNode("service:n:1")), NOW);
+		Assertions.assertNotNull(scheduler.getNextDue("service:n:1"));
+		Assertions.assertTrue(scheduler.poll(List.of(), NOW.plus(Duration.ofDays(1))).isEmpty());
+		Assertions.assertNull(scheduler.getNextDue("service:n:1"));
+	}
+
+	@Test
+	void reschedule() {
+		addEvent("service:down", NodeStatus.DOWN, NOW.minus(Duration.ofDays(10)), 1);
+		addEvent("service:flapping", NodeStatus.UP, NOW.minus(Duration.ofHours(1)), 3);
+		addEvent("service:recent", NodeStatus.UP, NOW.minus(Duration.ofDays(1)), 1);
+		addEvent("service:stable", NodeStatus.UP, NOW.minus(Duration.ofDays(100)), 0);
+		scheduler.reschedule(List.of("service:down", "service:flapping", "service:recent", "service:stable",
+				"service:unknown"), NOW);
+
+		// Minimal interval, up to 10% shift
+		Assertions.assertTrue(getDelay("service:down").compareTo(Duration.ofMinutes(6)) < 0);
+		Assertions.assertTrue(getDelay("service:flapping").compareTo(Duration.ofMinutes(6)) < 0);
+		Assertions.assertTrue(getDelay("service:unknown").compareTo(Duration.ofMinutes(6)) < 0);
+
+		// Backed off according to the stability
+		Assertions.assertTrue(getDelay("service:recent").compareTo(Duration.ofHours(1)) >= 0);
+		Assertions.assertTrue(getDelay("service:recent").compareTo(Duration.ofMinutes(67)) < 0);
+		Assertions.assertTrue(getDelay("service:stable").compareTo(Duration.ofDays(1)) >= 0);
+		Assertions.assertTrue(getDelay("service:stable").compareTo(Duration.ofHours(27)) < 0);
+	}
+
+	@Test
+	void pollRescheduled() {
+		final var nodes = List.of(newNode("service:n:1"));
+		scheduler.poll(nodes, NOW);
+		final var checked = scheduler.poll(nodes, NOW.plus(Duration.ofMinutes(6)));
+		Assertions.assertEquals(1, checked.size());
+		addEvent("service:n:1", NodeStatus.UP, NOW.minus(Duration.ofDays(100)), 0);
+		scheduler.reschedule(List.of("service:n:1"), NOW.plus(Duration.ofMinutes(6)));
+
+		// Not due anymore
+		Assertions.assertTrue(scheduler.poll(nodes, NOW.plus(Duration.ofMinutes(12))).isEmpty());
+		Assertions.assertEquals(1, scheduler.poll(nodes, NOW.plus(Duration.ofDays(2))).size());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class of {@link HealthCircuitBreaker}
+ */
+class HealthCircuitBreakerTest {
+
+	private static final String NODE = "service:bt:jira:6";
+
+	private HealthCircuitBreaker breaker;
+
+	private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+	@BeforeEach
+	void prepareMock() {
+		breaker = new HealthCircuitBreaker();
+		breaker.configuration = mock(ConfigurationResource.class);
+		when(breaker.configuration.get(eq(HealthCircuitBreaker.CONF_FAILURES), anyInt())).thenReturn(2);
+		when(breaker.configuration.get(eq(HealthCircuitBreaker.CONF_OPEN), anyInt())).thenReturn(60);
+		when(breaker.configuration.get(eq(HealthCircuitBreaker.CONF_RATE), anyInt())).thenReturn(0);
+		breaker.clock = new Clock() {
+			@Override
+			public ZoneOffset getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(final java.time.ZoneId zone) {
+				return this;
+			}
+
+			@Override
+			public Instant instant() {
+				return now;
+			}
+		};
+	}
+
+	private void fail() {
+		Assertions.assertThrows(IOException.class, () -> breaker.call(NODE, () -> {
+			throw new IOException("junit");
+		}));
+	}
+
+	@Test
+	void call() throws Exception {
+		Assertions.assertEquals("ok", breaker.call(NODE, () -> "ok"));
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+	}
+
+	@Test
+	void open() throws Exception {
+		fail();
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+		fail();
+		Assertions.assertEquals(HealthCircuitBreaker.State.OPEN, breaker.getStates().get(NODE));
+
+		// Fail fast without calling the node
+		final var calls = new AtomicInteger();
+		Assertions.assertThrows(IllegalStateException.class, () -> breaker.call(NODE, calls::incrementAndGet));
+		Assertions.assertEquals(0, calls.get());
+
+		// Other nodes are not impacted
+		Assertions.assertEquals("ok", breaker.call("service:bt:jira:4", () -> "ok"));
+	}
+
+	@Test
+	void probeSuccess() throws Exception {
+		fail();
+		fail();
+		now = now.plus(Duration.ofSeconds(61));
+		Assertions.assertEquals("ok", breaker.call(NODE, () -> "ok"));
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+	}
+
+	@Test
+	void probeFailure() {
+		fail();
+		fail();
+		now = now.plus(Duration.ofSeconds(61));
+
+		// A single failed probe opens again the circuit
+		fail();
+		Assertions.assertEquals(HealthCircuitBreaker.State.OPEN, breaker.getStates().get(NODE));
+		Assertions.assertThrows(IllegalStateException.class, () -> breaker.call(NODE, () -> "ok"));
+	}
+
+	@Test
+	void probeInProgress() throws Exception {
+		fail();
+		fail();
+		now = now.plus(Duration.ofSeconds(61));
+		Assertions.assertThrows(IllegalStateException.class, () -> breaker.call(NODE, () -> {
+			Assertions.assertEquals(HealthCircuitBreaker.State.HALF_OPEN, breaker.getStates().get(NODE));
+			// Concurrent calls fail fast during the probe
+			return breaker.call(NODE, () -> "ok");
+		}));
+	}
+
+	@Test
+	void reset() {
+		fail();
+		fail();
+		breaker.reset();
+		Assertions.assertTrue(breaker.getStates().isEmpty());
+	}
+
+	@Test
+	void rate() throws Exception {
+		when(breaker.configuration.get(eq(HealthCircuitBreaker.CONF_RATE), anyInt())).thenReturn(10);
+		breaker.clock = Clock.systemUTC();
+		final var start = System.currentTimeMillis();
+		for (var i = 0; i < 4; i++) {
+			breaker.call(NODE, () -> "ok");
+		}
+		Assertions.assertTrue(System.currentTimeMillis() - start >= 250);
+	}
+
+	@Test
+	void admit() throws Exception {
+		when(breaker.configuration.get(eq(HealthCircuitBreaker.CONF_RATE), anyInt())).thenReturn(10);
+		breaker.clock = Clock.systemUTC();
+		final var start = System.currentTimeMillis();
+		for (var i = 0; i < 4; i++) {
+			breaker.admit(NODE);
+		}
+		Assertions.assertTrue(System.currentTimeMillis() - start >= 250);
+
+		// The admitted calls do not wait again
+		final var admitted = System.currentTimeMillis();
+		for (var i = 0; i < 4; i++) {
+			breaker.call(NODE, () -> "ok");
+		}
+		Assertions.assertTrue(System.currentTimeMillis() - admitted < 250);
+	}
+
+	@Test
+	void timeout() {
+		breaker.timeout(NODE);
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+		breaker.timeout(NODE);
+		Assertions.assertEquals(HealthCircuitBreaker.State.OPEN, breaker.getStates().get(NODE));
+	}
+
+	@Test
+	void callInterrupted() {
+		// The call abandoned by the executor is already counted by the timeout
+		for (var i = 0; i < 2; i++) {
+			Thread.currentThread().interrupt();
+			try {
+				fail();
+			} finally {
+				Thread.interrupted();
+			}
+		}
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+	}
+
+	@Test
+	void callSubscription() {
+		// Subscription level errors do not open the circuit
+		for (var i = 0; i < 3; i++) {
+			Assertions.assertThrows(IllegalArgumentException.class, () -> breaker.callSubscription(NODE, () -> {
+				throw new IllegalArgumentException("junit");
+			}));
+		}
+		Assertions.assertEquals(HealthCircuitBreaker.State.CLOSED, breaker.getStates().get(NODE));
+
+		// Connectivity failures, even wrapped, open the circuit
+		for (var i = 0; i < 2; i++) {
+			Assertions.assertThrows(IllegalStateException.class, () -> breaker.callSubscription(NODE, () -> {
+				throw new IllegalStateException(new SocketTimeoutException("junit"));
+			}));
+		}
+		Assertions.assertEquals(HealthCircuitBreaker.State.OPEN, breaker.getStates().get(NODE));
+	}
+
+	@Test
+	void isConnectivityFailure() {
+		Assertions.assertTrue(HealthCircuitBreaker.isConnectivityFailure(new IOException()));
+		Assertions.assertTrue(HealthCircuitBreaker.isConnectivityFailure(new RuntimeException(new TimeoutException())));
+		Assertions.assertFalse(HealthCircuitBreaker.isConnectivityFailure(new IllegalArgumentException()));
+	}
+}
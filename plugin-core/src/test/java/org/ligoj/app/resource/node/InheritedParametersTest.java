@@ -0,0 +1,87 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.api.NodeVo;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Test class of {@link InheritedParameters}
+ */
+class InheritedParametersTest {
+
+	@Test
+	void get() {
+		final var service = new NodeVo();
+		service.setParameters(Map.of("a", "service-a"));
+		final var tool = new NodeVo();
+		tool.setParameters(new InheritedParameters(Map.of("b", "tool-b"), service));
+		final var parameters = new InheritedParameters(Map.<String, Serializable>of("a", "own-a", "c", 1), tool);
+
+		// The parent chain is resolved without copy, and the parent takes precedence
+		Assertions.assertEquals("service-a", parameters.get("a"));
+		Assertions.assertEquals("tool-b", parameters.get("b"));
+		Assertions.assertEquals(1, parameters.get("c"));
+		Assertions.assertNull(parameters.get("d"));
+		Assertions.assertTrue(parameters.containsKey("b"));
+		Assertions.assertTrue(parameters.containsKey("c"));
+		Assertions.assertFalse(parameters.containsKey("d"));
+		Assertions.assertEquals(Map.of("a", "service-a", "b", "tool-b", "c", 1), parameters);
+	}
+
+	@Test
+	void getNoParent() {
+		final var parameters = new InheritedParameters(Map.of("a", "own-a"), null);
+		Assertions.assertEquals("own-a", parameters.get("a"));
+		Assertions.assertEquals(1, parameters.size());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> parameters.put("b", "b"));
+	}
+
+	@Test
+	void toJSon() {
+		final var parent = new NodeVo();
+		parent.setParameters(Map.of("a", "parent-a"));
+		Assertions.assertEquals("{\"a\":\"parent-a\"}", NodeHelper.toJSon(new InheritedParameters(Map.of(), parent)));
+	}
+
+	@Test
+	void entrySet() {
+		final var service = new NodeVo();
+		service.setParameters(Map.of("a", "service-a"));
+		final var tool = new NodeVo();
+		tool.setParameters(new InheritedParameters(Map.of("b", "tool-b"), service));
+		final var parameters = new InheritedParameters(Map.<String, Serializable>of("a", "own-a", "c", 1), tool);
+
+		// The shadowed own parameter is skipped
+		Assertions.assertEquals(3, parameters.size());
+		Assertions.assertEquals(3, parameters.entrySet().size());
+		final var keys = new HashSet<String>();
+		parameters.forEach((k, v) -> {
+			Assertions.assertTrue(keys.add(k));
+			Assertions.assertEquals(parameters.get(k), v);
+		});
+		Assertions.assertEquals(Set.of("a", "b", "c"), keys);
+
+		// Read-only
+		final var iterator = parameters.entrySet().iterator();
+		iterator.next();
+		Assertions.assertThrows(UnsupportedOperationException.class, iterator::remove);
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> parameters.remove("a"));
+	}
+
+	@Test
+	void entrySetEmpty() {
+		final var parameters = new InheritedParameters(Map.of(), null);
+		Assertions.assertTrue(parameters.isEmpty());
+		Assertions.assertFalse(parameters.entrySet().iterator().hasNext());
+		Assertions.assertThrows(NoSuchElementException.class, () -> parameters.entrySet().iterator().next());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.AbstractAppTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Test class of {@link NearCache}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class NearCacheTest extends AbstractAppTest {
+
+	@Autowired
+	private NearCache nearCache;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Test
+	void get() {
+		final var hits = nearCache.getStatistics().get("node-enablement").hits();
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:get", () -> true));
+
+		// The loaded value is kept locally from the next read of the shared one
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:get", () -> false));
+		Assertions.assertEquals(hits, nearCache.getStatistics().get("node-enablement").hits());
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:get", () -> false));
+		Assertions.assertEquals(hits + 1, nearCache.getStatistics().get("node-enablement").hits());
+	}
+
+	@Test
+	void getInvalidated() {
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:invalidated", () -> true));
+
+		// Removed by any member
+		cacheManager.getCache("node-enablement").evict("junit:invalidated");
+		Assertions.assertFalse(nearCache.<Boolean>get("node-enablement", "junit:invalidated", () -> false));
+	}
+
+	@Test
+	void getClear() {
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:clear", () -> true));
+		nearCache.clear("node-enablement");
+		Assertions.assertFalse(nearCache.<Boolean>get("node-enablement", "junit:clear", () -> false));
+	}
+
+	@Test
+	void getNotEnabled() {
+		Assertions.assertFalse(nearCache.getStatistics().containsKey("plugin-data"));
+		Assertions.assertTrue(nearCache.<Boolean>get("plugin-data", "junit:any", () -> true));
+		Assertions.assertFalse(nearCache.<Boolean>get("plugin-data", "junit:any", () -> false));
+	}
+
+	@Test
+	void getNullKey() {
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", null, () -> true));
+		Assertions.assertFalse(nearCache.<Boolean>get("node-enablement", null, () -> false));
+	}
+
+	@Test
+	void getUpdated() {
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:updated", () -> true));
+		Assertions.assertTrue(nearCache.<Boolean>get("node-enablement", "junit:updated", () -> true));
+
+		// Updated by any member
+		cacheManager.getCache("node-enablement").put("junit:updated", false);
+		Assertions.assertFalse(nearCache.<Boolean>get("node-enablement", "junit:updated", () -> true));
+	}
+}
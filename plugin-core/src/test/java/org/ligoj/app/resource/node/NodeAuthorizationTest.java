@@ -0,0 +1,112 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.iam.model.ReceiverType;
+import org.ligoj.app.model.DelegateNode;
+import org.ligoj.app.resource.AbstractOrgTest;
+import org.ligoj.app.resource.delegate.OrgAuthorization;
+import org.ligoj.app.resource.node.NodeAuthorization.Access;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test class of {@link NodeAuthorization}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class NodeAuthorizationTest extends AbstractOrgTest {
+
+	@Autowired
+	private NodeAuthorization authorization;
+
+	@Autowired
+	private OrgAuthorization orgAuthorization;
+
+	@BeforeEach
+	void prepare() throws IOException {
+		persistEntities("csv", new Class<?>[]{DelegateNode.class}, StandardCharsets.UTF_8);
+		orgAuthorization.invalidate();
+		authorization.invalidate();
+	}
+
+	@Test
+	void getNodes() {
+		Assertions.assertTrue(authorization.getNodes("fdaugan", Access.VISIBLE).contains("service"));
+		Assertions.assertTrue(authorization.getNodes("user1", Access.ADMIN).contains("service:build:jenkins"));
+		Assertions.assertTrue(authorization.getNodes("any", Access.VISIBLE).isEmpty());
+		Assertions.assertSame(authorization.getNodes("user1", Access.WRITE), authorization.getNodes("user1", Access.WRITE));
+	}
+
+	@Test
+	void isGranted() {
+		Assertions.assertTrue(authorization.isGranted("user1", "service:build:jenkins", Access.ADMIN));
+		Assertions.assertTrue(authorization.isGranted("user1", "service:build:jenkins:bpr", Access.WRITE));
+		Assertions.assertFalse(authorization.isGranted("user1", "service:build", Access.VISIBLE));
+		Assertions.assertFalse(authorization.isGranted("user1", "service:kpi:sonar", Access.VISIBLE));
+		Assertions.assertFalse(authorization.isGranted("any", "service:kpi:sonar", Access.VISIBLE));
+	}
+
+	@Test
+	void isGrantedSubscribe() {
+		newDelegate("any", ReceiverType.USER, "service:bt", true, false);
+		Assertions.assertTrue(authorization.isGranted("any", "service:bt:jira:4", Access.VISIBLE));
+		Assertions.assertTrue(authorization.isGranted("any", "service:bt:jira:4", Access.SUBSCRIBE));
+		Assertions.assertFalse(authorization.isGranted("any", "service:bt:jira:4", Access.WRITE));
+		Assertions.assertFalse(authorization.isGranted("any", "service:kpi", Access.VISIBLE));
+	}
+
+	@Test
+	void isGrantedGroup() {
+		// "admin-test" is member of this group
+		newDelegate("ligoj-jupiter", ReceiverType.GROUP, "service:kpi", false, false);
+		Assertions.assertTrue(authorization.isGranted("admin-test", "service:kpi:sonar", Access.VISIBLE));
+		Assertions.assertFalse(authorization.isGranted("admin-test", "service:kpi:sonar", Access.SUBSCRIBE));
+		Assertions.assertFalse(authorization.isGranted("jdoe4", "service:kpi:sonar", Access.VISIBLE));
+	}
+
+	@Test
+	void isGrantedCompany() {
+		// "jdoe4" is member of this company
+		newDelegate("ing", ReceiverType.COMPANY, "service:scm", false, true);
+		Assertions.assertTrue(authorization.isGranted("jdoe4", "service:scm:git:dig", Access.WRITE));
+		Assertions.assertFalse(authorization.isGranted("jdoe4", "service:scm:git:dig", Access.ADMIN));
+		Assertions.assertFalse(authorization.isGranted("admin-test", "service:scm:git:dig", Access.VISIBLE));
+	}
+
+	@Test
+	void update() {
+		Assertions.assertFalse(authorization.isGranted("any", "service:bt", Access.VISIBLE));
+		final var delegate = new DelegateNode();
+		delegate.setNode("service:bt");
+		delegate.setReceiver("any");
+		em.persist(delegate);
+
+		// The pending change is considered
+		Assertions.assertTrue(authorization.isGranted("any", "service:bt", Access.VISIBLE));
+	}
+
+	private void newDelegate(final String receiver, final ReceiverType type, final String node,
+			final boolean canSubscribe, final boolean canWrite) {
+		final var delegate = new DelegateNode();
+		delegate.setNode(node);
+		delegate.setReceiver(receiver);
+		delegate.setReceiverType(type);
+		delegate.setCanSubscribe(canSubscribe);
+		delegate.setCanWrite(canWrite);
+		em.persist(delegate);
+	}
+}
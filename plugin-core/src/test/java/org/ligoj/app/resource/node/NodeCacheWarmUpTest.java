@@ -0,0 +1,65 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.AbstractAppTest;
+import org.ligoj.app.model.Node;
+import org.ligoj.app.model.Parameter;
+import org.ligoj.app.model.ParameterValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test class of {@link NodeCacheWarmUp}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class NodeCacheWarmUpTest extends AbstractAppTest {
+
+	@Autowired
+	private NodeCacheWarmUp resource;
+
+	@BeforeEach
+	void prepare() throws IOException {
+		persistEntities("csv", new Class<?>[]{Node.class, Parameter.class, ParameterValue.class},
+				StandardCharsets.UTF_8);
+		persistSystemEntities();
+	}
+
+	@BeforeEach
+	@AfterEach
+	void cleanNodeCache() {
+		super.clearAllCache();
+	}
+
+	@Test
+	void getStateDisabled() {
+		// Warm-up is disabled in the test context
+		Assertions.assertEquals(200, resource.getState().getStatus());
+		Assertions.assertTrue(((WarmUpVo) resource.getState().getEntity()).isReady());
+	}
+
+	@Test
+	void warmUp() {
+		final var result = resource.warmUp();
+		Assertions.assertTrue(result.isReady());
+		Assertions.assertTrue(result.getNodes() > 0);
+		Assertions.assertTrue(result.getParameters() > 0);
+		Assertions.assertTrue(result.getNodes() > result.getParameters());
+		Assertions.assertSame(result, resource.getState().getEntity());
+	}
+}
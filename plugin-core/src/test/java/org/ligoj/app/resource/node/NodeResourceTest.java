@@ -19,6 +19,7 @@ import org.ligoj.app.resource.node.sample.*;
 import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.resource.TechnicalException;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.orm.jpa.JpaObjectRetrievalFailureException;
@@ -26,11 +27,18 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
 
@@ -68,6 +76,18 @@ class NodeResourceTest extends AbstractAppTest {
 	@Autowired
 	private EventRepository eventRepository;
 
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private HealthCircuitBreaker circuitBreaker;
+
+	@Autowired
+	private NodeTree nodeTree;
+
+	@Autowired
+	private ServicePluginLocator pluginLocator;
+
 	@BeforeEach
 	void prepare() throws IOException {
 		persistEntities("csv", new Class<?>[]{Node.class, Parameter.class, Project.class, Subscription.class,
@@ -79,6 +99,7 @@ class NodeResourceTest extends AbstractAppTest {
 	@AfterEach
 	void cleanNodeCache() {
 		super.clearAllCache();
+		circuitBreaker.reset();
 	}
 
 	private void mockApplicationContext() {
@@ -308,6 +329,42 @@ class NodeResourceTest extends AbstractAppTest {
 		Assertions.assertEquals(expectedCount, eventRepository.count());
 	}
 
+	@Test
+	void checkSubscriptionsStatusStream() throws Exception {
+		mockApplicationContext();
+
+		// This user sees only Jenkins nodes
+		initSpringSecurityContext("user1");
+		final var mock = resourceMock;
+		final var eventsCount = prepareSubscriptionsEvent();
+		final var output = new ByteArrayOutputStream();
+		mock.checkSubscriptionsStatusStream().write(output);
+
+		// Same changes as the blocking sweep: Jenkins DOWN, and its subscription
+		Assertions.assertEquals(eventsCount + 2, eventRepository.count());
+		final var events = output.toString(StandardCharsets.UTF_8);
+		Assertions.assertTrue(events.contains("event: node\ndata: {"));
+		Assertions.assertTrue(events.contains("\"status\":\"DOWN\""));
+		Assertions.assertTrue(events.endsWith("event: done\ndata: {\"nodes\":1}\n\n"));
+	}
+
+	@Test
+	void checkSubscriptionsStatusStreamCancelled() throws Exception {
+		mockApplicationContext();
+		initSpringSecurityContext("user1");
+		final var mock = resourceMock;
+		prepareSubscriptionsEvent();
+
+		// The client disconnects
+		final var output = new OutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				throw new IOException("junit");
+			}
+		};
+		Assertions.assertDoesNotThrow(() -> mock.checkSubscriptionsStatusStream().write(output));
+	}
+
 	private long prepareSubscriptionsEvent() throws Exception {
 		// Check previous status
 		final var eventsCount = eventRepository.count();
@@ -397,6 +454,108 @@ class NodeResourceTest extends AbstractAppTest {
 		Assertions.assertEquals(eventsCount + 1, eventRepository.count());
 	}
 
+	@Test
+	void checkSubscriptionStatusTimeout() throws Exception {
+		mockApplicationContext();
+		final var mock = resourceMock;
+		final var servicePluginLocator = resourceMock.locator;
+		configuration.put(HealthCheckExecutor.CONF_TIMEOUT, "1");
+
+		// data
+		final var jiraNode = repository.findByName("JIRA 4");
+
+		// The subscription check hangs
+		final var jenkins = mock(JenkinsPluginResource.class);
+		when(servicePluginLocator.getResourceExpected(ArgumentMatchers.anyString(),
+				ArgumentMatchers.eq(ToolPlugin.class))).thenReturn(jenkins);
+		when(jenkins.checkSubscriptionStatus(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(),
+				ArgumentMatchers.anyMap())).thenAnswer(_ -> {
+			Thread.sleep(10000);
+			return new SubscriptionStatusWithData();
+		});
+
+		// check status
+		final var eventsCount = eventRepository.count();
+		final var start = System.currentTimeMillis();
+		mock.checkSubscriptionStatus(jiraNode, NodeStatus.UP);
+		Assertions.assertTrue(System.currentTimeMillis() - start < 5000);
+
+		// 1 subscription, DOWN since the check has timed out
+		Assertions.assertEquals(eventsCount + 1, eventRepository.count());
+		final var subscription = subscriptionRepository.findAllBy("node.id", jiraNode.getId()).getFirst();
+		Assertions.assertEquals(NodeStatus.DOWN.name(), eventRepository
+				.findFirstBySubscriptionAndTypeOrderByIdDesc(subscription, EventType.STATUS).getValue());
+	}
+
+	@Test
+	void checkSubscriptionStatusCircuit() throws Exception {
+		mockApplicationContext();
+		final var mock = resourceMock;
+
+		// The tool instance is dead
+		final var jenkins = mock(JenkinsPluginResource.class);
+		when(mock.locator.getResourceExpected(ArgumentMatchers.anyString(), ArgumentMatchers.eq(ToolPlugin.class)))
+				.thenReturn(jenkins);
+		when(jenkins.checkSubscriptionStatus(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(),
+				ArgumentMatchers.anyMap())).thenThrow(new TechnicalException("junit"));
+		final var subscription = subscriptionRepository.findAllBy("node.id", "service:build:jenkins:bpr").getFirst();
+		for (var i = 0; i < HealthCircuitBreaker.DEFAULT_FAILURES + 2; i++) {
+			Assertions.assertFalse(mock.checkSubscriptionStatus(subscription, Map.of()).getStatus().isUp());
+		}
+
+		// The last calls failed fast
+		verify(jenkins, times(HealthCircuitBreaker.DEFAULT_FAILURES)).checkSubscriptionStatus(ArgumentMatchers.anyInt(),
+				ArgumentMatchers.anyString(), ArgumentMatchers.anyMap());
+		Assertions.assertEquals(HealthCircuitBreaker.State.OPEN,
+				resource.getCircuitStates().get("service:build:jenkins:bpr"));
+	}
+
+	@Test
+	void getNearCacheStatistics() {
+		Assertions.assertTrue(resource.getNearCacheStatistics().containsKey("node-enablement"));
+		Assertions.assertTrue(resource.getNearCacheStatistics().containsKey("nodes"));
+		Assertions.assertTrue(resource.getNearCacheStatistics().containsKey("authorizations"));
+	}
+
+	@Test
+	void checkSubscriptionStatusBatch() {
+		mockApplicationContext();
+		final var mock = resourceMock;
+		final var calls = new AtomicInteger();
+
+		// This plug-in checks the subscriptions in a single call
+		final var sonar = new SonarPluginResource() {
+			@Override
+			public boolean supportsBatchStatus() {
+				return true;
+			}
+
+			@Override
+			public Map<Integer, SubscriptionStatusWithData> checkSubscriptionStatuses(final String node,
+					final Map<Integer, Map<String, String>> subscriptions) {
+				calls.incrementAndGet();
+				Assertions.assertEquals("123456", subscriptions.values().iterator().next().get("service:kpi:sonar:project"));
+				final var result = new HashMap<Integer, SubscriptionStatusWithData>();
+				subscriptions.keySet().forEach(s -> result.put(s, new SubscriptionStatusWithData(false)));
+				return result;
+			}
+		};
+		when(resourceMock.locator.getResource(ArgumentMatchers.anyString(), ArgumentMatchers.eq(ToolPlugin.class)))
+				.thenReturn(sonar);
+
+		// check status
+		final var sonarNode = repository.findOneExpected("service:kpi:sonar:bpr");
+		final var eventsCount = eventRepository.count();
+		mock.checkSubscriptionStatus(sonarNode, NodeStatus.UP);
+
+		// 1 subscription checked with a single batch call
+		Assertions.assertEquals(1, calls.get());
+		Assertions.assertEquals(eventsCount + 1, eventRepository.count());
+		final var subscription = subscriptionRepository.findAllBy("node.id", sonarNode.getId()).getFirst();
+		Assertions.assertEquals(NodeStatus.DOWN.name(), eventRepository
+				.findFirstBySubscriptionAndTypeOrderByIdDesc(subscription, EventType.STATUS).getValue());
+	}
+
 	@Test
 	void getServices() {
 		final var resources = resource.findAll(newUriInfo(), null, "service", null, -1).getData();
@@ -450,6 +609,36 @@ class NodeResourceTest extends AbstractAppTest {
 		Assertions.assertEquals("service:bt:jira", nodeVo.getRefined().getId());
 	}
 
+	@Test
+	void updateNotCommitted() throws Exception {
+		Assertions.assertEquals("JIRA 6", resource.findAll().get("service:bt:jira:6").getName());
+		final var node = new NodeEditionVo();
+		node.setId("service:bt:jira:6");
+		node.setMode(SubscriptionMode.LINK);
+		node.setName("Jira 7");
+		node.setNode("service:bt:jira");
+		resource.update(node);
+
+		// Only the current transaction sees its change until it is committed
+		Assertions.assertEquals("Jira 7", resource.findAll().get("service:bt:jira:6").getName());
+		Assertions.assertEquals("JIRA 6", CompletableFuture
+				.supplyAsync(() -> nodeTree.getNodes().get("service:bt:jira:6").getName()).get());
+	}
+
+	@Test
+	void findAllPatchParameters() {
+		Assertions.assertTrue(resource.findAll().get("service:bt:jira:6").getParameters().containsKey("service:bt:jira:user"));
+		final var id = parameterValueRepository.findAllBy("node.id", "service:bt:jira:6").stream()
+				.filter(v -> v.getParameter().getId().equals("service:bt:jira:user")).findFirst().orElseThrow().getId();
+		parameterValueResource.delete(id);
+
+		// Only the changed node is read again
+		final var nodes = resource.findAll();
+		Assertions.assertFalse(nodes.get("service:bt:jira:6").getParameters().containsKey("service:bt:jira:user"));
+		Assertions.assertSame(nodes.get("service:bt:jira"), nodes.get("service:bt:jira:6").getRefined());
+		Assertions.assertNotNull(nodes.get("service:bt:jira:4"));
+	}
+
 	@Test
 	void createOverflowMode() {
 		final var node = new NodeEditionVo();
@@ -1045,6 +1234,21 @@ class NodeResourceTest extends AbstractAppTest {
 		Assertions.assertEquals("service:build:jenkins", resource.findById("service:build:jenkins").getId());
 	}
 
+	@Test
+	void materializeAncestors() {
+		em.find(Node.class, "service:bt:jira").getAncestors().clear();
+		em.flush();
+		em.clear();
+		Assertions.assertEquals(1, repository.findAllNoAncestors().size());
+
+		resource.materializeAncestors();
+		em.flush();
+		em.clear();
+		Assertions.assertTrue(repository.findAllNoAncestors().isEmpty());
+		Assertions.assertEquals(Set.of("service", "service:bt", "service:bt:jira"),
+				em.find(Node.class, "service:bt:jira").getAncestors());
+	}
+
 	@Test
 	void findByIdInternal() {
 		initSpringSecurityContext("any");
@@ -1062,6 +1266,7 @@ class NodeResourceTest extends AbstractAppTest {
 	void deleteTasks() {
 		final var sampleResource = registerSingleton("taskSampleResource",
 				applicationContext.getAutowireCapableBeanFactory().createBean(TaskSampleNodeResource.class));
+		pluginLocator.refresh();
 
 		try {
 			final var entity = sampleResource.startTask("service:bt:jira:4", task -> task.setData("init"));
@@ -1081,6 +1286,7 @@ class NodeResourceTest extends AbstractAppTest {
 			Assertions.assertEquals(0, taskSampleRepository.count());
 		} finally {
 			destroySingleton("taskSampleResource");
+			pluginLocator.refresh();
 		}
 	}
 
@@ -0,0 +1,82 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.model.Parameter;
+import org.ligoj.app.model.ParameterType;
+
+import java.util.List;
+
+/**
+ * Test class of {@link ParameterSchemaCache}
+ */
+class ParameterSchemaCacheTest {
+
+	private final ParameterSchemaCache cache = new ParameterSchemaCache();
+
+	private static Parameter newParameter(final ParameterType type, final String data) {
+		final var parameter = new Parameter();
+		parameter.setId("service:junit:" + type);
+		parameter.setType(type);
+		parameter.setData(data);
+		return parameter;
+	}
+
+	@Test
+	void get() {
+		final var parameter = newParameter(ParameterType.TEXT, "{\"pattern\":\"^[a-z]+$\"}");
+		final var schema = cache.get(parameter);
+		Assertions.assertSame(schema, cache.get(parameter));
+		Assertions.assertEquals("^[a-z]+$", schema.getPattern().pattern());
+	}
+
+	@Test
+	void getDataChanged() {
+		final var parameter = newParameter(ParameterType.INTEGER, "{\"min\":1,\"max\":10}");
+		final var schema = cache.get(parameter);
+		parameter.setData("{\"max\":5}");
+		final var schema2 = cache.get(parameter);
+		Assertions.assertNotSame(schema, schema2);
+		Assertions.assertNull(schema2.getMin());
+		Assertions.assertEquals(5, schema2.getMax());
+	}
+
+	@Test
+	void getClear() {
+		final var parameter = newParameter(ParameterType.SELECT, "[\"A\",\"B\"]");
+		final var schema = cache.get(parameter);
+		cache.clear();
+		Assertions.assertNotSame(schema, cache.get(parameter));
+	}
+
+	@Test
+	void compileInteger() {
+		final var schema = ParameterSchema.compile(newParameter(ParameterType.INTEGER, "{\"min\":1,\"max\":10}"));
+		Assertions.assertEquals(1, schema.getMin());
+		Assertions.assertEquals(10, schema.getMax());
+		Assertions.assertNull(schema.getPattern());
+	}
+
+	@Test
+	void compileMultiple() {
+		final var schema = ParameterSchema.compile(newParameter(ParameterType.MULTIPLE, "[\"A\",\"B\"]"));
+		Assertions.assertEquals(List.of("A", "B"), schema.getOptions());
+	}
+
+	@Test
+	void compileTextNoPattern() {
+		Assertions.assertNull(ParameterSchema.compile(newParameter(ParameterType.TEXT, null)).getPattern());
+		Assertions.assertNull(ParameterSchema.compile(newParameter(ParameterType.TEXT, "{}")).getPattern());
+	}
+
+	@Test
+	void compileOther() {
+		final var schema = ParameterSchema.compile(newParameter(ParameterType.BOOL, null));
+		Assertions.assertTrue(schema.getOptions().isEmpty());
+		Assertions.assertTrue(schema.isCompiledFrom(newParameter(ParameterType.BOOL, null)));
+		Assertions.assertFalse(schema.isCompiledFrom(newParameter(ParameterType.TAGS, null)));
+	}
+}
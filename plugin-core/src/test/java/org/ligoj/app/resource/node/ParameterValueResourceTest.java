@@ -24,9 +24,12 @@ import org.ligoj.bootstrap.core.resource.TechnicalException;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
 import org.ligoj.bootstrap.model.system.SystemRole;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -59,6 +62,9 @@ class ParameterValueResourceTest extends AbstractAppTest {
 	@Autowired
 	private StringEncryptor encryptor;
 
+	@Autowired
+	private CacheManager cacheManager;
+
 	@BeforeEach
 	void prepare() throws IOException {
 		persistEntities("csv",
@@ -667,6 +673,28 @@ class ParameterValueResourceTest extends AbstractAppTest {
 		Assertions.assertFalse(repository.existsById(id));
 	}
 
+	@Test
+	void deleteEvictDependents() {
+		final var subscription = getSubscription("Jupiter");
+		Assertions.assertNotNull(resource.getNodeParameters("service:bt:jira:6").get("service:bt:jira:user"));
+		Assertions.assertNotNull(resource.getSubscriptionParameters(subscription).get("service:bt:jira:user"));
+		final var id = repository.findAllBy("node.id", "service:bt:jira:6").stream()
+				.filter(v -> v.getParameter().getId().equals("service:bt:jira:user")).findFirst().orElseThrow().getId();
+
+		// Not yet committed, the cached parameters are kept
+		resource.delete(id);
+		Assertions.assertNotNull(resource.getNodeParameters("service:bt:jira:6").get("service:bt:jira:user"));
+
+		// Once committed, the cached parameters of the node and of the subscriptions to this node are evicted
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		Assertions.assertNull(resource.getNodeParameters("service:bt:jira:6").get("service:bt:jira:user"));
+		Assertions.assertNull(resource.getSubscriptionParameters(subscription).get("service:bt:jira:user"));
+
+		// Restore the cache state of the rolled back data
+		cacheManager.getCache("node-parameters").clear();
+		cacheManager.getCache("subscription-parameters").clear();
+	}
+
 	/**
 	 * Return the subscription identifier of MDA. Assumes there is only one subscription for a service.
 	 */
@@ -813,6 +841,24 @@ class ParameterValueResourceTest extends AbstractAppTest {
 		Assertions.assertThrows(BusinessException.class, () -> resource.update(values, node));
 	}
 
+	@Test
+	void createUnknownParameters() {
+		final var unknown1 = new ParameterValueCreateVo();
+		unknown1.setParameter("any2");
+		unknown1.setText("value");
+		final var unknown2 = new ParameterValueCreateVo();
+		unknown2.setParameter("any1");
+		unknown2.setText("value");
+		final var known = new ParameterValueCreateVo();
+		known.setParameter(JiraBaseResource.PARAMETER_PROJECT);
+		known.setInteger(10074);
+		final var node = em.find(Node.class, "service:bt:jira:6");
+		final var values = List.of(unknown1, known, unknown2);
+		Assertions.assertEquals("any1,any2",
+				Assertions.assertThrows(EntityNotFoundException.class, () -> resource.create(values, node))
+						.getMessage());
+	}
+
 	@Test
 	void updateListUntouchedExists() {
 		final var parameterValue = new ParameterValueCreateVo();
@@ -824,6 +870,26 @@ class ParameterValueResourceTest extends AbstractAppTest {
 		resource.update(values, node);
 	}
 
+	@Test
+	void updateList() {
+		final var untouched = new ParameterValueCreateVo();
+		untouched.setUntouched(true);
+		untouched.setParameter("service:id:ldap:quarantine-dn");
+		final var updated = new ParameterValueCreateVo();
+		updated.setParameter("service:id:ldap:url");
+		updated.setText("ldap://localhost:389/");
+		final var node = em.find(Node.class, "service:id:ldap:dig");
+		resource.update(List.of(untouched, updated), node);
+		em.flush();
+		em.clear();
+
+		// Only the provided values remain, the others are deleted at once
+		final var values = resource.toMapValues(repository.findAllBy("node.id", "service:id:ldap:dig"));
+		Assertions.assertEquals(2, values.size());
+		Assertions.assertEquals("ou=quarantine,dc=sample,dc=com", values.get("service:id:ldap:quarantine-dn"));
+		Assertions.assertEquals("ldap://localhost:389/", values.get("service:id:ldap:url"));
+	}
+
 	@Test
 	void findAll() {
 		final int projectId = projectRepository.findByName("MDA").getId();
@@ -835,4 +901,12 @@ class ParameterValueResourceTest extends AbstractAppTest {
 		Assertions.assertEquals("MDA", pValue.getText());
 
 	}
+
+	@Test
+	void findAllNotSubscribedNode() {
+		// The values of the subscribed node itself are not inherited, only the ones of its strict ancestors
+		final int projectId = projectRepository.findByName("MDA").getId();
+		Assertions.assertTrue(
+				resource.findAll(projectId, "service:bt:jira:url", "service:bt:jira:4", "localhost").isEmpty());
+	}
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.AbstractAppTest;
+import org.ligoj.bootstrap.core.resource.BusinessException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class of {@link SingleFlightLoader}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class SingleFlightLoaderTest extends AbstractAppTest {
+
+	@Autowired
+	private SingleFlightLoader loader;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Test
+	void get() {
+		Assertions.assertEquals(Map.of("k", "v"), loader.get("node-parameters", "junit:get", () -> Map.of("k", "v")));
+		Assertions.assertEquals(Map.of("k", "v"), cacheManager.getCache("node-parameters").get("junit:get").get());
+		Assertions.assertEquals(Map.of("k", "v"), loader.get("node-parameters", "junit:get", Map::of));
+	}
+
+	@Test
+	void getCoalesced() throws Exception {
+		final var calls = new AtomicInteger();
+		final var started = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+		final var first = CompletableFuture.supplyAsync(() -> loader.get("node-parameters", "junit:coalesced", () -> {
+			calls.incrementAndGet();
+			started.countDown();
+			await(release);
+			return Map.of("k", "v");
+		}));
+		Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+		final var second = CompletableFuture.supplyAsync(() -> loader.get("node-parameters", "junit:coalesced", () -> {
+			calls.incrementAndGet();
+			return Map.of();
+		}));
+
+		// Let the second caller join the running load
+		Thread.sleep(100);
+		release.countDown();
+		Assertions.assertEquals(Map.of("k", "v"), first.get(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(Map.of("k", "v"), second.get(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, calls.get());
+	}
+
+	@Test
+	void getError() {
+		Assertions.assertThrows(BusinessException.class, () -> loader.get("node-parameters", "junit:error", () -> {
+			throw new BusinessException("any");
+		}));
+		Assertions.assertNull(cacheManager.getCache("node-parameters").get("junit:error"));
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.node;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.mockito.ArgumentMatchers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class of {@link SubscriptionHealthCheckScheduler}
+ */
+class SubscriptionHealthCheckSchedulerTest {
+
+	private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+	private SubscriptionHealthCheckScheduler scheduler;
+
+	private final List<Object[]> latest = new ArrayList<>();
+
+	private final List<Object[]> counts = new ArrayList<>();
+
+	@BeforeEach
+	void prepareMock() {
+		scheduler = new SubscriptionHealthCheckScheduler();
+		scheduler.configuration = mock(ConfigurationResource.class);
+		when(scheduler.configuration.get(eq(HealthCheckScheduler.CONF_MIN), anyInt())).thenReturn(5);
+		when(scheduler.configuration.get(eq(HealthCheckScheduler.CONF_MAX), anyInt())).thenReturn(1440);
+		scheduler.repository = mock(EventRepository.class);
+		when(scheduler.repository.findLastSubscriptionNodeValues(ArgumentMatchers.any(), ArgumentMatchers.any()))
+				.thenReturn(latest);
+		when(scheduler.repository.countSubscriptionNodeEvents(ArgumentMatchers.any(), ArgumentMatchers.any(),
+				ArgumentMatchers.any())).thenReturn(counts);
+	}
+
+	private void addEvent(final String node, final NodeStatus status, final Instant date) {
+		latest.add(new Object[] { node, status.name(), date });
+	}
+
+	private Duration getDelay(final String node) {
+		return Duration.between(NOW, scheduler.getNextDue(node));
+	}
+
+	@Test
+	void reschedule() {
+		// A single down subscription makes the node checked at the minimal interval
+		addEvent("service:down", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+		addEvent("service:down", NodeStatus.DOWN, NOW.minus(Duration.ofDays(100)));
+		addEvent("service:down", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+
+		// The most recent transition drives the stability
+		addEvent("service:recent", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+		addEvent("service:recent", NodeStatus.UP, NOW.minus(Duration.ofDays(1)));
+		addEvent("service:stable", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+
+		// Flapping subscriptions
+		addEvent("service:flapping", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+		counts.add(new Object[] { "service:flapping", 2L });
+		scheduler.reschedule(List.of("service:down", "service:recent", "service:stable", "service:flapping"), NOW);
+
+		Assertions.assertTrue(getDelay("service:down").compareTo(Duration.ofMinutes(6)) < 0);
+		Assertions.assertTrue(getDelay("service:flapping").compareTo(Duration.ofMinutes(6)) < 0);
+		Assertions.assertTrue(getDelay("service:recent").compareTo(Duration.ofHours(1)) >= 0);
+		Assertions.assertTrue(getDelay("service:recent").compareTo(Duration.ofMinutes(67)) < 0);
+		Assertions.assertTrue(getDelay("service:stable").compareTo(Duration.ofDays(1)) >= 0);
+	}
+
+	@Test
+	void rescheduleTolerated() {
+		// Among 20 subscriptions, a down one and a recently changed one do not affect the node
+		for (var i = 0; i < 18; i++) {
+			addEvent("service:many", NodeStatus.UP, NOW.minus(Duration.ofDays(100)));
+		}
+		addEvent("service:many", NodeStatus.DOWN, NOW.minus(Duration.ofDays(100)));
+		addEvent("service:many", NodeStatus.UP, NOW.minus(Duration.ofMinutes(1)));
+
+		// The transitions are shared among the subscriptions
+		counts.add(new Object[] { "service:many", 3L });
+		scheduler.reschedule(List.of("service:many"), NOW);
+
+		Assertions.assertTrue(getDelay("service:many").compareTo(Duration.ofDays(1)) >= 0);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.project;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.dao.ProjectRepository;
+import org.ligoj.app.iam.model.CacheGroup;
+import org.ligoj.app.model.CacheProjectGroup;
+import org.ligoj.app.model.DelegateNode;
+import org.ligoj.app.model.Project;
+import org.ligoj.app.resource.AbstractOrgTest;
+import org.ligoj.app.resource.AuthorizationListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Test class of {@link ProjectAuthorization}
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+@Rollback
+@Transactional
+class ProjectAuthorizationTest extends AbstractOrgTest {
+
+	@Autowired
+	private ProjectAuthorization authorization;
+
+	@Autowired
+	private ProjectRepository repository;
+
+	@Autowired
+	private AuthorizationListener listener;
+
+	private int jupiter;
+
+	private int mda;
+
+	@BeforeEach
+	void prepare() throws IOException {
+		persistEntities("csv", new Class<?>[]{DelegateNode.class}, StandardCharsets.UTF_8);
+		jupiter = repository.findByName("Jupiter").getId();
+		mda = repository.findByName("MDA").getId();
+		authorization.invalidate();
+	}
+
+	@Test
+	void isVisibleTeamLeader() {
+		Assertions.assertTrue(authorization.isVisible("fdaugan", jupiter));
+		Assertions.assertTrue(authorization.isVisible("fdaugan", mda));
+		Assertions.assertFalse(authorization.isVisible("any", mda));
+		Assertions.assertFalse(authorization.isVisible("any", -1));
+	}
+
+	@Test
+	void isVisibleGroup() {
+		// "admin-test" is member of the group of "Jupiter"
+		Assertions.assertTrue(authorization.isVisible("admin-test", jupiter));
+		Assertions.assertFalse(authorization.isVisible("admin-test", mda));
+
+		// "junit" receives a delegate on the tree of this group
+		Assertions.assertTrue(authorization.isVisible("junit", jupiter));
+		Assertions.assertFalse(authorization.isVisible("junit", mda));
+	}
+
+	@Test
+	void getVisible() {
+		Assertions.assertTrue(authorization.getVisible("fdaugan").contains(jupiter));
+		Assertions.assertTrue(authorization.getVisible("fdaugan").contains(mda));
+		Assertions.assertEquals(1, authorization.getVisible("admin-test").size());
+		Assertions.assertTrue(authorization.getVisible("any").isEmpty());
+	}
+
+	@Test
+	void isManageSubscription() {
+		Assertions.assertTrue(authorization.isManageSubscription("fdaugan", mda));
+
+		// Write delegate on the group of "Jupiter"
+		Assertions.assertTrue(authorization.isManageSubscription("junit", jupiter));
+		Assertions.assertFalse(authorization.isManageSubscription("junit", mda));
+
+		// Visible, but no write delegate
+		Assertions.assertFalse(authorization.isManageSubscription("admin-test", jupiter));
+	}
+
+	@Test
+	void isManageSubscriptionNoSubscribe() {
+		em.createQuery("FROM DelegateNode WHERE receiver = :user", DelegateNode.class).setParameter("user", "fdaugan")
+				.getResultList().forEach(d -> {
+					d.setCanSubscribe(false);
+					em.merge(d);
+				});
+		Assertions.assertFalse(authorization.isManageSubscription("fdaugan", mda));
+	}
+
+	@Test
+	void updateTeamLeader() {
+		Assertions.assertTrue(authorization.isVisible("fdaugan", mda));
+		setTeamLeader("any");
+
+		// The pending change is considered
+		Assertions.assertTrue(authorization.isVisible("any", mda));
+		Assertions.assertFalse(authorization.isVisible("fdaugan", mda));
+	}
+
+	@Test
+	void updateNotCommitted() throws Exception {
+		setTeamLeader("any");
+		Assertions.assertTrue(authorization.isVisible("any", mda));
+
+		// Only the current transaction sees its change until it is committed
+		Assertions.assertFalse(CompletableFuture.supplyAsync(() -> authorization.isVisible("any", mda)).get());
+		Assertions.assertTrue(authorization.isVisible("any", mda));
+	}
+
+	@Test
+	void updateGroup() {
+		Assertions.assertFalse(authorization.isVisible("admin-test", mda));
+		final var projectGroup = new CacheProjectGroup();
+		projectGroup.setProject(em.find(Project.class, mda));
+		projectGroup.setGroup(em.find(CacheGroup.class, "ligoj-jupiter"));
+		em.persist(projectGroup);
+		Assertions.assertTrue(authorization.isVisible("admin-test", mda));
+	}
+
+	@Test
+	void updateNewProject() {
+		final var project = new Project();
+		project.setName("TEST");
+		project.setPkey("test");
+		project.setTeamLeader("any");
+		em.persist(project);
+		Assertions.assertTrue(authorization.isVisible("any", project.getId()));
+		Assertions.assertFalse(authorization.isVisible("fdaugan", project.getId()));
+
+		em.remove(project);
+		Assertions.assertFalse(authorization.isVisible("any", project.getId()));
+	}
+
+	@Test
+	void updateBulk() {
+		Assertions.assertFalse(authorization.isVisible("any", mda));
+		em.createQuery("UPDATE Project SET teamLeader = :user WHERE id = :id").setParameter("user", "any")
+				.setParameter("id", mda).executeUpdate();
+
+		// Not seen by the entity events
+		listener.onBulkChange(Project.class);
+		Assertions.assertTrue(authorization.isVisible("any", mda));
+	}
+
+	private void setTeamLeader(final String teamLeader) {
+		final var project = em.find(Project.class, mda);
+		project.setTeamLeader(teamLeader);
+		em.merge(project);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.resource.subscription;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ligoj.app.api.NodeStatus;
+import org.ligoj.app.dao.EventRepository;
+import org.ligoj.app.iam.model.*;
+import org.ligoj.app.model.*;
+import org.ligoj.app.resource.AbstractOrgTest;
+import org.ligoj.app.resource.AuthorizationListener;
+import org.ligoj.app.resource.node.HealthCircuitBreaker;
+import org.ligoj.app.resource.node.sample.BugTrackerResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Test class of the streamed statuses of {@link SubscriptionResource}, without test transaction: the stream is
+ * written once the request transaction is completed, as a JAX-RS container does.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = "classpath:/META-INF/spring/application-context-test.xml")
+class SubscriptionResourceStreamTest extends AbstractOrgTest {
+
+	@Autowired
+	private SubscriptionResource resource;
+
+	@Autowired
+	private EventRepository eventRepository;
+
+	@Autowired
+	private HealthCircuitBreaker circuitBreaker;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private AuthorizationListener authorizationListener;
+
+	private TransactionTemplate template;
+
+	private int subscription;
+
+	@Override
+	@BeforeEach
+	protected void setUpEntities() {
+		template = new TransactionTemplate(transactionManager);
+		template.executeWithoutResult(_ -> {
+			try {
+				super.setUpEntities();
+				persistEntities("csv", new Class<?>[]{Event.class, DelegateNode.class}, StandardCharsets.UTF_8);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			subscription = getSubscription("MDA", BugTrackerResource.SERVICE_KEY);
+		});
+		circuitBreaker.reset();
+	}
+
+	@AfterEach
+	void cleanup() {
+		final Class<?>[] entities = {DelegateOrg.class, Node.class, Parameter.class, Project.class, Subscription.class,
+				ParameterValue.class, Event.class, DelegateNode.class, CacheCompany.class, CacheUser.class,
+				CacheGroup.class, CacheMembership.class, CacheProjectGroup.class};
+		template.executeWithoutResult(_ -> {
+			csvForJpa.cleanup(entities);
+			// Bulk statements, not seen by the entity events
+			authorizationListener.onBulkChange(entities);
+		});
+	}
+
+	@Test
+	void refreshStatusesStream() throws IOException {
+		initSpringSecurityContext("fdaugan");
+		final var output = new ByteArrayOutputStream();
+		template.execute(_ -> resource.refreshStatusesStream(Set.of(subscription))).write(output);
+
+		final var events = output.toString(StandardCharsets.UTF_8);
+		Assertions.assertTrue(events.contains("\"id\":" + subscription + ","));
+		Assertions.assertTrue(events.contains("\"status\":\"UP\""));
+		Assertions.assertTrue(events.contains("\"service:bt:jira:pkey\":\"MDA\""));
+		Assertions.assertTrue(events.endsWith("event: done\ndata: {\"subscriptions\":1}\n\n"));
+
+		// The fresh status is committed
+		Assertions.assertEquals(NodeStatus.UP.name(),
+				template.execute(_ -> eventRepository.findFirstBySubscriptionAndTypeAndLatestTrue(
+						em.find(Subscription.class, subscription), EventType.STATUS).getValue()));
+	}
+}
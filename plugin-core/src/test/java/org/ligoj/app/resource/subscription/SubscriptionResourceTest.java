@@ -20,6 +20,7 @@ import org.ligoj.app.iam.model.*;
 import org.ligoj.app.model.*;
 import org.ligoj.app.resource.AbstractOrgTest;
 import org.ligoj.app.resource.ServicePluginLocator;
+import org.ligoj.app.resource.node.HealthCircuitBreaker;
 import org.ligoj.app.resource.node.ParameterValueCreateVo;
 import org.ligoj.app.resource.node.sample.BugTrackerResource;
 import org.ligoj.app.resource.node.sample.IdentityResource;
@@ -35,6 +36,7 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -76,10 +78,14 @@ class SubscriptionResourceTest extends AbstractOrgTest {
 	@Autowired
 	private ServicePluginLocator servicePluginLocator;
 
+	@Autowired
+	private HealthCircuitBreaker circuitBreaker;
+
 	@BeforeEach
 	void prepareSubscription() throws IOException {
 		persistEntities("csv", new Class<?>[]{Event.class, DelegateNode.class}, StandardCharsets.UTF_8);
 		this.subscription = getSubscription("MDA");
+		circuitBreaker.reset();
 	}
 
 	/**
@@ -228,6 +234,7 @@ class SubscriptionResourceTest extends AbstractOrgTest {
 	void deleteTasksSubscription() {
 		final var sampleResource = registerSingleton("taskSampleResource",
 				applicationContext.getAutowireCapableBeanFactory().createBean(TaskSampleSubscriptionResource.class));
+		servicePluginLocator.refresh();
 
 		try {
 			final var entity = new TaskSampleSubscription();
@@ -245,6 +252,7 @@ class SubscriptionResourceTest extends AbstractOrgTest {
 			Assertions.assertEquals(0, taskSampleRepository.count());
 		} finally {
 			destroySingleton("taskSampleResource");
+			servicePluginLocator.refresh();
 		}
 	}
 
@@ -716,6 +724,19 @@ class SubscriptionResourceTest extends AbstractOrgTest {
 		Assertions.assertEquals("http://localhost:8120", status.getParameters().get("service:bt:jira:url"));
 	}
 
+	@Test
+	void refreshStatusesStream() throws IOException {
+		persistEntities("csv", new Class<?>[]{Event.class}, StandardCharsets.UTF_8);
+		final var output = new ByteArrayOutputStream();
+		resource.refreshStatusesStream(Collections.singleton(subscription)).write(output);
+		final var events = output.toString(StandardCharsets.UTF_8);
+		Assertions.assertTrue(events.startsWith("event: subscription\ndata: {"));
+		Assertions.assertTrue(events.contains("\"id\":" + subscription + ","));
+		Assertions.assertTrue(events.contains("\"status\":\"UP\""));
+		Assertions.assertTrue(events.contains("\"service:bt:jira:pkey\":\"MDA\""));
+		Assertions.assertTrue(events.endsWith("event: done\ndata: {\"subscriptions\":1}\n\n"));
+	}
+
 	@Test
 	void getStatusByProject() throws IOException {
 		persistEntities("csv", new Class<?>[]{Event.class}, StandardCharsets.UTF_8);